@@ -28,6 +28,7 @@ dependencies {
     implementation("com.google.protobuf:protobuf-java-util:$protobufVersion")
     compileOnly("javax.annotation:javax.annotation-api:1.3.2")
 
+    testImplementation("io.grpc:grpc-inprocess:$grpcVersion")
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
@@ -64,4 +65,5 @@ tasks.test {
     systemProperty("sidecar.e2e", System.getenv("SIDECAR_E2E") ?: "")
     systemProperty("sidecar.e2e.live", System.getenv("SIDECAR_E2E_LIVE") ?: "")
     systemProperty("sidecar.e2e.test_mode", System.getenv("SIDECAR_E2E_TEST_MODE") ?: "")
+    systemProperty("sidecar.bench", System.getenv("SIDECAR_BENCH") ?: "")
 }
@@ -0,0 +1,136 @@
+package com.dgarson.claude.sidecar;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CallbackExecutor} with a separate concurrency limit and queue bound for each callback
+ * {@link CallbackExecutor.Kind}.
+ *
+ * <p>Every accepted callback gets its own virtual thread, which waits (queued) for one of the
+ * kind's {@code maxConcurrent} permits before running the handler (active). Once
+ * {@code maxConcurrent + maxQueued} callbacks of a kind are pending, further ones are rejected
+ * without starting a thread. One instance may be shared by many sessions (through
+ * {@link SessionConfig.Builder#callbackExecutor}) to bound the load their handlers put on a
+ * shared database or HTTP service.</p>
+ */
+public final class BoundedCallbackExecutor implements CallbackExecutor {
+
+    private final Map<Kind, Lane> lanes = new EnumMap<>(Kind.class);
+
+    private BoundedCallbackExecutor(Builder builder) {
+        for (Kind kind : Kind.values()) {
+            int[] limit = builder.limits.get(kind);
+            lanes.put(kind, new Lane(limit[0], limit[1]));
+        }
+    }
+
+    /** An executor with the default limits (see {@link Builder}). */
+    public static BoundedCallbackExecutor withDefaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean execute(Kind kind, String invocationId, Runnable callback) {
+        Lane lane = lanes.get(kind);
+        if (!lane.reserve()) {
+            lane.rejected.incrementAndGet();
+            return false;
+        }
+        lane.queued.incrementAndGet();
+        Thread.ofVirtual().name(kind.threadPrefix() + "-handler-" + invocationId).start(() -> {
+            try {
+                lane.permits.acquireUninterruptibly();
+                lane.queued.decrementAndGet();
+                lane.active.incrementAndGet();
+                try {
+                    callback.run();
+                } finally {
+                    lane.active.decrementAndGet();
+                    lane.permits.release();
+                }
+            } finally {
+                lane.pending.decrementAndGet();
+            }
+        });
+        return true;
+    }
+
+    /** Callbacks of {@code kind} waiting for a concurrency permit. */
+    public int queued(Kind kind) {
+        return lanes.get(kind).queued.get();
+    }
+
+    /** Callbacks of {@code kind} whose handler is running. */
+    public int active(Kind kind) {
+        return lanes.get(kind).active.get();
+    }
+
+    /** Callbacks of {@code kind} rejected because the queue was full. */
+    public long rejected(Kind kind) {
+        return lanes.get(kind).rejected.get();
+    }
+
+    /** Limits and counters for one kind of callback. */
+    private static final class Lane {
+        final int capacity;
+        final Semaphore permits;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicLong rejected = new AtomicLong();
+
+        Lane(int maxConcurrent, int maxQueued) {
+            this.capacity = maxConcurrent + maxQueued;
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        boolean reserve() {
+            int n;
+            do {
+                n = pending.get();
+                if (n >= capacity) {
+                    return false;
+                }
+            } while (!pending.compareAndSet(n, n + 1));
+            return true;
+        }
+    }
+
+    /**
+     * Builder; every kind defaults to 16 concurrent callbacks and 256 queued ones.
+     */
+    public static final class Builder {
+        private final Map<Kind, int[]> limits = new EnumMap<>(Kind.class);
+
+        private Builder() {
+            for (Kind kind : Kind.values()) {
+                limits.put(kind, new int[]{16, 256});
+            }
+        }
+
+        /**
+         * Run at most {@code maxConcurrent} callbacks of {@code kind} at once, with up to
+         * {@code maxQueued} more waiting; beyond that they are rejected.
+         */
+        public Builder limit(Kind kind, int maxConcurrent, int maxQueued) {
+            if (maxConcurrent < 1 || maxQueued < 0) {
+                throw new IllegalArgumentException("invalid limit for " + kind + ": maxConcurrent "
+                        + maxConcurrent + ", maxQueued " + maxQueued);
+            }
+            limits.put(kind, new int[]{maxConcurrent, maxQueued});
+            return this;
+        }
+
+        public BoundedCallbackExecutor build() {
+            return new BoundedCallbackExecutor(this);
+        }
+    }
+}
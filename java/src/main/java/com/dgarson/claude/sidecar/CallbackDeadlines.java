@@ -0,0 +1,78 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.HookInvocationRequest;
+import claude_sidecar.v1.Sidecar.HookSpec;
+import com.google.protobuf.Value;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Sidecar-side timeouts for hook callbacks, derived from the session's {@link HookSpec}s.
+ *
+ * <p>A hook invocation is matched against the specs for its {@code hook_event}; a spec's matcher
+ * is a regex searched in the {@code tool_name} of the hook input, and an empty matcher, or one
+ * that is not a valid Java regex, matches everything. When several specs match, the longest timeout wins, so the client never gives up
+ * before the sidecar does. Unmatched invocations get the sidecar default of 60 seconds.</p>
+ *
+ * <p>Without any specs the session's hook configuration is unknown, so no client deadline is
+ * applied and handlers run until they return.</p>
+ */
+final class CallbackDeadlines {
+
+    /** Timeout the sidecar applies when {@code timeout_seconds} is 0 or no spec matches. */
+    static final Duration DEFAULT_HOOK_TIMEOUT = Duration.ofSeconds(60);
+
+    private final List<Rule> rules;
+
+    CallbackDeadlines(List<HookSpec> specs) {
+        List<Rule> compiled = new ArrayList<>(specs.size());
+        for (HookSpec spec : specs) {
+            Pattern matcher = null;
+            if (!spec.getMatcher().isEmpty()) {
+                try {
+                    matcher = Pattern.compile(spec.getMatcher());
+                } catch (PatternSyntaxException e) {
+                    // Match everything: a spec wrongly counted as matching can only make the
+                    // deadline later, never earlier than the sidecar's.
+                    matcher = null;
+                }
+            }
+            Duration timeout = spec.getTimeoutSeconds() > 0
+                    ? Duration.ofSeconds(spec.getTimeoutSeconds())
+                    : DEFAULT_HOOK_TIMEOUT;
+            compiled.add(new Rule(spec.getHookEvent(), matcher, timeout));
+        }
+        this.rules = List.copyOf(compiled);
+    }
+
+    /**
+     * Returns how long the sidecar waits for the response to {@code request}, or null if no specs
+     * were supplied.
+     */
+    Duration hookTimeout(HookInvocationRequest request) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        Value toolName = request.getInputData().getFieldsMap().get("tool_name");
+        String tool = toolName != null ? toolName.getStringValue() : "";
+        Duration timeout = null;
+        for (Rule rule : rules) {
+            if (!rule.event.equals(request.getHookEvent())) {
+                continue;
+            }
+            if (rule.matcher != null && !rule.matcher.matcher(tool).find()) {
+                continue;
+            }
+            if (timeout == null || rule.timeout.compareTo(timeout) > 0) {
+                timeout = rule.timeout;
+            }
+        }
+        return timeout != null ? timeout : DEFAULT_HOOK_TIMEOUT;
+    }
+
+    private record Rule(String event, Pattern matcher, Duration timeout) {}
+}
@@ -0,0 +1,39 @@
+package com.dgarson.claude.sidecar;
+
+/**
+ * Runs a {@link Session}'s tool, hook and permission callbacks.
+ *
+ * <p>The session calls {@link #execute} on its gRPC callback thread, so implementations must not
+ * block there. An executor that cannot take more work of a kind returns false; the session then
+ * answers the invocation immediately with an error (tool), a stop (hook) or a deny (permission)
+ * instead of running the handler. See {@link BoundedCallbackExecutor} for the default.</p>
+ */
+public interface CallbackExecutor {
+
+    /** The type of callback being run. */
+    enum Kind {
+        TOOL("tool"),
+        HOOK("hook"),
+        PERMISSION("perm");
+
+        private final String threadPrefix;
+
+        Kind(String threadPrefix) {
+            this.threadPrefix = threadPrefix;
+        }
+
+        /** Short name used in handler thread names, e.g. {@code tool-handler-<invocation id>}. */
+        public String threadPrefix() {
+            return threadPrefix;
+        }
+    }
+
+    /**
+     * Runs {@code callback} asynchronously, or rejects it.
+     *
+     * @param kind         the callback type, for per-type limits
+     * @param invocationId the sidecar's invocation ID, for naming and diagnostics
+     * @return false if the callback was rejected and will not run
+     */
+    boolean execute(Kind kind, String invocationId, Runnable callback);
+}
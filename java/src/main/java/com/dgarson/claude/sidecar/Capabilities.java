@@ -10,7 +10,9 @@ import java.util.Collection;
  * <p>Capabilities are advertised by the sidecar in the {@link Sidecar.GetInfoResponse}
  * and indicate which features are supported by the running sidecar version.
  *
- * <p>Mirrors the Go SDK's capabilities.go. All methods are thread-safe.
+ * <p>Mirrors the Go SDK's capabilities.go. All methods are thread-safe. The helpers here scan the
+ * collection they are given; for repeated checks build a {@link CapabilitySet} once (or use
+ * {@link SidecarClient#capabilities()}) and query that instead.
  */
 public final class Capabilities {
 
@@ -0,0 +1,60 @@
+package com.dgarson.claude.sidecar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sidecar capabilities known to this client, as advertised in {@code GetInfoResponse}.
+ *
+ * <p>{@link #wireName()} is the capability string the sidecar sends; see {@link Capabilities}
+ * for the string constants and {@link CapabilitySet} for O(1) membership checks.</p>
+ */
+public enum Capability {
+    HOOKS(Capabilities.HOOKS),
+    PERMISSIONS("permissions"),
+    PERMISSION_CALLBACK(Capabilities.PERMISSION_CALLBACK),
+    PERMISSION_SUGGESTIONS("permission_suggestions"),
+    PERMISSION_UPDATES("permission_updates"),
+    PERMISSION_INTERRUPT("permission_interrupt"),
+    SDK_MCP(Capabilities.SDK_MCP),
+    MCP_EXTERNAL("mcp_external"),
+    CLIENT_TOOLS(Capabilities.CLIENT_TOOLS),
+    CHECKPOINTING(Capabilities.CHECKPOINTING),
+    REWIND_FILES("rewind_files"),
+    STRUCTURED_OUTPUTS(Capabilities.STRUCTURED_OUTPUTS),
+    SANDBOX(Capabilities.SANDBOX),
+    AGENTS(Capabilities.AGENTS),
+    PLUGINS(Capabilities.PLUGINS),
+    BETAS(Capabilities.BETAS),
+    SESSIONS("sessions"),
+    RESUME("resume"),
+    FORK(Capabilities.FORK),
+    INPUT_STREAM(Capabilities.INPUT_STREAM),
+    STDERR("stderr"),
+    PARTIAL_MESSAGES("partial_messages"),
+    DYNAMIC_CONTROL("dynamic_control");
+
+    private static final Map<String, Capability> BY_WIRE_NAME = new HashMap<>();
+
+    static {
+        for (Capability capability : values()) {
+            BY_WIRE_NAME.put(capability.wireName, capability);
+        }
+    }
+
+    private final String wireName;
+
+    Capability(String wireName) {
+        this.wireName = wireName;
+    }
+
+    /** The capability string used on the wire. */
+    public String wireName() {
+        return wireName;
+    }
+
+    /** Returns the capability with the given wire name, or null if this client does not know it. */
+    public static Capability fromWireName(String wireName) {
+        return wireName != null ? BY_WIRE_NAME.get(wireName) : null;
+    }
+}
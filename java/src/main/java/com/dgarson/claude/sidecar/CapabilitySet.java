@@ -0,0 +1,95 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable set of capabilities advertised by a sidecar, with constant-time checks.
+ *
+ * <p>Known capabilities are held in an {@link EnumSet} (a bit vector); strings this client does not
+ * know are kept separately so {@link #has(String)} still answers for them. Build one per
+ * {@code GetInfoResponse} and reuse it; {@link SidecarClient#warmUp} caches one for the client.</p>
+ */
+public final class CapabilitySet {
+
+    private static final CapabilitySet EMPTY = new CapabilitySet(
+            EnumSet.noneOf(Capability.class), Set.of());
+
+    private final EnumSet<Capability> known;
+    private final Set<String> unknown;
+
+    private CapabilitySet(EnumSet<Capability> known, Set<String> unknown) {
+        this.known = known;
+        this.unknown = unknown;
+    }
+
+    /** Builds the set of capabilities advertised in {@code info}. */
+    public static CapabilitySet from(Sidecar.GetInfoResponse info) {
+        return info != null ? of(info.getCapabilitiesList()) : EMPTY;
+    }
+
+    /** Builds a set from capability strings. */
+    public static CapabilitySet of(Collection<String> capabilities) {
+        if (capabilities == null || capabilities.isEmpty()) {
+            return EMPTY;
+        }
+        EnumSet<Capability> known = EnumSet.noneOf(Capability.class);
+        Set<String> unknown = new HashSet<>();
+        for (String name : capabilities) {
+            Capability capability = Capability.fromWireName(name);
+            if (capability != null) {
+                known.add(capability);
+            } else if (name != null) {
+                unknown.add(name);
+            }
+        }
+        return new CapabilitySet(known, Set.copyOf(unknown));
+    }
+
+    public boolean has(Capability capability) {
+        return capability != null && known.contains(capability);
+    }
+
+    /** Checks a capability string, including ones without a {@link Capability} constant. */
+    public boolean has(String capability) {
+        Capability known = Capability.fromWireName(capability);
+        return known != null ? has(known) : capability != null && unknown.contains(capability);
+    }
+
+    public boolean hasAll(Capability... required) {
+        for (Capability capability : required) {
+            if (!has(capability)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasAny(Capability... candidates) {
+        for (Capability capability : candidates) {
+            if (has(capability)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns a copy of the known capabilities. */
+    public EnumSet<Capability> known() {
+        return EnumSet.copyOf(known);
+    }
+
+    /** Returns the advertised capability strings this client has no constant for. */
+    public Set<String> unknown() {
+        return unknown;
+    }
+
+    @Override
+    public String toString() {
+        return "CapabilitySet" + known + (unknown.isEmpty() ? "" : " + " + unknown);
+    }
+}
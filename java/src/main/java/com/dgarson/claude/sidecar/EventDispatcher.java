@@ -0,0 +1,185 @@
+package com.dgarson.claude.sidecar;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed set of event dispatch loops shared by many sessions.
+ *
+ * <p>By default every {@link Session} owns an {@link EventMux} with its own dispatch thread. With
+ * thousands of attached sessions per JVM that is thousands of threads and stacks. Sessions attached
+ * through a {@link SidecarClient} configured with
+ * {@link SidecarClient#useEventDispatcher(EventDispatcher)} are instead hashed by session ID onto
+ * one of this dispatcher's shards, so thread count scales with cores rather than sessions.</p>
+ *
+ * <p>Each shard runs a loop over the sessions that have pending events, dispatching a bounded
+ * batch per session per turn so a busy session cannot starve the others on its shard. A session is
+ * queued on its shard at most once at a time, and its events are always dispatched in order by
+ * the same thread.</p>
+ *
+ * <p>A shard never waits on a subscriber. When a subscription using {@link OverflowPolicy#BLOCK}
+ * is full, the shard parks that session at the event it could not deliver, moves on to the other
+ * sessions, and retries the parked one about every millisecond. Only the blocked session stalls,
+ * as it would on its own thread.</p>
+ */
+public final class EventDispatcher implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(EventDispatcher.class.getName());
+
+    /** Upper bound on sessions waiting to be run per shard before producers back off. */
+    private static final int READY_CAPACITY = 1 << 14;
+    /** How long a session parked on a full BLOCK subscription waits before it is retried. */
+    private static final long PARKED_RETRY_NANOS = 1_000_000L;
+
+    private final Shard[] shards;
+    private final boolean closeable;
+
+    private EventDispatcher(int shardCount, String name, boolean closeable) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(name + "-" + i);
+        }
+        this.closeable = closeable;
+    }
+
+    /**
+     * Creates a dispatcher with the given number of shard threads. The caller owns it and should
+     * {@link #close()} it after every session using it has been closed.
+     */
+    public static EventDispatcher create(int shardCount) {
+        return new EventDispatcher(shardCount, "event-dispatch", true);
+    }
+
+    /**
+     * Returns the process-wide dispatcher, with one shard per available processor. It is created
+     * on first use, its threads are daemons, and {@link #close()} on it is a no-op.
+     */
+    public static EventDispatcher shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /** Number of shard threads. */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /** Stops the shard threads once their queued work has been dispatched. */
+    @Override
+    public void close() {
+        if (!closeable) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.ready.close();
+        }
+    }
+
+    Shard shardFor(String key) {
+        int h = key != null ? key.hashCode() : 0;
+        h ^= h >>> 16;
+        return shards[Math.floorMod(h, shards.length)];
+    }
+
+    private static final class SharedHolder {
+        static final EventDispatcher INSTANCE = new EventDispatcher(
+                Runtime.getRuntime().availableProcessors(), "event-dispatch-shared", false);
+    }
+
+    // -------------------------------------------------------------------------
+    // Inner: one dispatch loop
+    // -------------------------------------------------------------------------
+
+    static final class Shard {
+        /** Muxes that became runnable; fed by any thread, drained by the shard thread. */
+        private final MpscRingBuffer<EventMux> ready = new MpscRingBuffer<>(READY_CAPACITY);
+        /** Round-robin run queue; only touched by the shard thread. */
+        private final ArrayDeque<EventMux> runnable = new ArrayDeque<>();
+        /** Muxes parked on a full BLOCK subscription; only touched by the shard thread. */
+        private final ArrayDeque<EventMux> parked = new ArrayDeque<>();
+
+        Shard(String name) {
+            Thread.ofPlatform().name(name).daemon(true).start(this::run);
+        }
+
+        /**
+         * Queues a mux that has just transitioned to scheduled; each mux is queued at most once.
+         * Once the dispatcher is closed the mux is run on a thread of its own instead, so its
+         * events are still dispatched and its subscriptions still closed.
+         */
+        void schedule(EventMux mux) {
+            long parkNanos = 1_000L;
+            while (!ready.offer(mux)) {
+                if (ready.isClosed()) {
+                    LOG.log(Level.FINE, "Event dispatcher closed; dispatching session on its own thread");
+                    Thread.ofVirtual().name("event-mux-dispatch").start(() -> runDetached(mux));
+                    return;
+                }
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos << 1, 1_000_000L);
+            }
+        }
+
+        private void run() {
+            long retryAt = 0;
+            try {
+                while (true) {
+                    ready.drain(runnable::addLast, READY_CAPACITY);
+                    if (!parked.isEmpty() && System.nanoTime() - retryAt >= 0) {
+                        runnable.addAll(parked);
+                        parked.clear();
+                    }
+                    EventMux mux = runnable.pollFirst();
+                    if (mux == null) {
+                        if (!parked.isEmpty()) {
+                            ready.awaitNotEmpty(retryAt - System.nanoTime());
+                        } else if (!ready.awaitNotEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (!runOnce(mux)) {
+                        continue;
+                    }
+                    if (mux.isParked()) {
+                        if (parked.isEmpty()) {
+                            retryAt = System.nanoTime() + PARKED_RETRY_NANOS;
+                        }
+                        parked.addLast(mux);
+                    } else {
+                        runnable.addLast(mux);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Runs a mux scheduled after the dispatcher closed until it is idle or finished. */
+        private static void runDetached(EventMux mux) {
+            while (runOnce(mux)) {
+                if (mux.isParked()) {
+                    LockSupport.parkNanos(PARKED_RETRY_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Runs one turn of {@code mux}; returns true if it remains scheduled. A mux whose dispatch
+         * throws is aborted rather than retried, which could spin the shard on the same failure.
+         */
+        private static boolean runOnce(EventMux mux) {
+            try {
+                return mux.runScheduled();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Event dispatch failed; closing the session's event stream", e);
+                mux.abort();
+                return false;
+            }
+        }
+    }
+}
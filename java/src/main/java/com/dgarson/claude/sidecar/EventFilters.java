@@ -0,0 +1,48 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ServerEvent;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.function.Predicate;
+
+/**
+ * Static factory methods for {@link ServerEvent} filters used by {@link Session#subscribe}.
+ *
+ * <p>Filters run on the session's dispatch thread, so every predicate returned here is
+ * allocation-free and constant-time per event. All methods are thread-safe.
+ */
+public final class EventFilters {
+
+    private EventFilters() {}
+
+    /**
+     * Accepts events whose payload is one of the given cases
+     * (e.g. {@code TURN}, {@code TOOL_REQUEST}).
+     */
+    public static Predicate<ServerEvent> payloads(ServerEvent.PayloadCase... cases) {
+        return payloads(Arrays.asList(cases));
+    }
+
+    /**
+     * Accepts events whose payload is one of the given cases. The set is copied into an
+     * {@link EnumSet}, so later changes to {@code cases} have no effect.
+     */
+    public static Predicate<ServerEvent> payloads(Collection<ServerEvent.PayloadCase> cases) {
+        EnumSet<ServerEvent.PayloadCase> accepted = cases.isEmpty()
+                ? EnumSet.noneOf(ServerEvent.PayloadCase.class)
+                : EnumSet.copyOf(cases);
+        return event -> accepted.contains(event.getPayloadCase());
+    }
+
+    /** Accepts everything except partial (streaming) message events. */
+    public static Predicate<ServerEvent> excludePartials() {
+        return event -> !(event.hasMessage() && event.getMessage().getIsPartial());
+    }
+
+    /** Accepts complete result messages only. */
+    public static Predicate<ServerEvent> results() {
+        return event -> event.hasMessage() && event.getMessage().hasResult();
+    }
+}
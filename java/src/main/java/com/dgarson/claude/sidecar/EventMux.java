@@ -4,13 +4,18 @@ import claude_sidecar.v1.Sidecar.ServerEvent;
 import claude_sidecar.v1.Sidecar.TurnBoundary;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Thread-safe event multiplexer that routes {@link ServerEvent}s to global and per-request
@@ -18,116 +23,352 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * <p>Global subscribers receive all events. Per-request subscribers receive only events matching
  * their request ID. Per-request subscriptions are automatically closed on TURN_END.</p>
+ *
+ * <p>Inbound events are buffered in a bounded {@link MpscRingBuffer}: the gRPC callback thread is
+ * the producer and the dispatch thread drains it in batches, so a burst of partial-message events
+ * costs O(1) per event. The dispatch thread then writes each event directly into the bounded queue
+ * of every matching {@link Subscription}, applying that subscription's {@link OverflowPolicy} when
+ * the consumer has fallen behind.</p>
+ *
+ * <p>Routing tables are immutable copy-on-write snapshots. Subscribe/unsubscribe calls serialize on
+ * {@code lock} and publish new arrays; the dispatch thread only reads the current snapshots and
+ * allocates nothing per event.</p>
  */
 final class EventMux {
 
-    private final EventQueue inbound = new EventQueue();
+    private static final Logger LOG = Logger.getLogger(EventMux.class.getName());
+
+    /** Capacity of the inbound buffer; producers block when the dispatcher falls this far behind. */
+    static final int INBOUND_CAPACITY = 4096;
+    /** Maximum number of events dispatched per wakeup (or per turn on a shared shard). */
+    static final int DISPATCH_BATCH = 256;
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /**
+     * Appended to a subscription's queue when the mux closes it, so a consumer blocked on the
+     * queue wakes up. Compared by identity; see {@link EventSubscription#END_OF_STREAM}.
+     */
+    static final ServerEvent END_OF_STREAM = ServerEvent.newBuilder().build();
+
+    private final MpscRingBuffer<ServerEvent> inbound = new MpscRingBuffer<>(INBOUND_CAPACITY);
+
+    /** Serializes writers of the routing snapshots; never taken on the dispatch path. */
     private final Object lock = new Object();
-    private final Map<String, List<Subscription>> byRequest = new HashMap<>();
-    private final List<Subscription> global = new ArrayList<>();
+    private final ConcurrentHashMap<String, Subscription[]> byRequest = new ConcurrentHashMap<>();
+    private volatile Subscription[] global = NO_SUBSCRIPTIONS;
     private boolean closed;
-    private final Thread dispatchThread;
 
+    /** Shared shard this mux is scheduled on, or null when it owns a dispatch thread. */
+    private final EventDispatcher.Shard shard;
+    /** True while this mux is queued on, or being run by, its shard. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /** Told how many inbound slots each dispatch batch freed; see {@link #onDrained}. */
+    private volatile IntConsumer drainListener;
+
+    /*
+     * On a shard, an event that a full BLOCK subscription cannot take yet is parked here rather
+     * than stalling the shard, and delivery resumes at parkedIndex of the subscriptions it was
+     * first dispatched to. Only touched by the thread running the mux.
+     */
+    private ServerEvent parkedEvent;
+    private Subscription[] parkedGlobal;
+    private Subscription[] parkedRequest;
+    private int parkedIndex;
+
+    /** Creates a mux with its own dedicated dispatch thread. */
     EventMux() {
-        dispatchThread = Thread.ofVirtual().name("event-mux-dispatch").start(this::run);
+        this.shard = null;
+        Thread.ofVirtual().name("event-mux-dispatch").start(this::run);
+    }
+
+    /**
+     * Creates a mux dispatched by one shard of a shared {@link EventDispatcher}, chosen by
+     * hashing {@code key} (typically the sidecar session ID). No thread is started.
+     */
+    EventMux(EventDispatcher dispatcher, String key) {
+        this.shard = dispatcher.shardFor(key);
     }
 
-    /** Enqueue an event for dispatch to subscribers. */
+    /**
+     * Enqueue an event for dispatch to subscribers. Blocks while the inbound buffer is full, which
+     * pushes back on the gRPC callback thread instead of buffering without limit.
+     *
+     * <p>If the caller is interrupted while waiting, the event is lost, so the mux is closed:
+     * subscribers see the stream end rather than silently miss an event.</p>
+     */
     void enqueue(ServerEvent event) {
-        inbound.push(event);
+        try {
+            inbound.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, "Interrupted while enqueueing an event; closing the event stream");
+            close();
+            return;
+        }
+        schedule();
+    }
+
+    /**
+     * Registers a callback run on the dispatch thread with the number of inbound events each batch
+     * has dispatched. Session uses it to request that many more messages from gRPC, so with
+     * manual inbound flow control the transport never delivers more than the inbound buffer holds
+     * and a stalled subscriber ultimately stops reads from the sidecar.
+     */
+    void onDrained(IntConsumer listener) {
+        this.drainListener = listener;
+    }
+
+    /**
+     * Credits the drain listener with {@code slots} events that were received but never enqueued,
+     * such as events the session filtered out, so their flow-control credit is not lost.
+     */
+    void credit(int slots) {
+        IntConsumer listener = drainListener;
+        if (listener != null) {
+            listener.accept(slots);
+        }
+    }
+
+    /** Number of events waiting in the inbound buffer (approximate under concurrency). */
+    int inboundSize() {
+        return inbound.size();
     }
 
     /** Stop accepting events and close all subscriptions. */
     void close() {
         inbound.close();
+        schedule();
     }
 
     /** Subscribe to all events. The returned subscription's queue will receive every event. */
-    Subscription subscribeAll(int bufferSize) {
-        Subscription sub = new Subscription(bufferSize);
+    Subscription subscribeAll(int bufferSize, OverflowPolicy policy) {
+        return subscribeAll(bufferSize, policy, null);
+    }
+
+    /**
+     * Subscribe to all events accepted by {@code filter}. The filter runs on the dispatch thread
+     * before enqueueing, so rejected events cost no buffer space or consumer wakeups. It must be
+     * fast and must not block.
+     */
+    Subscription subscribeAll(int bufferSize, OverflowPolicy policy, Predicate<ServerEvent> filter) {
+        Subscription sub = new Subscription(bufferSize, policy, filter);
         synchronized (lock) {
             if (closed) {
-                sub.close();
+                sub.end();
                 return sub;
             }
-            global.add(sub);
+            global = append(global, sub);
         }
         return sub;
     }
 
     /** Subscribe to events for a specific request ID. */
-    Subscription subscribeRequest(String requestId, int bufferSize) {
-        Subscription sub = new Subscription(bufferSize);
+    Subscription subscribeRequest(String requestId, int bufferSize, OverflowPolicy policy) {
+        return subscribeRequest(requestId, bufferSize, policy, null);
+    }
+
+    /**
+     * Subscribe to events for a specific request ID that are accepted by {@code filter}. The
+     * subscription is still closed by the request's TURN_END even if the filter rejects it.
+     */
+    Subscription subscribeRequest(String requestId, int bufferSize, OverflowPolicy policy,
+                                  Predicate<ServerEvent> filter) {
+        Subscription sub = new Subscription(bufferSize, policy, filter);
         synchronized (lock) {
             if (closed) {
-                sub.close();
+                sub.end();
                 return sub;
             }
-            byRequest.computeIfAbsent(requestId, k -> new ArrayList<>()).add(sub);
+            byRequest.put(requestId, append(byRequest.getOrDefault(requestId, NO_SUBSCRIPTIONS), sub));
         }
         return sub;
     }
 
+    /** Unsubscribe a global subscription and close it. */
+    void unsubscribeAll(Subscription sub) {
+        if (sub == null) {
+            return;
+        }
+        synchronized (lock) {
+            global = remove(global, sub);
+        }
+        sub.close();
+    }
+
     /** Unsubscribe a per-request subscription and close it. */
     void unsubscribeRequest(String requestId, Subscription sub) {
         if (sub == null || requestId == null || requestId.isEmpty()) {
             return;
         }
         synchronized (lock) {
-            List<Subscription> subs = byRequest.get(requestId);
+            Subscription[] subs = byRequest.get(requestId);
             if (subs != null) {
-                subs.remove(sub);
-                if (subs.isEmpty()) {
+                Subscription[] remaining = remove(subs, sub);
+                if (remaining.length == 0) {
                     byRequest.remove(requestId);
+                } else if (remaining != subs) {
+                    byRequest.put(requestId, remaining);
                 }
             }
         }
         sub.close();
     }
 
+    /**
+     * Ends every per-request subscription with {@code cause}, e.g. when the stream carrying their
+     * turns was lost and cannot be resumed. Session-wide subscriptions stay open.
+     */
+    void failRequests(Throwable cause) {
+        List<Subscription> subs = new ArrayList<>();
+        synchronized (lock) {
+            for (Subscription[] requestSubs : byRequest.values()) {
+                subs.addAll(Arrays.asList(requestSubs));
+            }
+            byRequest.clear();
+        }
+        for (Subscription sub : subs) {
+            sub.fail(cause);
+        }
+    }
+
     /** Main dispatch loop, runs on a dedicated thread. */
     private void run() {
-        while (true) {
-            ServerEvent event = inbound.pop();
+        try {
+            while (inbound.awaitNotEmpty()) {
+                drainBatch();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void schedule() {
+        if (shard != null && scheduled.compareAndSet(false, true)) {
+            shard.schedule(this);
+        }
+    }
+
+    /**
+     * Runs one turn of this mux on its shard thread: dispatches up to {@code DISPATCH_BATCH}
+     * events, closing all subscriptions once the inbound buffer is closed and drained. The turn
+     * ends early if an event is parked on a full BLOCK subscription; see {@link #isParked()}.
+     *
+     * @return true if the mux still has work and remains scheduled; false once it is idle (and
+     *         unscheduled) or finished
+     */
+    boolean runScheduled() {
+        drainBatch();
+        if (parkedEvent != null || !inbound.isEmpty()) {
+            return true;
+        }
+        if (inbound.isClosed()) {
+            if (!inbound.isEmpty()) {
+                return true;
+            }
+            closeAll();
+            return false;
+        }
+        scheduled.set(false);
+        // A producer (or close) may have acted after the checks above but seen scheduled == true.
+        return (!inbound.isEmpty() || inbound.isClosed()) && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * True if the last turn stopped at an event a full BLOCK subscription could not take. The
+     * shard should retry the mux after a pause instead of right away.
+     */
+    boolean isParked() {
+        return parkedEvent != null;
+    }
+
+    /**
+     * Ends a mux whose dispatch failed on a shard: stops accepting events, discards the pending
+     * ones and closes every subscription. The mux is never scheduled again.
+     */
+    void abort() {
+        inbound.close();
+        parkedEvent = null;
+        parkedGlobal = null;
+        parkedRequest = null;
+        closeAll();
+    }
+
+    private void drainBatch() {
+        if (parkedEvent != null && !deliver(parkedEvent, parkedGlobal, parkedRequest, parkedIndex)) {
+            return;
+        }
+        int n = 0;
+        while (n < DISPATCH_BATCH) {
+            ServerEvent event = inbound.poll();
             if (event == null) {
-                closeAll();
-                return;
+                break;
             }
-            List<Subscription> targets = subscriptionsFor(event);
-            for (Subscription sub : targets) {
-                sub.enqueue(event);
+            n++;
+            if (!dispatch(event)) {
+                break;
             }
-            if (isTurnEnd(event)) {
-                closeRequest(event.getRequestId());
+        }
+        IntConsumer listener = drainListener;
+        if (n > 0 && listener != null) {
+            try {
+                listener.accept(n);
+            } catch (RuntimeException e) {
+                LOG.log(Level.FINE, "Drain listener failed", e);
             }
         }
     }
 
-    private List<Subscription> subscriptionsFor(ServerEvent event) {
-        synchronized (lock) {
-            List<Subscription> subs = new ArrayList<>(global);
-            String requestId = event.getRequestId();
-            if (requestId != null && !requestId.isEmpty()) {
-                List<Subscription> requestSubs = byRequest.get(requestId);
-                if (requestSubs != null) {
-                    subs.addAll(requestSubs);
-                }
+    /** Delivers one event; false if it was parked. */
+    private boolean dispatch(ServerEvent event) {
+        String requestId = event.getRequestId();
+        Subscription[] requestSubs = requestId.isEmpty() ? null : byRequest.get(requestId);
+        return deliver(event, global, requestSubs != null ? requestSubs : NO_SUBSCRIPTIONS, 0);
+    }
+
+    /**
+     * Enqueues {@code event} on the global then the request subscriptions, starting at index
+     * {@code from} of the two taken together. A dedicated dispatch thread waits on full BLOCK
+     * subscriptions; a shard parks the event instead and returns false.
+     */
+    private boolean deliver(ServerEvent event, Subscription[] globalSubs, Subscription[] requestSubs,
+                            int from) {
+        boolean wait = shard == null;
+        int total = globalSubs.length + requestSubs.length;
+        for (int i = from; i < total; i++) {
+            Subscription sub = i < globalSubs.length
+                    ? globalSubs[i]
+                    : requestSubs[i - globalSubs.length];
+            if (!sub.enqueue(event, wait)) {
+                parkedEvent = event;
+                parkedGlobal = globalSubs;
+                parkedRequest = requestSubs;
+                parkedIndex = i;
+                return false;
             }
-            return subs;
         }
+        parkedEvent = null;
+        parkedGlobal = null;
+        parkedRequest = null;
+        if (isTurnEnd(event)) {
+            closeRequest(event.getRequestId());
+        }
+        return true;
     }
 
     private void closeRequest(String requestId) {
         if (requestId == null || requestId.isEmpty()) {
             return;
         }
-        List<Subscription> subs;
+        Subscription[] subs;
         synchronized (lock) {
             subs = byRequest.remove(requestId);
         }
         if (subs != null) {
             for (Subscription sub : subs) {
-                sub.close();
+                sub.end();
             }
         }
     }
@@ -139,18 +380,36 @@ final class EventMux {
                 return;
             }
             closed = true;
-            allSubs = new ArrayList<>(global);
-            for (List<Subscription> list : byRequest.values()) {
-                allSubs.addAll(list);
+            allSubs = new ArrayList<>(Arrays.asList(global));
+            for (Subscription[] subs : byRequest.values()) {
+                allSubs.addAll(Arrays.asList(subs));
             }
-            global.clear();
+            global = NO_SUBSCRIPTIONS;
             byRequest.clear();
         }
         for (Subscription sub : allSubs) {
-            sub.close();
+            sub.end();
         }
     }
 
+    private static Subscription[] append(Subscription[] subs, Subscription sub) {
+        Subscription[] next = Arrays.copyOf(subs, subs.length + 1);
+        next[subs.length] = sub;
+        return next;
+    }
+
+    private static Subscription[] remove(Subscription[] subs, Subscription sub) {
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i] == sub) {
+                Subscription[] next = new Subscription[subs.length - 1];
+                System.arraycopy(subs, 0, next, 0, i);
+                System.arraycopy(subs, i + 1, next, i, subs.length - i - 1);
+                return next;
+            }
+        }
+        return subs;
+    }
+
     private static boolean isTurnEnd(ServerEvent event) {
         if (!event.hasTurn()) {
             return false;
@@ -159,111 +418,172 @@ final class EventMux {
     }
 
     // -------------------------------------------------------------------------
-    // Inner: thread-safe blocking queue with close semantics
+    // Inner: a subscription backed by a single bounded queue that the dispatch
+    // thread writes to directly.
     // -------------------------------------------------------------------------
 
-    static final class EventQueue {
-        private final ReentrantLock queueLock = new ReentrantLock();
-        private final Condition notEmpty = queueLock.newCondition();
-        private final List<ServerEvent> items = new ArrayList<>();
-        private boolean queueClosed;
+    static final class Subscription {
+        /** Longest a BLOCK enqueue parks before re-checking for room. */
+        private static final long MAX_BLOCK_PARK_NANOS = 1_000_000L;
 
-        /** Push an event. Returns false if the queue is closed. */
-        boolean push(ServerEvent event) {
-            queueLock.lock();
-            try {
-                if (queueClosed) {
-                    return false;
-                }
-                items.add(event);
-                notEmpty.signal();
-                return true;
-            } finally {
-                queueLock.unlock();
-            }
+        /** Holds up to {@code limit} events plus one slot reserved for {@link #END_OF_STREAM}. */
+        private final ArrayBlockingQueue<ServerEvent> queue;
+        private final int limit;
+        private final OverflowPolicy policy;
+        private final Predicate<ServerEvent> filter;
+        private volatile boolean subClosed;
+        private volatile boolean overflowed;
+        /** Guarded by {@code this}. */
+        private boolean ended;
+        private volatile Throwable failure;
+        private volatile long dropped;
+
+        Subscription(int bufferSize, OverflowPolicy policy, Predicate<ServerEvent> filter) {
+            this.limit = Math.max(bufferSize, 1);
+            this.queue = new ArrayBlockingQueue<>(limit + 1);
+            this.policy = policy != null ? policy : OverflowPolicy.BLOCK;
+            this.filter = filter;
         }
 
-        /** Blocking pop. Returns null when the queue is closed and drained. */
-        ServerEvent pop() {
-            queueLock.lock();
-            try {
-                while (items.isEmpty() && !queueClosed) {
-                    notEmpty.await();
+        /**
+         * Called from the dispatch thread. Drops events rejected by the filter, then applies the
+         * overflow policy when the queue is full.
+         *
+         * @param wait whether to wait for room where the policy calls for it
+         * @return false if the event still needs room and {@code wait} was false
+         */
+        boolean enqueue(ServerEvent event, boolean wait) {
+            if (subClosed || !accepts(event) || offer(event)) {
+                return true;
+            }
+            switch (policy) {
+                case BLOCK -> {
+                    return awaitRoom(event, wait);
+                }
+                case DROP_OLDEST -> {
+                    while (!subClosed && !offer(event)) {
+                        if (queue.poll() != null) {
+                            dropped++;
+                        }
+                    }
                 }
-                if (items.isEmpty()) {
-                    return null;
+                case DROP_PARTIALS -> {
+                    if (evictOldestPartial()) {
+                        if (!offer(event)) {
+                            return awaitRoom(event, wait);
+                        }
+                    } else if (isPartial(event)) {
+                        dropped++;
+                    } else {
+                        return awaitRoom(event, wait);
+                    }
+                }
+                case FAIL -> {
+                    overflowed = true;
+                    LOG.log(Level.WARNING, "Subscription buffer full; closing subscription");
+                    end();
                 }
-                return items.remove(0);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return null;
-            } finally {
-                queueLock.unlock();
             }
+            return true;
         }
 
-        void close() {
-            queueLock.lock();
+        private boolean accepts(ServerEvent event) {
+            if (filter == null) {
+                return true;
+            }
             try {
-                queueClosed = true;
-                notEmpty.signalAll();
-            } finally {
-                queueLock.unlock();
+                return filter.test(event);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Subscription filter failed; skipping event", e);
+                return false;
             }
         }
-    }
-
-    // -------------------------------------------------------------------------
-    // Inner: a subscription backed by a blocking queue, bridged to a
-    // LinkedBlockingQueue for consumer convenience.
-    // -------------------------------------------------------------------------
-
-    static final class Subscription {
-        private final EventQueue queue = new EventQueue();
-        private final BlockingQueue<ServerEvent> out;
-        private volatile boolean subClosed;
 
-        Subscription(int bufferSize) {
-            this.out = new LinkedBlockingQueue<>(Math.max(bufferSize, 1));
-            Thread.ofVirtual().name("subscription-pump").start(this::pump);
+        /** Offers within {@code limit}, leaving the reserved slot free. Dispatch thread only. */
+        private boolean offer(ServerEvent event) {
+            return queue.size() < limit && queue.offer(event);
         }
 
-        private void pump() {
-            while (true) {
-                ServerEvent event = queue.pop();
-                if (event == null) {
-                    return;
+        private boolean awaitRoom(ServerEvent event, boolean wait) {
+            if (!wait) {
+                return false;
+            }
+            long parkNanos = 1_000L;
+            while (!subClosed && !offer(event)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
                 }
-                try {
-                    out.put(event);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_BLOCK_PARK_NANOS);
+            }
+            return true;
+        }
+
+        private boolean evictOldestPartial() {
+            Iterator<ServerEvent> it = queue.iterator();
+            while (it.hasNext()) {
+                if (isPartial(it.next())) {
+                    it.remove();
+                    dropped++;
+                    return true;
                 }
             }
+            return false;
         }
 
-        void enqueue(ServerEvent event) {
-            queue.push(event);
+        private static boolean isPartial(ServerEvent event) {
+            return event.hasMessage() && event.getMessage().getIsPartial();
         }
 
         /**
-         * Returns the output queue. Consumers should poll/take from this queue.
-         * The queue will stop producing when the subscription is closed.
+         * Returns the subscription queue. Consumers should poll/take from this queue.
+         * The queue will stop producing when the subscription is closed, and ends with
+         * {@link #END_OF_STREAM} when the mux closed it.
          */
         BlockingQueue<ServerEvent> queue() {
-            return out;
+            return queue;
         }
 
+        /** Closes the subscription; used when its consumer unsubscribes. */
         void close() {
-            if (!subClosed) {
+            subClosed = true;
+        }
+
+        /**
+         * Closes the subscription and appends {@link #END_OF_STREAM}, waking a consumer blocked
+         * on the queue. The reserved slot guarantees room for it.
+         */
+        synchronized void end() {
+            if (!ended) {
+                ended = true;
                 subClosed = true;
-                queue.close();
+                queue.offer(END_OF_STREAM);
             }
         }
 
+        /** Ends the subscription because its events can no longer be delivered reliably. */
+        void fail(Throwable cause) {
+            failure = cause;
+            end();
+        }
+
         boolean isClosed() {
             return subClosed;
         }
+
+        /** Why the subscription was ended by {@link #fail}, or null. */
+        Throwable failure() {
+            return failure;
+        }
+
+        /** True if the subscription was closed by the {@link OverflowPolicy#FAIL} policy. */
+        boolean isOverflowed() {
+            return overflowed;
+        }
+
+        /** Number of events discarded by a dropping overflow policy. */
+        long droppedCount() {
+            return dropped;
+        }
     }
 }
@@ -0,0 +1,55 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ServerEvent;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A filtered, session-wide event subscription returned by {@link Session#subscribe}.
+ *
+ * <p>Only events accepted by the subscription's filter are ever enqueued. Close the subscription
+ * when done; it is also closed when the session's stream ends, or when it overflows under
+ * {@link OverflowPolicy#FAIL}. In those two cases the queue's last element is
+ * {@link #END_OF_STREAM}, so a consumer blocked in {@code take()} or {@code poll} wakes up.</p>
+ */
+public final class EventSubscription implements AutoCloseable {
+
+    /**
+     * The last element of a subscription queue that the session closed (see above). It carries no
+     * payload and is only ever the same instance, so compare it with {@code ==}.
+     */
+    public static final ServerEvent END_OF_STREAM = EventMux.END_OF_STREAM;
+
+    private final EventMux mux;
+    private final EventMux.Subscription subscription;
+
+    EventSubscription(EventMux mux, EventMux.Subscription subscription) {
+        this.mux = mux;
+        this.subscription = subscription;
+    }
+
+    /** Returns the queue of matching events. */
+    public BlockingQueue<ServerEvent> queue() {
+        return subscription.queue();
+    }
+
+    /** True once the subscription has been closed and no further events will be enqueued. */
+    public boolean isClosed() {
+        return subscription.isClosed();
+    }
+
+    /** True if the subscription was closed because it overflowed under {@link OverflowPolicy#FAIL}. */
+    public boolean isOverflowed() {
+        return subscription.isOverflowed();
+    }
+
+    /** Number of matching events discarded by a dropping {@link OverflowPolicy}. */
+    public long droppedCount() {
+        return subscription.droppedCount();
+    }
+
+    @Override
+    public void close() {
+        mux.unsubscribeAll(subscription);
+    }
+}
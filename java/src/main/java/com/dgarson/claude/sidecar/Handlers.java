@@ -26,6 +26,12 @@ public final class Handlers {
     @FunctionalInterface
     public interface PermissionHandler {
         PermissionDecision handle(PermissionDecisionRequest request) throws Exception;
+
+        /**
+         * Called by {@link Session#setPermissionMode} before the new mode is sent. Handlers that
+         * delegate to another handler should forward it.
+         */
+        default void onPermissionModeChanged(String mode) {}
     }
 
     private final ToolHandler toolHandler;
@@ -0,0 +1,260 @@
+package com.dgarson.claude.sidecar;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free multi-producer/single-consumer ring buffer with close semantics.
+ *
+ * <p>Producers claim slots with a CAS on the tail sequence and publish by advancing the slot's
+ * sequence number (Vyukov's bounded queue). The single consumer never contends with producers:
+ * it reads its own head index, and {@link #take()} parks until a producer unparks it. Both push
+ * and pop are O(1), and {@link #drain} hands a batch of elements to a sink without re-checking
+ * the wakeup state per element.</p>
+ *
+ * <p>Only one thread may call the consumer methods ({@link #poll}, {@link #take},
+ * {@link #awaitNotEmpty}, {@link #drain}) at a time. Any number of threads may call
+ * {@link #offer}, {@link #put} and {@link #close}.</p>
+ *
+ * @param <E> element type; nulls are not permitted
+ */
+final class MpscRingBuffer<E> {
+
+    private static final long MAX_PRODUCER_PARK_NANOS = 1_000_000L;
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity maximum number of buffered elements; rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if (size <= 0) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    // -- Producer side --
+
+    /**
+     * Appends an element if there is room. Never blocks.
+     *
+     * @return false if the buffer is full or closed
+     */
+    boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        if (closed) {
+            return false;
+        }
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        buffer[index] = element;
+        sequences.set(index, pos + 1);
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    /**
+     * Appends an element, waiting for space if the buffer is full. Producers back off with
+     * bounded parks; a full buffer is the slow path and the consumer is not burdened with
+     * tracking blocked producers.
+     *
+     * @return false if the buffer was closed before the element could be added
+     */
+    boolean put(E element) throws InterruptedException {
+        long parkNanos = 1_000L;
+        int spins = 0;
+        while (!offer(element)) {
+            if (closed) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < 64) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_PRODUCER_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /** Stops accepting elements and wakes the consumer. Buffered elements remain drainable. */
+    void close() {
+        closed = true;
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // -- Consumer side --
+
+    /** Removes and returns the oldest element, or null if the buffer is empty. */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        if (sequences.get(index) - (pos + 1) < 0) {
+            return null;
+        }
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        sequences.set(index, pos + mask + 1);
+        head.lazySet(pos + 1);
+        return element;
+    }
+
+    /**
+     * Blocking pop. Returns null once the buffer is closed and drained.
+     */
+    E take() throws InterruptedException {
+        while (true) {
+            E element = poll();
+            if (element != null) {
+                return element;
+            }
+            if (!awaitNotEmpty()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Parks the consumer until an element is available.
+     *
+     * @return true if an element is available, false if the buffer is closed and drained
+     */
+    boolean awaitNotEmpty() throws InterruptedException {
+        if (hasNext()) {
+            return true;
+        }
+        Thread current = Thread.currentThread();
+        waiter = current;
+        try {
+            while (!hasNext()) {
+                if (closed) {
+                    // A producer may have published between the check above and the close.
+                    return hasNext();
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Parks the consumer until an element is available or {@code timeoutNanos} have elapsed.
+     * Unlike {@link #awaitNotEmpty()} this does not return early once the buffer is closed.
+     *
+     * @return true if an element is available
+     */
+    boolean awaitNotEmpty(long timeoutNanos) throws InterruptedException {
+        if (hasNext()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        waiter = Thread.currentThread();
+        try {
+            while (!hasNext()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Removes up to {@code limit} elements and passes them to {@code sink} in FIFO order.
+     *
+     * @return the number of elements drained
+     */
+    int drain(Consumer<? super E> sink, int limit) {
+        int count = 0;
+        while (count < limit) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            sink.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    private boolean hasNext() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) - (pos + 1) >= 0;
+    }
+
+    // -- Introspection (approximate under concurrency) --
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    boolean isEmpty() {
+        return !hasNext();
+    }
+}
@@ -205,6 +205,16 @@ public class OptionsBuilder {
         return this;
     }
 
+    /**
+     * Registers every tool of {@code registry}, one client tool server per server key, so the
+     * declared tools are exactly those the registry dispatches.
+     */
+    public OptionsBuilder withClientTools(ToolRegistry registry) {
+        registry.toolSpecs().forEach((serverKey, tools) ->
+                withClientToolServer(serverKey, tools.toArray(new ToolSpec[0])));
+        return this;
+    }
+
     // --- MCP servers ---
 
     /**
@@ -0,0 +1,297 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ClientEvent;
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Flow-control-aware outbound path of a {@link Session}'s stream.
+ *
+ * <p>Senders enqueue and return; a single writer (whichever thread finds the queue idle, or the
+ * gRPC on-ready callback) hands messages to the stream only while the call reports
+ * {@link CallStreamObserver#isReady()}. Messages therefore wait here, not in gRPC's unbounded
+ * transport buffer, and no sender holds a lock while gRPC serializes a message.</p>
+ *
+ * <p>Backpressure: every queued message holds one of {@code capacity} permits, returned once it is
+ * written. {@link #send} blocks until it gets one. {@link #sendAsync} never blocks: a message
+ * that finds no permit waits outside the queue and is admitted, in order, as permits free up. Its
+ * future completes when it is written, so a producer that bounds its outstanding futures is paced
+ * by the transport as well. Plain {@link StreamObserver}s (tests) are treated as always ready.</p>
+ *
+ * <p>A session that reattaches after a transport error {@link #suspend}s the queue, so messages
+ * keep accumulating (under the same bounds) instead of being written to the dead stream, and then
+ * {@link #resume}s it on the replacement stream.</p>
+ *
+ * <p>When the call has a compressor, {@link #compressAbove} limits compression to messages whose
+ * serialized size reaches the threshold; smaller ones are sent uncompressed.</p>
+ */
+final class OutboundQueue {
+
+    private static final Logger LOG = Logger.getLogger(OutboundQueue.class.getName());
+
+    private volatile StreamObserver<ClientEvent> observer;
+    private volatile CallStreamObserver<ClientEvent> call;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    /** Sends waiting for a permit, in order; admitted into {@code queue} by the writer. */
+    private final ConcurrentLinkedQueue<Waiter> waiting = new ConcurrentLinkedQueue<>();
+    /** Work-in-progress counter: the thread that raises it from zero is the writer. */
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Throwable terminated;
+    private volatile boolean suspended;
+    /** Written before anything queued once the writer runs again; set by {@link #resume}. */
+    private volatile Entry first;
+    /** Minimum serialized size of a compressed message, or -1 to leave the call's default. */
+    private volatile int compressionThreshold = -1;
+
+    OutboundQueue(StreamObserver<ClientEvent> observer, int capacity) {
+        bind(observer);
+        this.permits = new Semaphore(capacity);
+    }
+
+    private void bind(StreamObserver<ClientEvent> observer) {
+        this.observer = observer;
+        this.call = observer instanceof CallStreamObserver<ClientEvent> c ? c : null;
+    }
+
+    /**
+     * Enqueues {@code event}, blocking while {@code capacity} messages are already waiting.
+     *
+     * @throws IllegalStateException if the stream has already terminated, or if interrupted
+     *         while blocked (the message is then not sent and the interrupt is preserved)
+     */
+    void send(ClientEvent event) {
+        checkOpen();
+        if (waiting.isEmpty() && permits.tryAcquire()) {
+            enqueue(new Entry(event, true, null));
+            return;
+        }
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        waiting.offer(new Waiter(event, null, admitted));
+        drain();
+        try {
+            admitted.get();
+        } catch (InterruptedException e) {
+            if (admitted.cancel(false)) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting to send", e);
+            }
+            // Admitted meanwhile: the message is queued, so report success.
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        checkOpen();
+    }
+
+    /**
+     * Enqueues {@code event} without blocking; if no permit is free it waits for one outside the
+     * queue. The future completes once the message has been handed to gRPC, or exceptionally if
+     * the stream terminates first.
+     */
+    CompletableFuture<Void> sendAsync(ClientEvent event) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        Throwable t = terminated;
+        if (t != null) {
+            written.completeExceptionally(t);
+            return written;
+        }
+        // Later sends queue behind earlier waiting ones, so per-thread order is kept.
+        if (waiting.isEmpty() && permits.tryAcquire()) {
+            enqueue(new Entry(event, true, written));
+        } else {
+            waiting.offer(new Waiter(event, written, null));
+            drain();
+        }
+        return written;
+    }
+
+    /** Half-closes the stream once every message queued so far has been written. */
+    void halfClose() {
+        if (waiting.isEmpty()) {
+            enqueue(new Entry(null, false, null));
+        } else {
+            waiting.offer(new Waiter(null, null, null));
+            drain();
+        }
+    }
+
+    /**
+     * Compress only messages of at least {@code minBytes} serialized bytes. Has no effect unless
+     * the call was started with a compressor.
+     */
+    void compressAbove(int minBytes) {
+        this.compressionThreshold = minBytes;
+    }
+
+    /** Runs the writer; installed as the call's on-ready handler. */
+    void onReady() {
+        drain();
+    }
+
+    /**
+     * Stops writing until {@link #resume}; sends keep queueing and blocking as usual. Messages
+     * already handed to the failed stream are not resent.
+     */
+    void suspend() {
+        suspended = true;
+    }
+
+    /**
+     * Switches to {@code observer} and resumes writing, starting with {@code head} (the
+     * replacement stream's hello) and then every message queued meanwhile, in order.
+     */
+    void resume(StreamObserver<ClientEvent> observer, ClientEvent head) {
+        bind(observer);
+        first = new Entry(head, false, null);
+        suspended = false;
+        drain();
+    }
+
+    /** True while suspended by {@link #suspend}. */
+    boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Fails every queued message and all later sends with {@code cause}, and releases blocked
+     * senders. Called when the stream ends.
+     */
+    void terminate(Throwable cause) {
+        if (terminated != null) {
+            return;
+        }
+        terminated = cause;
+        // Wake every blocked sender; they observe terminated and fail.
+        permits.release(Integer.MAX_VALUE / 2);
+        drain();
+    }
+
+    /** True once {@link #terminate} has been called. */
+    boolean isTerminated() {
+        return terminated != null;
+    }
+
+    /** Number of messages waiting to be written. */
+    int size() {
+        return queue.size();
+    }
+
+    /** Number of sends waiting for a permit. */
+    int waitingCount() {
+        return waiting.size();
+    }
+
+    private void enqueue(Entry entry) {
+        queue.offer(entry);
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            admitWaiting();
+            Entry entry;
+            while ((terminated != null || (!suspended && isReady())) && (entry = next()) != null) {
+                write(entry);
+                admitWaiting();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Moves waiting sends into the queue while permits are free. Writer only, so admissions keep
+     * their order; each is queued before it leaves {@code waiting}, so a send that finds
+     * {@code waiting} empty cannot overtake it.
+     */
+    private void admitWaiting() {
+        Waiter w;
+        while ((w = waiting.peek()) != null && permits.tryAcquire()) {
+            if (w.admitted == null || w.admitted.complete(null)) {
+                queue.offer(new Entry(w.event, true, w.written));
+            } else {
+                // A blocking sender that gave up after an interrupt.
+                permits.release();
+            }
+            waiting.poll();
+        }
+    }
+
+    private Entry next() {
+        Entry head = first;
+        if (head != null) {
+            first = null;
+            return head;
+        }
+        return queue.poll();
+    }
+
+    private boolean isReady() {
+        CallStreamObserver<ClientEvent> c = call;
+        return c == null || c.isReady();
+    }
+
+    private void write(Entry entry) {
+        if (entry.permit) {
+            permits.release();
+        }
+        Throwable t = terminated;
+        if (t != null) {
+            if (entry.written != null) {
+                entry.written.completeExceptionally(t);
+            }
+            return;
+        }
+        StreamObserver<ClientEvent> o = observer;
+        try {
+            if (entry.event == null) {
+                o.onCompleted();
+            } else {
+                int threshold = compressionThreshold;
+                CallStreamObserver<ClientEvent> c = call;
+                if (threshold >= 0 && c != null) {
+                    // The size is memoized, so serialization does not compute it again.
+                    c.setMessageCompression(entry.event.getSerializedSize() >= threshold);
+                }
+                o.onNext(entry.event);
+            }
+            if (entry.written != null) {
+                entry.written.complete(null);
+            }
+        } catch (RuntimeException e) {
+            LOG.log(Level.FINE, "Outbound write failed", e);
+            if (entry.written != null) {
+                entry.written.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        Throwable t = terminated;
+        if (t != null) {
+            throw new IllegalStateException("session stream has ended", t);
+        }
+    }
+
+    /** A queued message; a null event half-closes the stream. */
+    private record Entry(ClientEvent event, boolean permit, CompletableFuture<Void> written) {}
+
+    /**
+     * A send waiting for a permit: {@code written} is set for {@link #sendAsync}, and
+     * {@code admitted} releases a blocked {@link #send}.
+     */
+    private record Waiter(ClientEvent event, CompletableFuture<Void> written,
+                          CompletableFuture<Void> admitted) {}
+}
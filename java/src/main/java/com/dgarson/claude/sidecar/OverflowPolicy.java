@@ -0,0 +1,33 @@
+package com.dgarson.claude.sidecar;
+
+/**
+ * What an event subscription does when its bounded buffer is full and the session dispatcher has
+ * another event for it.
+ *
+ * <p>The dispatcher writes directly into each subscription's buffer, so the policy decides
+ * whether a slow consumer slows the whole session down or loses events.</p>
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for the consumer to make room. No events are lost, but the session's dispatcher (and,
+     * once the inbound buffer fills, the sidecar stream) stalls until the consumer catches up.
+     */
+    BLOCK,
+
+    /** Discard the oldest buffered event to make room for the new one. Never stalls. */
+    DROP_OLDEST,
+
+    /**
+     * Discard partial (streaming) message events only: the oldest buffered partial is evicted, or
+     * an incoming partial is dropped if none is buffered. Complete messages, turn boundaries and
+     * errors are never dropped; they wait for room as with {@link #BLOCK}.
+     */
+    DROP_PARTIALS,
+
+    /**
+     * Close the subscription and mark it as overflowed. Never stalls. The consumer finds
+     * {@link EventSubscription#END_OF_STREAM} after the events already buffered.
+     */
+    FAIL
+}
@@ -0,0 +1,177 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.MessageEvent;
+import claude_sidecar.v1.Sidecar.StreamEvent;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.util.function.Consumer;
+
+/**
+ * Merges runs of consecutive partial {@link MessageEvent}s before they reach
+ * {@link StreamHandle#partials()}. Used by a single thread (the handle's dispatch loop).
+ *
+ * <p>Two kinds of partial are merged:</p>
+ * <ul>
+ *   <li>{@code content_block_delta} stream events for the same content block and delta type
+ *       ({@code text_delta}, {@code thinking_delta}, {@code input_json_delta}): the delta strings
+ *       are concatenated into one stream event, which is otherwise a copy of the first.</li>
+ *   <li>partial assistant messages: each is a snapshot of the message so far (as
+ *       {@link Turn#mergedAssistant()} assumes), so only the latest of a run is kept.</li>
+ * </ul>
+ *
+ * <p>Any other partial, or a partial that cannot extend the pending run, flushes the run and is
+ * handled on its own. A run is also flushed once it has been pending for the configured window
+ * or has accumulated the configured number of delta characters.</p>
+ */
+final class PartialCoalescer {
+
+    private static final String CONTENT_BLOCK_DELTA = "content_block_delta";
+
+    private final long windowNanos;
+    private final int maxChars;
+    private final Consumer<MessageEvent> sink;
+
+    /** First event of the pending run (a delta run) or latest snapshot (an assistant run). */
+    private MessageEvent pending;
+    private long pendingSince;
+    /** Delta key of a pending delta run, or null when the run is an assistant snapshot run. */
+    private DeltaKey pendingKey;
+    private final StringBuilder pendingText = new StringBuilder();
+    private int pendingCount;
+
+    PartialCoalescer(long windowNanos, int maxChars, Consumer<MessageEvent> sink) {
+        this.windowNanos = windowNanos;
+        this.maxChars = maxChars;
+        this.sink = sink;
+    }
+
+    /** Adds a partial message, emitting whatever it completes. */
+    void add(MessageEvent message, long nowNanos) {
+        if (message.hasAssistant()) {
+            if (pending != null && (pendingKey != null || isDue(nowNanos))) {
+                flush();
+            }
+            if (pending == null) {
+                pendingSince = nowNanos;
+            }
+            pending = message;
+            pendingCount++;
+            return;
+        }
+
+        DeltaKey key = message.hasStreamEvent() ? DeltaKey.of(message.getStreamEvent()) : null;
+        if (key == null) {
+            flush();
+            sink.accept(message);
+            return;
+        }
+        if (pending != null && !key.equals(pendingKey)) {
+            flush();
+        }
+        if (pending == null) {
+            pending = message;
+            pendingKey = key;
+            pendingSince = nowNanos;
+        }
+        pendingText.append(key.textOf(message.getStreamEvent()));
+        pendingCount++;
+        if (pendingText.length() >= maxChars || isDue(nowNanos)) {
+            flush();
+        }
+    }
+
+    /** Flushes the pending run if its window has elapsed. */
+    void flushIfDue(long nowNanos) {
+        if (pending != null && isDue(nowNanos)) {
+            flush();
+        }
+    }
+
+    /** Nanoseconds until the pending run is due, or {@code Long.MAX_VALUE} if nothing is pending. */
+    long nanosUntilDue(long nowNanos) {
+        if (pending == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, pendingSince + windowNanos - nowNanos);
+    }
+
+    /** Emits the pending run, if any. */
+    void flush() {
+        if (pending == null) {
+            return;
+        }
+        MessageEvent out = pending;
+        if (pendingKey != null && pendingCount > 1) {
+            out = pendingKey.withText(pending, pendingText.toString());
+        }
+        pending = null;
+        pendingKey = null;
+        pendingText.setLength(0);
+        pendingCount = 0;
+        sink.accept(out);
+    }
+
+    /**
+     * Returns the text of a {@code text_delta} stream event, or null if {@code streamEvent} is not
+     * one. Used by {@link Turn} to fold deltas into its merged assistant message.
+     */
+    static String textDelta(StreamEvent streamEvent) {
+        DeltaKey key = DeltaKey.of(streamEvent);
+        return key != null && key.deltaType().equals("text_delta") ? key.textOf(streamEvent) : null;
+    }
+
+    private boolean isDue(long nowNanos) {
+        return nowNanos - pendingSince >= windowNanos;
+    }
+
+    /** Identifies the content block and delta field a {@code content_block_delta} extends. */
+    private record DeltaKey(double index, String deltaType, String field, String parentToolUseId) {
+
+        static DeltaKey of(StreamEvent streamEvent) {
+            Struct event = streamEvent.getEvent();
+            if (!CONTENT_BLOCK_DELTA.equals(stringField(event, "type"))) {
+                return null;
+            }
+            Value delta = event.getFieldsOrDefault("delta", null);
+            if (delta == null || !delta.hasStructValue()) {
+                return null;
+            }
+            String deltaType = stringField(delta.getStructValue(), "type");
+            String field = switch (deltaType) {
+                case "text_delta" -> "text";
+                case "thinking_delta" -> "thinking";
+                case "input_json_delta" -> "partial_json";
+                default -> null;
+            };
+            if (field == null) {
+                return null;
+            }
+            Value index = event.getFieldsOrDefault("index", null);
+            return new DeltaKey(index != null ? index.getNumberValue() : 0, deltaType, field,
+                    streamEvent.getParentToolUseId());
+        }
+
+        String textOf(StreamEvent streamEvent) {
+            return stringField(streamEvent.getEvent().getFieldsOrThrow("delta").getStructValue(), field);
+        }
+
+        MessageEvent withText(MessageEvent first, String text) {
+            StreamEvent streamEvent = first.getStreamEvent();
+            Struct event = streamEvent.getEvent();
+            Struct delta = event.getFieldsOrThrow("delta").getStructValue().toBuilder()
+                    .putFields(field, Value.newBuilder().setStringValue(text).build())
+                    .build();
+            return first.toBuilder()
+                    .setStreamEvent(streamEvent.toBuilder()
+                            .setEvent(event.toBuilder()
+                                    .putFields("delta", Value.newBuilder().setStructValue(delta).build())))
+                    .build();
+        }
+    }
+
+    private static String stringField(Struct struct, String name) {
+        Value value = struct.getFieldsOrDefault(name, null);
+        return value != null && value.hasStringValue() ? value.getStringValue() : "";
+    }
+}
@@ -0,0 +1,238 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.PermissionDecision;
+import claude_sidecar.v1.Sidecar.PermissionDecisionRequest;
+import com.dgarson.claude.sidecar.PermissionRules.Behavior;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Answers permission requests from the rules this client already granted, in front of another
+ * {@link Handlers.PermissionHandler}.
+ *
+ * <p>Whenever the delegate allows a request with {@code updated_permissions} (see
+ * {@link PermissionDecisions#withUpdatedPermissions}), the cache applies its {@code addRules},
+ * {@code replaceRules}, {@code removeRules} and {@code setMode} updates to its own copy of the
+ * session's permission state; updates sent with a deny or ask decision are not applied. Later
+ * requests are then decided locally when an explicit rule covers them (with
+ * {@link PermissionRules} semantics): a matching deny rule denies, otherwise a matching ask rule
+ * goes to the delegate, otherwise a matching allow rule allows. The permission mode is recorded
+ * but never allows anything by itself. Everything else, and every sandbox bypass or repeated
+ * ({@code attempt > 1}) request, goes to the delegate.</p>
+ *
+ * <p>The state belongs to one session: create a cache per session. {@link Session#setPermissionMode}
+ * resets it through {@link Handlers.PermissionHandler#onPermissionModeChanged}, when the cache is
+ * the session's permission handler or is wrapped by handlers that forward that call, such as a
+ * {@link PermissionPolicy} fallback. Otherwise call {@link #onPermissionModeChanged} yourself.</p>
+ */
+public final class PermissionCache implements Handlers.PermissionHandler {
+
+    private final Handlers.PermissionHandler delegate;
+    /** Rules by behavior, then tool name; guarded by {@code this}. */
+    private final Map<Behavior, Map<String, List<CachedRule>>> rules = new EnumMap<>(Behavior.class);
+    private String mode;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PermissionCache(Handlers.PermissionHandler delegate) {
+        this.delegate = delegate;
+        for (Behavior behavior : Behavior.values()) {
+            rules.put(behavior, new HashMap<>());
+        }
+    }
+
+    @Override
+    public PermissionDecision handle(PermissionDecisionRequest request) throws Exception {
+        if (!request.getIsSandboxBypassRequest() && request.getAttempt() <= 1) {
+            PermissionDecision local = decideLocally(request);
+            if (local != null) {
+                hits.incrementAndGet();
+                return local;
+            }
+        }
+        misses.incrementAndGet();
+        PermissionDecision decision = delegate.handle(request);
+        if (decision.hasUpdatedPermissions() && "allow".equals(decision.getBehavior())) {
+            apply(decision.getUpdatedPermissions());
+        }
+        return decision;
+    }
+
+    /** Applies a permission update, e.g. one sent to the sidecar some other way. */
+    public synchronized void apply(PermissionUpdate update) {
+        if (update.type() == null) {
+            return;
+        }
+        switch (update.type()) {
+            case "setMode" -> mode = update.mode();
+            case "addRules", "replaceRules", "removeRules" -> {
+                Behavior behavior = Behavior.of(update.behavior());
+                if (behavior == null) {
+                    return;
+                }
+                Map<String, List<CachedRule>> byTool = rules.get(behavior);
+                if (update.type().equals("replaceRules")) {
+                    byTool.clear();
+                }
+                for (PermissionRule rule : update.rules()) {
+                    if (update.type().equals("removeRules")) {
+                        List<CachedRule> list = byTool.get(rule.toolName());
+                        if (list != null) {
+                            list.removeIf(r -> r.sameContent(rule.ruleContent()));
+                        }
+                    } else {
+                        List<CachedRule> list = byTool.computeIfAbsent(rule.toolName(),
+                                k -> new ArrayList<>());
+                        if (list.stream().noneMatch(r -> r.sameContent(rule.ruleContent()))) {
+                            list.add(new CachedRule(rule.ruleContent(),
+                                    PermissionRules.hasPathSubject(rule.toolName())));
+                        }
+                    }
+                }
+            }
+            default -> {
+                // Directory updates do not affect rule matching.
+            }
+        }
+    }
+
+    /**
+     * Forgets every cached rule and records {@code mode} as the session's permission mode. Called
+     * when the mode is changed outside a permission decision, after which the sidecar's rules may
+     * no longer be what this cache saw.
+     */
+    @Override
+    public synchronized void onPermissionModeChanged(String mode) {
+        for (Map<String, List<CachedRule>> byTool : rules.values()) {
+            byTool.clear();
+        }
+        this.mode = mode;
+    }
+
+    /** The permission mode last set through an update, or null if none was seen. */
+    public synchronized String mode() {
+        return mode;
+    }
+
+    /** Returns a snapshot of the cache's counters. */
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get());
+    }
+
+    /** Cache counters: requests decided locally (hits) and passed to the delegate (misses). */
+    public record Stats(long hits, long misses) {
+
+        /** Fraction of requests decided locally, or 0 before the first. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0;
+        }
+    }
+
+    // -- Internal --
+
+    private synchronized PermissionDecision decideLocally(PermissionDecisionRequest request) {
+        String tool = request.getToolName();
+        String subject = PermissionRules.subject(tool, request.getToolInput());
+        CachedRule deny = find(Behavior.DENY, tool, subject);
+        if (deny != null) {
+            return PermissionDecisions.deny("denied by cached rule " + describe(tool, deny));
+        }
+        if (find(Behavior.ASK, tool, subject) != null) {
+            return null;
+        }
+        if (PermissionRules.allowable(tool, subject)) {
+            CachedRule allow = find(Behavior.ALLOW, tool, subject);
+            if (allow != null) {
+                return PermissionDecisions.allow("allowed by cached rule " + describe(tool, allow));
+            }
+        }
+        return null;
+    }
+
+    private CachedRule find(Behavior behavior, String tool, String subject) {
+        List<CachedRule> list = rules.get(behavior).get(tool);
+        if (list != null) {
+            for (CachedRule rule : list) {
+                if (rule.matches(subject)) {
+                    return rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void apply(Value updatedPermissions) {
+        if (!updatedPermissions.hasListValue()) {
+            return;
+        }
+        for (Value item : updatedPermissions.getListValue().getValuesList()) {
+            if (item.hasStructValue()) {
+                apply(toUpdate(item.getStructValue()));
+            }
+        }
+    }
+
+    /** Parses the map form produced by {@link PermissionUpdate#toMap()}. */
+    private static PermissionUpdate toUpdate(Struct struct) {
+        Map<String, Value> fields = struct.getFieldsMap();
+        List<PermissionRule> rules = new ArrayList<>();
+        Value ruleList = fields.get("rules");
+        if (ruleList != null && ruleList.hasListValue()) {
+            for (Value rule : ruleList.getListValue().getValuesList()) {
+                Map<String, Value> ruleFields = rule.getStructValue().getFieldsMap();
+                rules.add(new PermissionRule(string(ruleFields, "toolName"),
+                        string(ruleFields, "ruleContent")));
+            }
+        }
+        return new PermissionUpdate(string(fields, "type"), string(fields, "behavior"),
+                string(fields, "mode"), string(fields, "destination"), rules, List.of());
+    }
+
+    private static String string(Map<String, Value> fields, String name) {
+        Value value = fields.get(name);
+        return value != null && value.hasStringValue() ? value.getStringValue() : null;
+    }
+
+    private static String describe(String tool, CachedRule rule) {
+        return rule.content == null ? tool : tool + "(" + rule.content + ")";
+    }
+
+    /** Rule content with its glob compiled once, for its tool's kind of subject. */
+    private static final class CachedRule {
+        final String content;
+        final boolean pathSubject;
+        final Pattern glob;
+
+        CachedRule(String content, boolean pathSubject) {
+            this.content = content == null || content.isEmpty() ? null : content;
+            this.pathSubject = pathSubject;
+            this.glob = this.content != null && !PermissionRules.isPrefix(this.content)
+                    && this.content.indexOf('*') >= 0
+                    ? PermissionRules.glob(this.content, pathSubject)
+                    : null;
+        }
+
+        boolean matches(String subject) {
+            if (glob != null) {
+                return subject != null && glob.matcher(subject).matches();
+            }
+            return PermissionRules.matches(content, subject, pathSubject);
+        }
+
+        boolean sameContent(String other) {
+            return content == null
+                    ? other == null || other.isEmpty()
+                    : content.equals(other);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.PermissionDecision;
+import claude_sidecar.v1.Sidecar.PermissionDecisionRequest;
+import com.dgarson.claude.sidecar.PermissionRules.Behavior;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A static allow/deny/ask policy over {@link PermissionRule}s, compiled for lookups whose cost
+ * does not grow with the number of rules.
+ *
+ * <p>Rule tool names are exact ({@code Bash}) or end in {@code *} ({@code mcp__github__*}, or
+ * {@code *} for every tool). They are compiled into a character trie, so finding the rules that
+ * apply to a request walks its tool name once. Each trie entry indexes its rule contents (see
+ * {@link PermissionRules}) by kind: exact contents in a hash map, {@code :*} prefix rules in a
+ * second character trie walked once along the request's subject (its Bash command, path or
+ * domain), and only glob contents are scanned. Deny rules win over ask rules, and ask rules over
+ * allow rules; requests no rule covers go to the {@linkplain Builder#fallback fallback handler}.</p>
+ *
+ * <pre>{@code
+ * PermissionPolicy policy = PermissionPolicy.builder()
+ *         .allow("Read", "Glob", "Grep", "Bash(git status:*)", "Bash(npm run test:*)")
+ *         .deny("Bash(rm -rf:*)", "WebFetch(domain:internal.example)")
+ *         .ask("mcp__github__*")
+ *         .fallback(humanApproval)
+ *         .build();
+ * Handlers handlers = Handlers.builder().permission(policy).build();
+ * }</pre>
+ */
+public final class PermissionPolicy implements Handlers.PermissionHandler {
+
+    private final Node tools;
+    private final Handlers.PermissionHandler fallback;
+    private final int ruleCount;
+
+    private final AtomicLong decided = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+
+    private PermissionPolicy(Builder builder) {
+        this.tools = new Node();
+        for (Map.Entry<Behavior, List<PermissionRule>> e : builder.rules.entrySet()) {
+            for (PermissionRule rule : e.getValue()) {
+                tools.entryFor(rule.toolName()).index(e.getKey()).add(rule.ruleContent());
+            }
+        }
+        this.fallback = builder.fallback;
+        this.ruleCount = builder.rules.values().stream().mapToInt(List::size).sum();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public PermissionDecision handle(PermissionDecisionRequest request) throws Exception {
+        PermissionDecision decision = decide(request);
+        if (decision != null) {
+            decided.incrementAndGet();
+            return decision;
+        }
+        forwarded.incrementAndGet();
+        return fallback != null
+                ? fallback.handle(request)
+                : PermissionDecisions.deny("no permission rule matched " + request.getToolName());
+    }
+
+    /** Forwards the mode change to the fallback handler. */
+    @Override
+    public void onPermissionModeChanged(String mode) {
+        if (fallback != null) {
+            fallback.onPermissionModeChanged(mode);
+        }
+    }
+
+    /** Returns the policy's decision for {@code request}, or null if no rule covers it. */
+    public PermissionDecision decide(PermissionDecisionRequest request) {
+        String tool = request.getToolName();
+        String subject = PermissionRules.subject(tool, request.getToolInput());
+        boolean pathSubject = PermissionRules.hasPathSubject(tool);
+        List<Entry> entries = tools.lookup(tool);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        for (Behavior behavior : Behavior.values()) {
+            if (behavior == Behavior.ALLOW && !PermissionRules.allowable(tool, subject)) {
+                continue;
+            }
+            for (Entry entry : entries) {
+                ContentIndex index = entry.indexes.get(behavior);
+                String rule = index != null ? index.match(subject, pathSubject) : null;
+                if (rule != null) {
+                    String reason = "policy rule " + entry.pattern
+                            + (rule.isEmpty() ? "" : "(" + rule + ")");
+                    return switch (behavior) {
+                        case DENY -> PermissionDecisions.deny("denied by " + reason);
+                        case ASK -> PermissionDecisions.ask("confirmation required by " + reason);
+                        case ALLOW -> PermissionDecisions.allow("allowed by " + reason);
+                    };
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Number of rules compiled into the policy. */
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /** Returns a snapshot of the policy's counters. */
+    public Stats stats() {
+        return new Stats(decided.get(), forwarded.get());
+    }
+
+    /** Requests the policy decided, and those it forwarded to the fallback. */
+    public record Stats(long decided, long forwarded) {}
+
+    // -- Internal: tool name trie --
+
+    /** Character trie over rule tool names. */
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        /** Rules whose tool name is exactly the path to this node. */
+        Entry exact;
+        /** Rules whose tool name is the path to this node followed by {@code *}. */
+        Entry wildcard;
+
+        Entry entryFor(String pattern) {
+            boolean isWildcard = pattern.endsWith("*");
+            String literal = isWildcard ? pattern.substring(0, pattern.length() - 1) : pattern;
+            Node node = this;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.children.computeIfAbsent(literal.charAt(i), c -> new Node());
+            }
+            if (isWildcard) {
+                return node.wildcard != null ? node.wildcard : (node.wildcard = new Entry(pattern));
+            }
+            return node.exact != null ? node.exact : (node.exact = new Entry(pattern));
+        }
+
+        /** Entries that apply to {@code tool}, most specific first. */
+        List<Entry> lookup(String tool) {
+            List<Entry> found = new ArrayList<>(2);
+            Node node = this;
+            for (int i = 0; i < tool.length() && node != null; i++) {
+                if (node.wildcard != null) {
+                    found.add(node.wildcard);
+                }
+                node = node.children.get(tool.charAt(i));
+            }
+            if (node != null) {
+                if (node.wildcard != null) {
+                    found.add(node.wildcard);
+                }
+                if (node.exact != null) {
+                    found.add(node.exact);
+                }
+            }
+            // Collected shortest prefix first; the exact entry (if any) is last.
+            Collections.reverse(found);
+            return found;
+        }
+    }
+
+    /** Rules for one tool name pattern, by behavior. */
+    private static final class Entry {
+        final String pattern;
+        final Map<Behavior, ContentIndex> indexes = new EnumMap<>(Behavior.class);
+
+        Entry(String pattern) {
+            this.pattern = pattern;
+        }
+
+        ContentIndex index(Behavior behavior) {
+            return indexes.computeIfAbsent(behavior, b -> new ContentIndex());
+        }
+    }
+
+    // -- Internal: rule content index --
+
+    /** Rule contents of one behavior for one tool name pattern. */
+    private static final class ContentIndex {
+        /** A rule without content, which covers every invocation. */
+        boolean any;
+        final Map<String, String> exact = new HashMap<>();
+        final PrefixNode prefixes = new PrefixNode();
+        boolean hasPrefixes;
+        final List<Glob> globs = new ArrayList<>();
+
+        void add(String content) {
+            if (content == null || content.isEmpty()) {
+                any = true;
+            } else if (PermissionRules.isPrefix(content)) {
+                PrefixNode node = prefixes;
+                String prefix = PermissionRules.prefix(content);
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+                }
+                node.rule = content;
+                hasPrefixes = true;
+            } else if (content.indexOf('*') >= 0) {
+                globs.add(new Glob(content, PermissionRules.glob(content, true),
+                        PermissionRules.glob(content, false)));
+            } else {
+                exact.put(content, content);
+            }
+        }
+
+        /**
+         * Returns the matching rule content ("" for a content-less rule), or null. Globs apply
+         * file path semantics if {@code pathSubject}.
+         */
+        String match(String subject, boolean pathSubject) {
+            if (any) {
+                return "";
+            }
+            if (subject == null) {
+                return null;
+            }
+            String rule = exact.get(subject);
+            if (rule != null) {
+                return rule;
+            }
+            if (hasPrefixes) {
+                PrefixNode node = prefixes;
+                for (int i = 0; node != null; i++) {
+                    if (node.rule != null) {
+                        return node.rule;
+                    }
+                    node = i < subject.length() ? node.children.get(subject.charAt(i)) : null;
+                }
+            }
+            for (Glob glob : globs) {
+                Pattern pattern = pathSubject ? glob.path : glob.text;
+                if (pattern.matcher(subject).matches()) {
+                    return glob.content;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class PrefixNode {
+        final Map<Character, PrefixNode> children = new HashMap<>();
+        String rule;
+    }
+
+    /** A glob compiled for path subjects and for other subjects. */
+    private record Glob(String content, Pattern path, Pattern text) {}
+
+    public static final class Builder {
+        private final Map<Behavior, List<PermissionRule>> rules = new EnumMap<>(Behavior.class);
+        private Handlers.PermissionHandler fallback;
+
+        private Builder() {
+            for (Behavior behavior : Behavior.values()) {
+                rules.put(behavior, new ArrayList<>());
+            }
+        }
+
+        public Builder allow(PermissionRule... rules) {
+            return add(Behavior.ALLOW, rules);
+        }
+
+        public Builder deny(PermissionRule... rules) {
+            return add(Behavior.DENY, rules);
+        }
+
+        public Builder ask(PermissionRule... rules) {
+            return add(Behavior.ASK, rules);
+        }
+
+        /** Adds allow rules in settings-file syntax, e.g. {@code Bash(git status:*)}. */
+        public Builder allow(String... rules) {
+            return add(Behavior.ALLOW, parse(rules));
+        }
+
+        /** Adds deny rules in settings-file syntax, e.g. {@code Bash(rm -rf:*)}. */
+        public Builder deny(String... rules) {
+            return add(Behavior.DENY, parse(rules));
+        }
+
+        /** Adds ask rules in settings-file syntax, e.g. {@code mcp__github__*}. */
+        public Builder ask(String... rules) {
+            return add(Behavior.ASK, parse(rules));
+        }
+
+        /** Decides requests no rule covers; by default they are denied. */
+        public Builder fallback(Handlers.PermissionHandler handler) {
+            this.fallback = handler;
+            return this;
+        }
+
+        public PermissionPolicy build() {
+            return new PermissionPolicy(this);
+        }
+
+        private Builder add(Behavior behavior, PermissionRule... added) {
+            for (PermissionRule rule : added) {
+                if (rule.toolName() == null || rule.toolName().isEmpty()) {
+                    throw new IllegalArgumentException("permission rule without a tool name");
+                }
+                rules.get(behavior).add(rule);
+            }
+            return this;
+        }
+
+        private static PermissionRule[] parse(String... specs) {
+            PermissionRule[] parsed = new PermissionRule[specs.length];
+            for (int i = 0; i < specs.length; i++) {
+                parsed[i] = PermissionRules.parse(specs[i]);
+            }
+            return parsed;
+        }
+    }
+}
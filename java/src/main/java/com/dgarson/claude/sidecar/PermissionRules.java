@@ -0,0 +1,177 @@
+package com.dgarson.claude.sidecar;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.net.URI;
+import java.util.regex.Pattern;
+
+/**
+ * Claude Code permission rule semantics, as applied on the client by {@link PermissionCache} and
+ * {@link PermissionPolicy}.
+ *
+ * <p>A {@link PermissionRule} names a tool and optionally a rule content that narrows it to some
+ * invocations. The content is compared with the invocation's <em>subject</em>: the command for
+ * {@code Bash}, the file path for file tools, {@code domain:<host>} for {@code WebFetch}, and
+ * nothing for other tools (whose rules must then have no content). Content ending in {@code :*}
+ * matches subjects starting with what precedes it, content with {@code *} is a glob, and anything
+ * else must match exactly. In a file path glob {@code *} stops at {@code /} and {@code **} crosses
+ * directories; in a command or domain glob {@code *} matches anything, since a {@code /} there
+ * does not separate directories.</p>
+ *
+ * <p>Allow rules are applied more strictly than deny rules: a Bash command that chains or
+ * substitutes commands is never allowed by a rule, since a prefix such as {@code git status:*}
+ * says nothing about what follows a {@code ;}.</p>
+ */
+final class PermissionRules {
+
+    private PermissionRules() {}
+
+    /** What a rule does to what it covers, in order of precedence. */
+    enum Behavior {
+        DENY, ASK, ALLOW;
+
+        /** Parses a wire behavior ({@code "allow"}, {@code "deny"}, {@code "ask"}), or null. */
+        static Behavior of(String behavior) {
+            if (behavior == null) {
+                return null;
+            }
+            return switch (behavior) {
+                case "allow" -> ALLOW;
+                case "deny" -> DENY;
+                case "ask" -> ASK;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Parses a rule in settings-file syntax: {@code Tool} or {@code Tool(content)}, e.g.
+     * {@code Bash(npm run test:*)}.
+     */
+    static PermissionRule parse(String spec) {
+        int open = spec.indexOf('(');
+        if (open < 0) {
+            return new PermissionRule(spec.strip(), null);
+        }
+        if (!spec.endsWith(")")) {
+            throw new IllegalArgumentException("invalid permission rule: " + spec);
+        }
+        String content = spec.substring(open + 1, spec.length() - 1);
+        return new PermissionRule(spec.substring(0, open).strip(), content.isEmpty() ? null : content);
+    }
+
+    /** Returns the part of {@code toolInput} that rule content applies to, or null if none. */
+    static String subject(String toolName, Struct toolInput) {
+        return switch (toolName) {
+            case "Bash" -> string(toolInput, "command");
+            case "Read", "Write", "Edit", "MultiEdit" -> string(toolInput, "file_path");
+            case "NotebookEdit" -> string(toolInput, "notebook_path");
+            case "Glob", "Grep", "LS" -> string(toolInput, "path");
+            case "WebFetch" -> domain(string(toolInput, "url"));
+            default -> null;
+        };
+    }
+
+    /** True if {@code toolName}'s subject is a file path, whose globs stop at {@code /}. */
+    static boolean hasPathSubject(String toolName) {
+        return switch (toolName) {
+            case "Read", "Write", "Edit", "MultiEdit", "NotebookEdit", "Glob", "Grep", "LS" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * True if a rule with {@code ruleContent} for the invocation's tool covers {@code subject},
+     * with file path glob semantics if {@code pathSubject} (see {@link #hasPathSubject}).
+     */
+    static boolean matches(String ruleContent, String subject, boolean pathSubject) {
+        if (ruleContent == null || ruleContent.isEmpty()) {
+            return true;
+        }
+        if (subject == null) {
+            return false;
+        }
+        if (isPrefix(ruleContent)) {
+            return subject.startsWith(prefix(ruleContent));
+        }
+        if (ruleContent.indexOf('*') >= 0) {
+            return glob(ruleContent, pathSubject).matcher(subject).matches();
+        }
+        return ruleContent.equals(subject);
+    }
+
+    /**
+     * False if an allow rule must not be trusted for {@code subject}, because it is a Bash
+     * command with shell operators or substitutions.
+     */
+    static boolean allowable(String toolName, String subject) {
+        if (!"Bash".equals(toolName) || subject == null) {
+            return true;
+        }
+        for (int i = 0; i < subject.length(); i++) {
+            switch (subject.charAt(i)) {
+                case ';', '&', '|', '`', '$', '>', '<', '\n', '(', ')':
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /** True for prefix rules such as {@code npm run test:*}. */
+    static boolean isPrefix(String ruleContent) {
+        return ruleContent.endsWith(":*");
+    }
+
+    /** The literal prefix of a prefix rule. */
+    static String prefix(String ruleContent) {
+        return ruleContent.substring(0, ruleContent.length() - 2);
+    }
+
+    /**
+     * Compiles a glob rule content into an anchored regex, with {@code *} stopping at {@code /}
+     * only if {@code pathSubject}.
+     */
+    static Pattern glob(String ruleContent, boolean pathSubject) {
+        StringBuilder regex = new StringBuilder(ruleContent.length() + 16);
+        int literalStart = 0;
+        for (int i = 0; i < ruleContent.length(); i++) {
+            if (ruleContent.charAt(i) != '*') {
+                continue;
+            }
+            if (i > literalStart) {
+                regex.append(Pattern.quote(ruleContent.substring(literalStart, i)));
+            }
+            if (i + 1 < ruleContent.length() && ruleContent.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append(pathSubject ? "[^/]*" : ".*");
+            }
+            literalStart = i + 1;
+        }
+        if (literalStart < ruleContent.length()) {
+            regex.append(Pattern.quote(ruleContent.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String string(Struct struct, String field) {
+        Value value = struct.getFieldsMap().get(field);
+        return value != null && value.hasStringValue() ? value.getStringValue() : null;
+    }
+
+    private static String domain(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? "domain:" + host : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.dgarson.claude.sidecar;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds a tool input {@link Struct} to a record, and describes the record as a JSON Schema.
+ *
+ * <p>Codecs are built once per record class and cached; decoding then walks a precomputed list of
+ * component readers and calls the canonical constructor through a {@link MethodHandle}, with no
+ * intermediate {@code Map}. Supported component types are {@code String}, {@code boolean},
+ * {@code int}, {@code long}, {@code double} (and their boxes), enums (by constant name), nested
+ * records, {@code List<T>} and {@code Map<String, T>} of a supported type, {@link Struct},
+ * {@link Value} and {@code Object} (as {@link ProtoUtil#fromValue}). Absent or null fields decode
+ * to null, or to zero/false for primitives, which are the only components the schema marks
+ * required. Records that contain themselves, directly or through other records, cannot be
+ * described by an inline schema and are rejected.</p>
+ */
+final class RecordCodec<R extends Record> {
+
+    private static final ClassValue<RecordCodec<?>> CODECS = new ClassValue<>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected RecordCodec<?> computeValue(Class<?> type) {
+            Set<Class<?>> building = BUILDING.get();
+            if (!building.add(type)) {
+                throw new IllegalArgumentException("recursive tool input type: " + type.getName());
+            }
+            try {
+                return new RecordCodec(type.asSubclass(Record.class));
+            } finally {
+                building.remove(type);
+            }
+        }
+    };
+
+    /** Record classes whose codecs this thread is building, to reject recursive types. */
+    private static final ThreadLocal<Set<Class<?>>> BUILDING = ThreadLocal.withInitial(HashSet::new);
+
+    private final Class<R> type;
+    private final String[] names;
+    private final Reader[] readers;
+    private final Object[] defaults;
+    private final MethodHandle constructor;
+    private final Struct schema;
+
+    private RecordCodec(Class<R> type) {
+        if (!type.isRecord()) {
+            throw new IllegalArgumentException(type.getName() + " is not a record");
+        }
+        this.type = type;
+        RecordComponent[] components = type.getRecordComponents();
+        this.names = new String[components.length];
+        this.readers = new Reader[components.length];
+        this.defaults = new Object[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        Struct.Builder properties = Struct.newBuilder();
+        ListValue.Builder required = ListValue.newBuilder();
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            names[i] = component.getName();
+            readers[i] = reader(component.getGenericType());
+            defaults[i] = primitiveDefault(component.getType());
+            parameterTypes[i] = component.getType();
+            properties.putFields(names[i], Value.newBuilder()
+                    .setStructValue(schema(component.getGenericType()))
+                    .build());
+            if (component.getType().isPrimitive()) {
+                required.addValues(string(names[i]));
+            }
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            this.constructor = lookup.findConstructor(type,
+                            MethodType.methodType(void.class, parameterTypes))
+                    .asSpreader(Object[].class, components.length);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("cannot access the canonical constructor of "
+                    + type.getName(), e);
+        }
+        Struct.Builder schema = Struct.newBuilder()
+                .putFields("type", string("object"))
+                .putFields("properties", Value.newBuilder().setStructValue(properties).build());
+        if (required.getValuesCount() > 0) {
+            schema.putFields("required", Value.newBuilder().setListValue(required).build());
+        }
+        this.schema = schema.build();
+    }
+
+    /** Returns the cached codec for {@code type}. */
+    @SuppressWarnings("unchecked")
+    static <R extends Record> RecordCodec<R> of(Class<R> type) {
+        return (RecordCodec<R>) CODECS.get(type);
+    }
+
+    /** JSON Schema of the record, suitable as a {@link ToolSpec#inputSchema()}. */
+    Struct schema() {
+        return schema;
+    }
+
+    /**
+     * Decodes {@code input} into a new record.
+     *
+     * @throws IllegalArgumentException if a field does not have the component's type
+     */
+    R decode(Struct input) {
+        Map<String, Value> fields = input.getFieldsMap();
+        Object[] args = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Value value = fields.get(names[i]);
+            if (value == null || value.hasNullValue()) {
+                args[i] = defaults[i];
+                continue;
+            }
+            try {
+                args[i] = readers[i].read(value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid " + type.getSimpleName() + "."
+                        + names[i] + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            return type.cast(constructor.invoke(args));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException("cannot construct " + type.getSimpleName(), t);
+        }
+    }
+
+    // -- Internal --
+
+    @FunctionalInterface
+    private interface Reader {
+        Object read(Value value);
+    }
+
+    private static Reader reader(Type type) {
+        if (type instanceof ParameterizedType parameterized) {
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            if (raw == List.class) {
+                Reader element = reader(parameterized.getActualTypeArguments()[0]);
+                return value -> {
+                    List<Value> values = expect(value, Value.KindCase.LIST_VALUE, "array")
+                            .getListValue().getValuesList();
+                    List<Object> list = new ArrayList<>(values.size());
+                    for (Value item : values) {
+                        list.add(item.hasNullValue() ? null : element.read(item));
+                    }
+                    return Collections.unmodifiableList(list);
+                };
+            }
+            if (raw == Map.class) {
+                Type valueType = mapValueType(parameterized);
+                if (valueType == Object.class) {
+                    return value -> ProtoUtil.structToMap(
+                            expect(value, Value.KindCase.STRUCT_VALUE, "object").getStructValue());
+                }
+                Reader element = reader(valueType);
+                return value -> {
+                    Map<String, Value> fields = expect(value, Value.KindCase.STRUCT_VALUE, "object")
+                            .getStructValue().getFieldsMap();
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (Map.Entry<String, Value> field : fields.entrySet()) {
+                        Value item = field.getValue();
+                        map.put(field.getKey(), item.hasNullValue() ? null : element.read(item));
+                    }
+                    return Collections.unmodifiableMap(map);
+                };
+            }
+            throw new IllegalArgumentException("unsupported tool input type: " + type);
+        }
+        if (!(type instanceof Class<?> cls)) {
+            throw new IllegalArgumentException("unsupported tool input type: " + type);
+        }
+        if (cls == String.class) {
+            return value -> expect(value, Value.KindCase.STRING_VALUE, "string").getStringValue();
+        }
+        if (cls == boolean.class || cls == Boolean.class) {
+            return value -> expect(value, Value.KindCase.BOOL_VALUE, "boolean").getBoolValue();
+        }
+        if (cls == int.class || cls == Integer.class) {
+            return value -> {
+                long n = integral(value);
+                if (n != (int) n) {
+                    throw new IllegalArgumentException("integer out of range: " + n);
+                }
+                return (int) n;
+            };
+        }
+        if (cls == long.class || cls == Long.class) {
+            return RecordCodec::integral;
+        }
+        if (cls == double.class || cls == Double.class) {
+            return value -> expect(value, Value.KindCase.NUMBER_VALUE, "number").getNumberValue();
+        }
+        if (cls.isEnum()) {
+            return value -> enumConstant(cls, expect(value, Value.KindCase.STRING_VALUE, "string")
+                    .getStringValue());
+        }
+        if (cls.isRecord()) {
+            RecordCodec<?> nested = of(cls.asSubclass(Record.class));
+            return value -> nested.decode(
+                    expect(value, Value.KindCase.STRUCT_VALUE, "object").getStructValue());
+        }
+        if (cls == Map.class) {
+            return value -> ProtoUtil.structToMap(
+                    expect(value, Value.KindCase.STRUCT_VALUE, "object").getStructValue());
+        }
+        if (cls == Struct.class) {
+            return value -> expect(value, Value.KindCase.STRUCT_VALUE, "object").getStructValue();
+        }
+        if (cls == Value.class) {
+            return value -> value;
+        }
+        if (cls == Object.class) {
+            return ProtoUtil::fromValue;
+        }
+        throw new IllegalArgumentException("unsupported tool input type: " + cls.getName());
+    }
+
+    private static Struct schema(Type type) {
+        if (type instanceof ParameterizedType parameterized) {
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            if (raw == List.class) {
+                return Struct.newBuilder()
+                        .putFields("type", string("array"))
+                        .putFields("items", Value.newBuilder()
+                                .setStructValue(schema(parameterized.getActualTypeArguments()[0]))
+                                .build())
+                        .build();
+            }
+            if (raw == Map.class) {
+                Type valueType = mapValueType(parameterized);
+                if (valueType != Object.class) {
+                    return typeSchema("object").toBuilder()
+                            .putFields("additionalProperties", Value.newBuilder()
+                                    .setStructValue(schema(valueType))
+                                    .build())
+                            .build();
+                }
+            }
+            return typeSchema("object");
+        }
+        Class<?> cls = (Class<?>) type;
+        if (cls == String.class) {
+            return typeSchema("string");
+        }
+        if (cls == boolean.class || cls == Boolean.class) {
+            return typeSchema("boolean");
+        }
+        if (cls == int.class || cls == Integer.class || cls == long.class || cls == Long.class) {
+            return typeSchema("integer");
+        }
+        if (cls == double.class || cls == Double.class) {
+            return typeSchema("number");
+        }
+        if (cls.isEnum()) {
+            ListValue.Builder constants = ListValue.newBuilder();
+            for (Object constant : cls.getEnumConstants()) {
+                constants.addValues(string(((Enum<?>) constant).name()));
+            }
+            return typeSchema("string").toBuilder()
+                    .putFields("enum", Value.newBuilder().setListValue(constants).build())
+                    .build();
+        }
+        if (cls.isRecord()) {
+            return of(cls.asSubclass(Record.class)).schema();
+        }
+        if (cls == Map.class || cls == Struct.class) {
+            return typeSchema("object");
+        }
+        return Struct.getDefaultInstance();
+    }
+
+    /** Value type of a {@code Map<String, T>} component. */
+    private static Type mapValueType(ParameterizedType map) {
+        Type[] arguments = map.getActualTypeArguments();
+        if (arguments[0] != String.class) {
+            throw new IllegalArgumentException("unsupported tool input type: " + map
+                    + " (map keys must be String)");
+        }
+        return arguments[1];
+    }
+
+    private static Value expect(Value value, Value.KindCase kind, String name) {
+        if (value.getKindCase() != kind) {
+            throw new IllegalArgumentException("expected " + name + ", got "
+                    + value.getKindCase().name().toLowerCase());
+        }
+        return value;
+    }
+
+    private static long integral(Value value) {
+        double number = expect(value, Value.KindCase.NUMBER_VALUE, "number").getNumberValue();
+        if (number != Math.rint(number) || Math.abs(number) > 0x1p53) {
+            throw new IllegalArgumentException("expected integer, got " + number);
+        }
+        return (long) number;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumConstant(Class<?> type, String name) {
+        return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    private static Object primitiveDefault(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        throw new IllegalArgumentException("unsupported tool input type: " + type.getName());
+    }
+
+    private static Struct typeSchema(String type) {
+        return Struct.newBuilder().putFields("type", string(type)).build();
+    }
+
+    private static Value string(String s) {
+        return Value.newBuilder().setStringValue(s).build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ServerEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops events of turns that began on an earlier stream after a {@link Session} reattaches.
+ *
+ * <p>The protocol has no resume point or event sequence numbers: after a reconnect the client
+ * cannot tell which of a turn's events were lost during the outage and which the sidecar sends
+ * again. A turn that was in flight when the stream failed is therefore treated as lost. The
+ * session fails its {@link StreamHandle}s (see {@link EventMux#failRequests}), and this filter
+ * drops any later events of such turns, so session-wide subscribers do not see a turn with a
+ * gap or repeated events either. Callback requests of such turns are still answered, and the
+ * events' inbound flow-control credit is returned (see {@link EventMux#credit}).</p>
+ *
+ * <p>Turns are keyed by {@code request_id} and {@code turn_id} and tagged with the stream they
+ * were first seen on. Events that do not belong to a turn (init, stderr, background) and turns
+ * first seen on the current stream always pass. Only the most recent {@code maxTurns} turns are
+ * remembered.</p>
+ */
+final class ReplayFilter {
+
+    /** Stream number a turn was first seen on, by turn key. */
+    private final Map<String, Integer> turns;
+    private int stream;
+
+    ReplayFilter(int maxTurns) {
+        this.turns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxTurns;
+            }
+        };
+    }
+
+    /** Called when the session's stream has failed and is about to be replaced. */
+    synchronized void onReattach() {
+        stream++;
+    }
+
+    /** Returns false if {@code event} belongs to a turn begun on an earlier stream. */
+    synchronized boolean accept(ServerEvent event) {
+        String turnId = event.getTurnId();
+        if (turnId.isEmpty()) {
+            return true;
+        }
+        Integer seenOn = turns.putIfAbsent(event.getRequestId() + '/' + turnId, stream);
+        return seenOn == null || seenOn == stream;
+    }
+}
@@ -0,0 +1,216 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.ClaudeSidecarGrpc;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Retry and hedging policy for idempotent control-plane RPCs, applied by gRPC through a channel
+ * service config (see {@link SidecarClient#connect(String, RetryConfig)}).
+ *
+ * <p>By default {@code GetSession}, {@code ListSessions} and {@code HealthCheck} are retried on
+ * {@code UNAVAILABLE} with exponential backoff. With a {@link Builder#hedgingDelay hedging delay}
+ * they are hedged instead: if an attempt has not answered within the delay, another is started
+ * and the first response wins. Either way, gRPC's retry throttling acts as a retry budget for the
+ * channel: every failure spends a token, every success earns back {@code tokenRatio}, and retries
+ * and hedges stop while fewer than half of {@code maxTokens} remain.</p>
+ *
+ * <p>Non-idempotent methods are never listed here. {@code CreateSession} is only retried when a
+ * config is passed to
+ * {@link SidecarClient#createSession(claude_sidecar.v1.Sidecar.CreateSessionRequest, String, RetryConfig)},
+ * which is safe only against a sidecar that deduplicates on the idempotency key.</p>
+ */
+public final class RetryConfig {
+
+    private static final String SERVICE = ClaudeSidecarGrpc.SERVICE_NAME;
+    private static final RetryConfig DEFAULTS = builder().build();
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double backoffMultiplier;
+    private final Set<Status.Code> retryableCodes;
+    private final Duration hedgingDelay;
+    private final int budgetMaxTokens;
+    private final double budgetTokenRatio;
+    private final List<String> methods;
+
+    private RetryConfig(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.retryableCodes = Set.copyOf(builder.retryableCodes);
+        this.hedgingDelay = builder.hedgingDelay;
+        this.budgetMaxTokens = builder.budgetMaxTokens;
+        this.budgetTokenRatio = builder.budgetTokenRatio;
+        this.methods = List.copyOf(builder.methods);
+    }
+
+    public static RetryConfig defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Maximum attempts per call, including the first (gRPC caps this at 5). */
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration initialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration maxBackoff() {
+        return maxBackoff;
+    }
+
+    public double backoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /** Status codes that are retried (or, when hedging, that do not cancel other attempts). */
+    public Set<Status.Code> retryableCodes() {
+        return retryableCodes;
+    }
+
+    /** Delay before a hedged attempt, or null to retry instead of hedging. */
+    public Duration hedgingDelay() {
+        return hedgingDelay;
+    }
+
+    /** Names of the {@code ClaudeSidecar} methods the policy applies to. */
+    public List<String> methods() {
+        return methods;
+    }
+
+    /**
+     * Returns the gRPC service config for this policy, for
+     * {@code ManagedChannelBuilder.defaultServiceConfig} on a channel built by hand (which also
+     * needs {@code enableRetry()}).
+     */
+    public Map<String, ?> toServiceConfig() {
+        List<Map<String, ?>> names = new ArrayList<>(methods.size());
+        for (String method : methods) {
+            names.add(Map.of("service", SERVICE, "method", method));
+        }
+        List<String> codes = new ArrayList<>(retryableCodes.size());
+        for (Status.Code code : retryableCodes) {
+            codes.add(code.name());
+        }
+
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", names);
+        if (hedgingDelay != null) {
+            methodConfig.put("hedgingPolicy", Map.of(
+                    "maxAttempts", (double) maxAttempts,
+                    "hedgingDelay", seconds(hedgingDelay),
+                    "nonFatalStatusCodes", codes));
+        } else {
+            methodConfig.put("retryPolicy", Map.of(
+                    "maxAttempts", (double) maxAttempts,
+                    "initialBackoff", seconds(initialBackoff),
+                    "maxBackoff", seconds(maxBackoff),
+                    "backoffMultiplier", backoffMultiplier,
+                    "retryableStatusCodes", codes));
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("methodConfig", List.of(methodConfig));
+        config.put("retryThrottling", Map.of(
+                "maxTokens", (double) budgetMaxTokens,
+                "tokenRatio", budgetTokenRatio));
+        return config;
+    }
+
+    /** Formats a duration the way service configs expect, e.g. {@code "0.100000000s"}. */
+    private static String seconds(Duration duration) {
+        return String.format("%d.%09ds", duration.getSeconds(), duration.getNano());
+    }
+
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        private double backoffMultiplier = 2;
+        private final Set<Status.Code> retryableCodes = EnumSet.of(Status.Code.UNAVAILABLE);
+        private Duration hedgingDelay;
+        private int budgetMaxTokens = 10;
+        private double budgetTokenRatio = 0.1;
+        private final List<String> methods = new ArrayList<>(
+                List.of("GetSession", "ListSessions", "HealthCheck"));
+
+        private Builder() {}
+
+        public Builder maxAttempts(int attempts) {
+            if (attempts < 2) {
+                throw new IllegalArgumentException("maxAttempts must be at least 2: " + attempts);
+            }
+            this.maxAttempts = attempts;
+            return this;
+        }
+
+        public Builder backoff(Duration initial, Duration max, double multiplier) {
+            if (initial.isNegative() || initial.isZero() || max.compareTo(initial) < 0
+                    || multiplier <= 0) {
+                throw new IllegalArgumentException("invalid backoff: initial " + initial
+                        + ", max " + max + ", multiplier " + multiplier);
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            this.backoffMultiplier = multiplier;
+            return this;
+        }
+
+        /** Codes that are retried; a retry policy needs at least one. */
+        public Builder retryableCodes(Status.Code... codes) {
+            retryableCodes.clear();
+            retryableCodes.addAll(List.of(codes));
+            return this;
+        }
+
+        /** Hedge instead of retrying, sending another attempt every {@code delay}. */
+        public Builder hedgingDelay(Duration delay) {
+            this.hedgingDelay = delay;
+            return this;
+        }
+
+        /**
+         * Retry budget shared by every call on the channel: {@code maxTokens} in (0, 1000] and
+         * the fraction of a token each success returns.
+         */
+        public Builder retryBudget(int maxTokens, double tokenRatio) {
+            if (maxTokens <= 0 || maxTokens > 1000 || tokenRatio <= 0) {
+                throw new IllegalArgumentException("invalid retry budget: maxTokens " + maxTokens
+                        + ", tokenRatio " + tokenRatio);
+            }
+            this.budgetMaxTokens = maxTokens;
+            this.budgetTokenRatio = tokenRatio;
+            return this;
+        }
+
+        /** Replace the methods the policy applies to; only list idempotent ones. */
+        public Builder methods(String... names) {
+            methods.clear();
+            methods.addAll(List.of(names));
+            return this;
+        }
+
+        public RetryConfig build() {
+            if (hedgingDelay == null && retryableCodes.isEmpty()) {
+                throw new IllegalArgumentException("a retry policy needs at least one retryable code");
+            }
+            return new RetryConfig(this);
+        }
+    }
+}
@@ -18,11 +18,26 @@ import claude_sidecar.v1.Sidecar.StreamInputChunk;
 import claude_sidecar.v1.Sidecar.ToolInvocationRequest;
 import claude_sidecar.v1.Sidecar.ToolInvocationResponse;
 import com.google.protobuf.Struct;
+import io.grpc.Status;
+import io.grpc.stub.CallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,29 +46,74 @@ import java.util.logging.Logger;
  * Mirrors Go's session.go.
  *
  * <p>The session dispatches tool, hook, and permission callback requests to the provided
- * {@link Handlers}, and multiplexes all other events through an {@link EventMux}.</p>
+ * {@link Handlers} through a {@link CallbackExecutor} (by default a
+ * {@link BoundedCallbackExecutor} of its own, see {@link SessionConfig#callbackExecutor()}), and
+ * multiplexes all other events through an {@link EventMux}.</p>
+ *
+ * <p>Each callback has a deadline when the sidecar enforces one: hooks per the
+ * {@link SessionConfig#clientHooks()} specs, tools and permissions when configured. Shortly before
+ * it passes, the handler is interrupted and a fallback is sent in its place (by default a
+ * continuing hook output, an error tool result or a deny), so the sidecar never reports
+ * {@code CALLBACK_TIMEOUT}; the handler's own late response is then dropped.</p>
+ *
+ * <p>With {@link SessionConfig#reattachOnError()}, a transport error does not end the session:
+ * outbound messages queue while the client reattaches to the same sidecar session, and
+ * session-wide subscriptions continue on the new stream. The protocol cannot resume a turn, so
+ * {@link StreamHandle}s in flight when the stream failed fail with an {@link IOException}, and
+ * later events of their turns are dropped (see {@link ReplayFilter}).</p>
  */
 public final class Session implements AutoCloseable {
 
     private static final Logger LOG = Logger.getLogger(Session.class.getName());
     private static final SecureRandom RANDOM = new SecureRandom();
+    /** Turns remembered for replay suppression after a reattach. */
+    private static final int REPLAY_TURNS = 256;
+    /** Fires callback deadlines for every session; the tasks only claim and enqueue. */
+    private static final ScheduledThreadPoolExecutor DEADLINES = newDeadlineScheduler();
 
     private final String sessionId;
-    private final StreamObserver<ClientEvent> requestObserver;
     private final Handlers handlers;
+    private final SessionConfig config;
     private final EventMux mux;
-    private final EventMux.Subscription globalSubscription;
+    private final Object eventsLock = new Object();
+    private volatile EventMux.Subscription globalSubscription;
     private final AtomicBoolean closed = new AtomicBoolean(false);
-    private final Object sendLock = new Object();
+    private final OutboundQueue outbound;
+    /** Replay suppression for resilient sessions; null unless reattach is configured. */
+    private final ReplayFilter replayFilter;
+    /** Opens a replacement stream and calls {@link #resumeStream}; set by SidecarClient. */
+    private volatile Runnable reattacher;
+    /** Incremented per stream; callbacks from superseded streams are ignored. */
+    private final AtomicInteger streamGeneration = new AtomicInteger();
+    private volatile int failedAttempts;
+    /** When the current stream was opened or resumed, in {@link System#nanoTime()} units. */
+    private volatile long streamStartNanos = System.nanoTime();
+    private final AtomicLong reattaches = new AtomicLong();
+    private final CompletableFuture<SessionInitInfo> sessionInit = new CompletableFuture<>();
+    private final CallbackExecutor callbacks;
+    private final CallbackDeadlines hookDeadlines;
+    private final AtomicLong timedOutCallbacks = new AtomicLong();
+    private final AtomicLong lateCallbackResponses = new AtomicLong();
 
     Session(String sessionId,
             StreamObserver<ClientEvent> requestObserver,
-            Handlers handlers) {
+            Handlers handlers,
+            SessionConfig config) {
         this.sessionId = sessionId;
-        this.requestObserver = requestObserver;
         this.handlers = handlers;
-        this.mux = new EventMux();
-        this.globalSubscription = mux.subscribeAll(256);
+        this.config = config;
+        this.outbound = new OutboundQueue(requestObserver, config.outboundBufferSize());
+        this.mux = config.eventDispatcher() != null
+                ? new EventMux(config.eventDispatcher(), sessionId)
+                : new EventMux();
+        this.replayFilter = config.reattachOnError() ? new ReplayFilter(REPLAY_TURNS) : null;
+        this.callbacks = config.callbackExecutor() != null
+                ? config.callbackExecutor()
+                : BoundedCallbackExecutor.withDefaults();
+        this.hookDeadlines = new CallbackDeadlines(config.clientHooks());
+        if (config.subscribeEventsOnAttach()) {
+            events();
+        }
     }
 
     // -- Public API --
@@ -66,9 +126,64 @@ public final class Session implements AutoCloseable {
     /**
      * Returns a blocking queue that receives all server events for this session.
      * This is the Java equivalent of Go's {@code Events() <-chan *pb.ServerEvent}.
+     *
+     * <p>The session-wide subscription is created on the first call (unless
+     * {@link SessionConfig#subscribeEventsOnAttach()} is set), so sessions that only use
+     * {@link #run} / {@link #stream} never buffer events here. Events dispatched before the
+     * subscription exists are not replayed. Call {@link #releaseEvents()} to drop it again.</p>
+     *
+     * <p>When the stream ends, or the queue overflows under {@link OverflowPolicy#FAIL}, its last
+     * element is {@link EventSubscription#END_OF_STREAM}.</p>
      */
     public BlockingQueue<ServerEvent> events() {
-        return globalSubscription.queue();
+        EventMux.Subscription sub = globalSubscription;
+        if (sub == null) {
+            synchronized (eventsLock) {
+                sub = globalSubscription;
+                if (sub == null) {
+                    sub = mux.subscribeAll(config.eventsBufferSize(), config.eventsOverflowPolicy());
+                    globalSubscription = sub;
+                }
+            }
+        }
+        return sub.queue();
+    }
+
+    /**
+     * Unsubscribes the session-wide events queue returned by {@link #events()} and discards any
+     * events still buffered in it. A later call to {@link #events()} starts a fresh subscription.
+     */
+    public void releaseEvents() {
+        EventMux.Subscription sub;
+        synchronized (eventsLock) {
+            sub = globalSubscription;
+            globalSubscription = null;
+        }
+        if (sub != null) {
+            mux.unsubscribeAll(sub);
+            sub.queue().clear();
+        }
+    }
+
+    /**
+     * Subscribe to session-wide events whose payload is one of {@code payloads}, using the
+     * session's configured events buffer size and overflow policy.
+     */
+    public EventSubscription subscribe(Set<ServerEvent.PayloadCase> payloads) {
+        return subscribe(EventFilters.payloads(payloads),
+                config.eventsBufferSize(), config.eventsOverflowPolicy());
+    }
+
+    /**
+     * Subscribe to session-wide events accepted by {@code filter}. The filter runs on the dispatch
+     * thread before an event is enqueued, so events it rejects (such as high-rate partial
+     * {@code StreamEvent}s) never cost buffer space or consumer wakeups. It must not block.
+     *
+     * @see EventFilters
+     */
+    public EventSubscription subscribe(Predicate<ServerEvent> filter, int bufferSize,
+                                       OverflowPolicy policy) {
+        return new EventSubscription(mux, mux.subscribeAll(bufferSize, policy, filter));
     }
 
     /**
@@ -77,6 +192,11 @@ public final class Session implements AutoCloseable {
      */
     public String query(String prompt) {
         String requestId = newId("req");
+        sendQuery(requestId, prompt);
+        return requestId;
+    }
+
+    private void sendQuery(String requestId, String prompt) {
         send(ClientEvent.newBuilder()
                 .setRequestId(requestId)
                 .setSidecarSessionId(sessionId)
@@ -84,14 +204,23 @@ public final class Session implements AutoCloseable {
                         .setPromptText(prompt)
                         .build())
                 .build());
-        return requestId;
     }
 
     /**
      * Send a query and block until the turn completes, returning the full result.
      */
     public RunResult run(String prompt) throws Exception {
-        StreamHandle handle = stream(prompt);
+        return run(prompt, StreamOptions.defaults());
+    }
+
+    /**
+     * Send a query with the given stream options and block until the turn completes.
+     */
+    public RunResult run(String prompt, StreamOptions options) throws Exception {
+        if (options.demandDriven()) {
+            options = options.toBuilder().demandDriven(false).build();
+        }
+        StreamHandle handle = stream(prompt, options);
         return handle.result();
     }
 
@@ -99,9 +228,21 @@ public final class Session implements AutoCloseable {
      * Send a query and return a {@link StreamHandle} for async consumption of events.
      */
     public StreamHandle stream(String prompt) {
-        String requestId = query(prompt);
-        EventMux.Subscription sub = mux.subscribeRequest(requestId, 256);
-        return new StreamHandle(requestId, sub, mux);
+        return stream(prompt, StreamOptions.defaults());
+    }
+
+    /**
+     * Send a query and return a {@link StreamHandle} whose event buffer is sized and bounded
+     * according to {@code options}. With {@link StreamOptions#demandDriven()}, the handle only
+     * consumes events as subscribers of its publishers request them.
+     */
+    public StreamHandle stream(String prompt, StreamOptions options) {
+        String requestId = newId("req");
+        // Subscribe before sending so no event for this request can be dispatched unseen.
+        EventMux.Subscription sub = mux.subscribeRequest(
+                requestId, options.bufferSize(), options.overflowPolicy());
+        sendQuery(requestId, prompt);
+        return new StreamHandle(requestId, sub, mux, options);
     }
 
     /**
@@ -120,15 +261,32 @@ public final class Session implements AutoCloseable {
         return new String[]{requestId, streamId};
     }
 
-    /** Send a raw input chunk on the given stream. */
+    /**
+     * Send a raw input chunk on the given stream. Blocks while the session's outbound buffer
+     * ({@link SessionConfig#outboundBufferSize()}) is full because the stream is not ready.
+     */
     public void sendInputChunk(String streamId, Struct event) {
-        send(ClientEvent.newBuilder()
+        send(inputChunk(streamId, event));
+    }
+
+    private ClientEvent inputChunk(String streamId, Struct event) {
+        return ClientEvent.newBuilder()
                 .setSidecarSessionId(sessionId)
                 .setInputChunk(StreamInputChunk.newBuilder()
                         .setInputStreamId(streamId)
                         .setEvent(event)
                         .build())
-                .build());
+                .build();
+    }
+
+    /**
+     * Send a raw input chunk without blocking. The future completes once the chunk has been
+     * handed to gRPC, which only happens while the stream has transport capacity; a producer
+     * that waits on (or bounds) these futures is therefore paced by the sidecar. The future may
+     * complete on a gRPC thread, so chain long-running work with an {@code ...Async} stage.
+     */
+    public CompletableFuture<Void> sendInputChunkAsync(String streamId, Struct event) {
+        return sendAsync(inputChunk(streamId, event));
     }
 
     /** Signal end of input for the given stream. */
@@ -159,8 +317,15 @@ public final class Session implements AutoCloseable {
                 .build());
     }
 
-    /** Set the permission mode for this session. */
+    /**
+     * Set the permission mode for this session. The session's permission handler is told first
+     * (see {@link Handlers.PermissionHandler#onPermissionModeChanged}), so a {@link PermissionCache}
+     * it contains is reset to the new mode.
+     */
     public void setPermissionMode(String mode) {
+        if (handlers.permissionHandler() != null) {
+            handlers.permissionHandler().onPermissionModeChanged(mode);
+        }
         send(ClientEvent.newBuilder()
                 .setRequestId(newId("req"))
                 .setSidecarSessionId(sessionId)
@@ -181,49 +346,213 @@ public final class Session implements AutoCloseable {
                 .build());
     }
 
+    /**
+     * Completes with the session's first {@code SessionInit} event, which the sidecar sends once
+     * the underlying CLI is up. Fails if the stream ends first.
+     */
+    public CompletableFuture<SessionInitInfo> sessionInit() {
+        return sessionInit.copy();
+    }
+
+    /** True once the session has been closed or its stream has ended for good. */
+    public boolean isClosed() {
+        return closed.get() || outbound.isTerminated();
+    }
+
+    /** Number of times this session has reattached after a transport error. */
+    public long reattachCount() {
+        return reattaches.get();
+    }
+
+    /**
+     * Number of callbacks answered with a fallback because their handler missed its deadline
+     * (see {@link SessionConfig#clientHooks()} and {@link SessionConfig#toolCallbackTimeout()}).
+     */
+    public long timedOutCallbackCount() {
+        return timedOutCallbacks.get();
+    }
+
+    /** Number of handler responses dropped because a fallback had already been sent. */
+    public long lateCallbackResponseCount() {
+        return lateCallbackResponses.get();
+    }
+
     @Override
     public void close() {
         if (closed.compareAndSet(false, true)) {
-            try {
-                requestObserver.onCompleted();
-            } catch (Exception e) {
-                LOG.log(Level.FINE, "Error closing send stream", e);
-            }
+            outbound.halfClose();
             mux.close();
+            sessionInit.completeExceptionally(new EOFException("session closed"));
+            if (outbound.isSuspended()) {
+                // No stream to carry the half-close; release anyone waiting to send.
+                outbound.terminate(new EOFException("session closed while reattaching"));
+            }
         }
     }
 
-    // -- Internal: send with mutex --
+    // -- Internal: flow-controlled send --
 
+    /**
+     * Queues an event for the single stream writer, blocking while the outbound buffer is full.
+     *
+     * @throws IllegalStateException if the stream has ended
+     */
     void send(ClientEvent event) {
-        synchronized (sendLock) {
-            requestObserver.onNext(event);
-        }
+        outbound.send(event);
+    }
+
+    /** Queues an event without blocking; the future completes when it is handed to gRPC. */
+    CompletableFuture<Void> sendAsync(ClientEvent event) {
+        return outbound.sendAsync(event);
+    }
+
+    /** Compress outbound messages of at least {@code minBytes}; see {@link OutboundQueue}. */
+    void compressAbove(int minBytes) {
+        outbound.compressAbove(minBytes);
+    }
+
+    /** Resumes the stream writer; called from the call's on-ready handler. */
+    void onOutboundReady() {
+        outbound.onReady();
     }
 
     // -- Internal: receive loop (called from SidecarClient after stream setup) --
 
+    /**
+     * Switches inbound delivery to demand from the event dispatcher: the call (whose automatic
+     * inbound requests must already be disabled) is granted one message per free slot of the
+     * mux's inbound buffer, and again as each dispatched batch frees slots. A consumer that stops
+     * reading therefore stalls its subscription, then the dispatcher, then gRPC reads, and finally
+     * the sidecar via HTTP/2 flow control, rather than growing the heap.
+     *
+     * <p>On a reattach the buffer may still hold events from the previous stream, so the new call
+     * is only granted the slots that are free; it is credited for the rest as they drain.</p>
+     */
+    void bindInboundFlowControl(CallStreamObserver<?> call) {
+        // Swap the listener first: slots freed from here on credit the new call, and are no
+        // longer counted as occupied below.
+        mux.onDrained(call::request);
+        call.request(EventMux.INBOUND_CAPACITY - mux.inboundSize());
+    }
+
     StreamObserver<ServerEvent> createResponseObserver() {
+        int generation = streamGeneration.incrementAndGet();
         return new StreamObserver<>() {
             @Override
             public void onNext(ServerEvent event) {
+                if (generation != streamGeneration.get()) {
+                    return;
+                }
+                if (replayFilter != null && !replayFilter.accept(event)) {
+                    // The turn is gone for subscribers, but the sidecar still waits for answers
+                    // to its callbacks, and the event used a unit of inbound credit.
+                    handleCallback(event);
+                    mux.credit(1);
+                    return;
+                }
+                if (event.hasSessionInit() && !sessionInit.isDone()) {
+                    sessionInit.complete(new SessionInitInfo(event.getSessionInit()));
+                }
                 handleCallback(event);
                 mux.enqueue(event);
             }
 
             @Override
             public void onError(Throwable t) {
+                if (generation != streamGeneration.get()) {
+                    return;
+                }
+                if (shouldReattach(t)) {
+                    LOG.log(Level.WARNING, "Stream error for session " + sessionId
+                            + "; reattaching", t);
+                    replayFilter.onReattach();
+                    mux.failRequests(new IOException("stream to sidecar session " + sessionId
+                            + " was lost; turns in flight cannot be resumed", t));
+                    outbound.suspend();
+                    if (System.nanoTime() - streamStartNanos >= config.reattachMaxBackoff().toNanos()) {
+                        // The stream stayed up for a while, so this is a new outage.
+                        failedAttempts = 0;
+                    }
+                    scheduleReattach(t);
+                    return;
+                }
                 LOG.log(Level.WARNING, "Stream error for session " + sessionId, t);
+                outbound.terminate(t);
+                sessionInit.completeExceptionally(t);
                 mux.close();
             }
 
             @Override
             public void onCompleted() {
+                if (generation != streamGeneration.get()) {
+                    return;
+                }
+                EOFException eof = new EOFException("stream completed by sidecar");
+                outbound.terminate(eof);
+                sessionInit.completeExceptionally(eof);
                 mux.close();
             }
         };
     }
 
+    // -- Internal: reattach after transport errors --
+
+    /** Enables reattach for a session configured with {@link SessionConfig#reattachOnError()}. */
+    void enableReattach(Runnable reattacher) {
+        this.reattacher = reattacher;
+    }
+
+    /**
+     * Resumes outbound writes on a replacement stream, beginning with its {@code hello}. The
+     * stream's response observer must already come from {@link #createResponseObserver()}.
+     */
+    void resumeStream(StreamObserver<ClientEvent> requestObserver, ClientEvent hello) {
+        reattaches.incrementAndGet();
+        streamStartNanos = System.nanoTime();
+        outbound.resume(requestObserver, hello);
+    }
+
+    private boolean shouldReattach(Throwable t) {
+        if (reattacher == null || closed.get()) {
+            return false;
+        }
+        Status.Code code = Status.fromThrowable(t).getCode();
+        return code == Status.Code.UNAVAILABLE || code == Status.Code.INTERNAL;
+    }
+
+    private void scheduleReattach(Throwable cause) {
+        int attempt = ++failedAttempts;
+        if (attempt > config.reattachMaxAttempts()) {
+            LOG.log(Level.WARNING, "Giving up reattaching session " + sessionId
+                    + " after " + config.reattachMaxAttempts() + " attempts");
+            outbound.terminate(cause);
+            sessionInit.completeExceptionally(cause);
+            mux.close();
+            return;
+        }
+        long initial = config.reattachInitialBackoff().toNanos();
+        long backoff = Math.min(config.reattachMaxBackoff().toNanos(),
+                initial << Math.min(attempt - 1, 30));
+        // Jitter within [backoff / 2, backoff] so many sessions do not reconnect in lockstep.
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        Thread.ofVirtual().name("reattach-" + sessionId).start(() -> {
+            try {
+                Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (closed.get()) {
+                return;
+            }
+            try {
+                reattacher.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Reattach failed for session " + sessionId, e);
+                scheduleReattach(e);
+            }
+        });
+    }
+
     // -- Internal: callback dispatch --
 
     private void handleCallback(ServerEvent event) {
@@ -237,81 +566,200 @@ public final class Session implements AutoCloseable {
     }
 
     private void handleToolRequest(ToolInvocationRequest request) {
-        Thread.ofVirtual().name("tool-handler-" + request.getInvocationId()).start(() -> {
-            Struct result;
-            if (handlers.toolHandler() == null) {
-                result = ToolResults.error("missing tool handler");
-            } else {
-                try {
-                    result = handlers.toolHandler().handle(request);
-                } catch (Exception e) {
-                    result = ToolResults.error(e.getMessage());
-                }
-            }
-            send(ClientEvent.newBuilder()
-                    .setSidecarSessionId(sessionId)
-                    .setToolResponse(ToolInvocationResponse.newBuilder()
-                            .setInvocationId(request.getInvocationId())
-                            .setToolResult(result)
-                            .build())
-                    .build());
-        });
+        dispatch(CallbackExecutor.Kind.TOOL, request.getInvocationId(),
+                config.toolCallbackTimeout(),
+                () -> {
+                    Struct result;
+                    if (handlers.toolHandler() == null) {
+                        result = ToolResults.error("missing tool handler");
+                    } else {
+                        try {
+                            result = handlers.toolHandler().handle(request);
+                        } catch (Exception e) {
+                            result = ToolResults.error(e.getMessage());
+                        }
+                    }
+                    return toolResponse(request, result);
+                },
+                () -> toolResponse(request, ToolResults.error("tool handler timed out")),
+                () -> toolResponse(request, ToolResults.error("tool callback queue is full")));
     }
 
     private void handleHookRequest(HookInvocationRequest request) {
-        Thread.ofVirtual().name("hook-handler-" + request.getInvocationId()).start(() -> {
-            HookOutput output;
-            if (handlers.hookHandler() == null) {
-                output = HookOutput.newBuilder()
-                        .setContinue(false)
-                        .setStopReason("no hook handler")
-                        .build();
-            } else {
-                try {
-                    output = handlers.hookHandler().handle(request);
-                } catch (Exception e) {
-                    output = HookOutput.newBuilder()
-                            .setContinue(false)
-                            .setStopReason(e.getMessage())
-                            .build();
-                }
-            }
-            send(ClientEvent.newBuilder()
-                    .setSidecarSessionId(sessionId)
-                    .setHookResponse(HookInvocationResponse.newBuilder()
-                            .setInvocationId(request.getInvocationId())
-                            .setOutput(output)
-                            .build())
-                    .build());
-        });
+        dispatch(CallbackExecutor.Kind.HOOK, request.getInvocationId(),
+                hookDeadlines.hookTimeout(request),
+                () -> {
+                    HookOutput output;
+                    if (handlers.hookHandler() == null) {
+                        output = HookOutputs.hookStop("no hook handler");
+                    } else {
+                        try {
+                            output = handlers.hookHandler().handle(request);
+                        } catch (Exception e) {
+                            output = HookOutputs.hookStop(e.getMessage());
+                        }
+                    }
+                    return hookResponse(request, output);
+                },
+                () -> hookResponse(request, config.hookTimeoutOutput()),
+                () -> hookResponse(request, HookOutputs.hookStop("hook callback queue is full")));
     }
 
     private void handlePermissionRequest(PermissionDecisionRequest request) {
-        Thread.ofVirtual().name("perm-handler-" + request.getInvocationId()).start(() -> {
-            PermissionDecision decision;
-            if (handlers.permissionHandler() == null) {
-                decision = PermissionDecision.newBuilder()
-                        .setBehavior("deny")
-                        .setReason("no permission handler")
-                        .build();
-            } else {
-                try {
-                    decision = handlers.permissionHandler().handle(request);
-                } catch (Exception e) {
-                    decision = PermissionDecision.newBuilder()
-                            .setBehavior("deny")
-                            .setReason(e.getMessage())
-                            .build();
+        dispatch(CallbackExecutor.Kind.PERMISSION, request.getInvocationId(),
+                config.permissionCallbackTimeout(),
+                () -> {
+                    PermissionDecision decision;
+                    if (handlers.permissionHandler() == null) {
+                        decision = deny("no permission handler");
+                    } else {
+                        try {
+                            decision = handlers.permissionHandler().handle(request);
+                        } catch (Exception e) {
+                            decision = deny(e.getMessage());
+                        }
+                    }
+                    return permissionResponse(request, decision);
+                },
+                () -> permissionResponse(request, deny("permission handler timed out")),
+                () -> permissionResponse(request, deny("permission callback queue is full")));
+    }
+
+    /**
+     * Hands a callback to the session's {@link CallbackExecutor} and sends whichever response
+     * comes first: the handler's, the {@code onTimeout} fallback once {@code timeout} (less the
+     * configured margin) has passed since the request arrived, or the {@code onRejected} one if
+     * the executor is saturated. A handler that misses its deadline is interrupted and its
+     * eventual response dropped. The fallbacks must not block.
+     */
+    private void dispatch(CallbackExecutor.Kind kind, String invocationId, Duration timeout,
+                          Supplier<ClientEvent> handler, Supplier<ClientEvent> onTimeout,
+                          Supplier<ClientEvent> onRejected) {
+        PendingCallback pending = new PendingCallback();
+        if (timeout != null) {
+            long delay = Math.max(0, timeout.minus(config.callbackDeadlineMargin()).toNanos());
+            pending.deadline = DEADLINES.schedule(() -> {
+                if (pending.claim()) {
+                    timedOutCallbacks.incrementAndGet();
+                    LOG.log(Level.FINE, kind + " callback " + invocationId + " for session "
+                            + sessionId + " missed its " + timeout + " deadline");
+                    pending.interruptHandler();
+                    sendAsync(onTimeout.get());
                 }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+        Runnable task = () -> {
+            if (!pending.start()) {
+                return; // Timed out while queued.
+            }
+            ClientEvent response;
+            try {
+                response = handler.get();
+            } finally {
+                pending.finish();
+            }
+            if (pending.claim()) {
+                send(response);
+            } else {
+                lateCallbackResponses.incrementAndGet();
+            }
+        };
+        if (!callbacks.execute(kind, invocationId, task)) {
+            LOG.log(Level.FINE, "Rejected " + kind + " callback " + invocationId
+                    + " for session " + sessionId + ": executor saturated");
+            if (pending.claim()) {
+                sendAsync(onRejected.get());
+            }
+        }
+    }
+
+    /** Tracks which of a callback's handler, deadline and rejection gets to respond. */
+    private static final class PendingCallback {
+        volatile ScheduledFuture<?> deadline;
+        private boolean claimed;
+        private Thread thread;
+
+        /** Returns true for the first caller only, which then sends the response. */
+        synchronized boolean claim() {
+            if (claimed) {
+                return false;
+            }
+            claimed = true;
+            ScheduledFuture<?> d = deadline;
+            if (d != null) {
+                d.cancel(false);
+            }
+            return true;
+        }
+
+        /** Registers the handler thread; false if the deadline already passed. */
+        synchronized boolean start() {
+            if (claimed) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        synchronized void finish() {
+            thread = null;
+            // Clear an interrupt aimed at the handler so it cannot disturb the send.
+            Thread.interrupted();
+        }
+
+        synchronized void interruptHandler() {
+            if (thread != null) {
+                thread.interrupt();
             }
-            send(ClientEvent.newBuilder()
-                    .setSidecarSessionId(sessionId)
-                    .setPermissionResponse(PermissionDecisionResponse.newBuilder()
-                            .setInvocationId(request.getInvocationId())
-                            .setDecision(decision)
-                            .build())
-                    .build());
+        }
+    }
+
+    private ClientEvent toolResponse(ToolInvocationRequest request, Struct result) {
+        return ClientEvent.newBuilder()
+                .setSidecarSessionId(sessionId)
+                .setToolResponse(ToolInvocationResponse.newBuilder()
+                        .setInvocationId(request.getInvocationId())
+                        .setToolResult(result)
+                        .build())
+                .build();
+    }
+
+    private ClientEvent hookResponse(HookInvocationRequest request, HookOutput output) {
+        return ClientEvent.newBuilder()
+                .setSidecarSessionId(sessionId)
+                .setHookResponse(HookInvocationResponse.newBuilder()
+                        .setInvocationId(request.getInvocationId())
+                        .setOutput(output)
+                        .build())
+                .build();
+    }
+
+    private ClientEvent permissionResponse(PermissionDecisionRequest request,
+                                           PermissionDecision decision) {
+        return ClientEvent.newBuilder()
+                .setSidecarSessionId(sessionId)
+                .setPermissionResponse(PermissionDecisionResponse.newBuilder()
+                        .setInvocationId(request.getInvocationId())
+                        .setDecision(decision)
+                        .build())
+                .build();
+    }
+
+    private static PermissionDecision deny(String reason) {
+        return PermissionDecision.newBuilder()
+                .setBehavior("deny")
+                .setReason(reason)
+                .build();
+    }
+
+    private static ScheduledThreadPoolExecutor newDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "callback-deadlines");
+            t.setDaemon(true);
+            return t;
         });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
     }
 
     // -- ID generation --
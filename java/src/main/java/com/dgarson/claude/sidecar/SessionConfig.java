@@ -0,0 +1,341 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ClaudeAgentOptions;
+import claude_sidecar.v1.Sidecar.HookOutput;
+import claude_sidecar.v1.Sidecar.HookSpec;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Client-side configuration for an attached {@link Session}, passed to
+ * {@link SidecarClient#attachSession(String, ClientInfo, Handlers, SessionConfig)}.
+ *
+ * <p>These settings only affect how this client buffers and dispatches the session's stream; the
+ * session's agent behaviour is fixed by the {@code ClaudeAgentOptions} it was created with.</p>
+ */
+public final class SessionConfig {
+
+    private static final SessionConfig DEFAULTS = builder().build();
+
+    private final int eventsBufferSize;
+    private final OverflowPolicy eventsOverflowPolicy;
+    private final boolean subscribeEventsOnAttach;
+    private final EventDispatcher eventDispatcher;
+    private final int outboundBufferSize;
+    private final boolean reattachOnError;
+    private final Duration reattachInitialBackoff;
+    private final Duration reattachMaxBackoff;
+    private final int reattachMaxAttempts;
+    private final CallbackExecutor callbackExecutor;
+    private final List<HookSpec> clientHooks;
+    private final Duration toolCallbackTimeout;
+    private final Duration permissionCallbackTimeout;
+    private final Duration callbackDeadlineMargin;
+    private final HookOutput hookTimeoutOutput;
+
+    private SessionConfig(Builder builder) {
+        this.eventsBufferSize = builder.eventsBufferSize;
+        this.eventsOverflowPolicy = builder.eventsOverflowPolicy;
+        this.subscribeEventsOnAttach = builder.subscribeEventsOnAttach;
+        this.eventDispatcher = builder.eventDispatcher;
+        this.outboundBufferSize = builder.outboundBufferSize;
+        this.reattachOnError = builder.reattachOnError;
+        this.reattachInitialBackoff = builder.reattachInitialBackoff;
+        this.reattachMaxBackoff = builder.reattachMaxBackoff;
+        this.reattachMaxAttempts = builder.reattachMaxAttempts;
+        this.callbackExecutor = builder.callbackExecutor;
+        this.clientHooks = List.copyOf(builder.clientHooks);
+        this.toolCallbackTimeout = builder.toolCallbackTimeout;
+        this.permissionCallbackTimeout = builder.permissionCallbackTimeout;
+        this.callbackDeadlineMargin = builder.callbackDeadlineMargin;
+        this.hookTimeoutOutput = builder.hookTimeoutOutput;
+    }
+
+    /** Capacity of the session-wide {@link Session#events()} buffer. */
+    public int eventsBufferSize() {
+        return eventsBufferSize;
+    }
+
+    /**
+     * Overflow policy of the session-wide {@link Session#events()} buffer. Defaults to
+     * {@link OverflowPolicy#BLOCK}, so no event is lost and a reader that falls behind slows the
+     * session down instead; lossy policies must be chosen explicitly.
+     */
+    public OverflowPolicy eventsOverflowPolicy() {
+        return eventsOverflowPolicy;
+    }
+
+    /**
+     * Whether the session-wide events subscription is created when the session is attached rather
+     * than on the first call to {@link Session#events()}.
+     */
+    public boolean subscribeEventsOnAttach() {
+        return subscribeEventsOnAttach;
+    }
+
+    /**
+     * Shared dispatcher for this session's events, or null to give the session its own dispatch
+     * thread (or use the client's dispatcher, see {@link SidecarClient#useEventDispatcher}).
+     */
+    public EventDispatcher eventDispatcher() {
+        return eventDispatcher;
+    }
+
+    /**
+     * Number of outbound messages that may wait for the stream to become ready before blocking
+     * senders such as {@link Session#sendInputChunk}.
+     */
+    public int outboundBufferSize() {
+        return outboundBufferSize;
+    }
+
+    /**
+     * Whether the session reattaches to the same sidecar session after a transport error instead
+     * of ending, keeping its session-wide subscriptions open across the reconnect. Turns in
+     * flight are lost: their {@link StreamHandle}s fail.
+     */
+    public boolean reattachOnError() {
+        return reattachOnError;
+    }
+
+    /** Delay before the first reattach attempt; doubled for each further attempt. */
+    public Duration reattachInitialBackoff() {
+        return reattachInitialBackoff;
+    }
+
+    /** Upper bound on the delay between reattach attempts. */
+    public Duration reattachMaxBackoff() {
+        return reattachMaxBackoff;
+    }
+
+    /**
+     * Consecutive failed reattach attempts after which the session ends. A stream counts as
+     * recovered, ending the streak, only once it has stayed up for {@link #reattachMaxBackoff()}.
+     */
+    public int reattachMaxAttempts() {
+        return reattachMaxAttempts;
+    }
+
+    /**
+     * Executor for tool, hook and permission callbacks, or null to give the session its own
+     * {@link BoundedCallbackExecutor} with default limits.
+     */
+    public CallbackExecutor callbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Hook specifications the session was created with, from which hook callback deadlines are
+     * derived. Hooks that match none of them get the sidecar default of 60 seconds; if there are
+     * none at all, hook callbacks get no client deadline.
+     */
+    public List<HookSpec> clientHooks() {
+        return clientHooks;
+    }
+
+    /** How long the sidecar waits for a tool callback, or null to apply no client deadline. */
+    public Duration toolCallbackTimeout() {
+        return toolCallbackTimeout;
+    }
+
+    /**
+     * How long the sidecar waits for a permission callback, or null to apply no client deadline.
+     */
+    public Duration permissionCallbackTimeout() {
+        return permissionCallbackTimeout;
+    }
+
+    /** How long before the sidecar's deadline a timed-out callback's fallback is sent. */
+    public Duration callbackDeadlineMargin() {
+        return callbackDeadlineMargin;
+    }
+
+    /** Output sent in place of a hook handler that misses its deadline. */
+    public HookOutput hookTimeoutOutput() {
+        return hookTimeoutOutput;
+    }
+
+    /** Returns a builder initialized with this configuration. */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.eventsBufferSize = eventsBufferSize;
+        builder.eventsOverflowPolicy = eventsOverflowPolicy;
+        builder.subscribeEventsOnAttach = subscribeEventsOnAttach;
+        builder.eventDispatcher = eventDispatcher;
+        builder.outboundBufferSize = outboundBufferSize;
+        builder.reattachOnError = reattachOnError;
+        builder.reattachInitialBackoff = reattachInitialBackoff;
+        builder.reattachMaxBackoff = reattachMaxBackoff;
+        builder.reattachMaxAttempts = reattachMaxAttempts;
+        builder.callbackExecutor = callbackExecutor;
+        builder.clientHooks = clientHooks;
+        builder.toolCallbackTimeout = toolCallbackTimeout;
+        builder.permissionCallbackTimeout = permissionCallbackTimeout;
+        builder.callbackDeadlineMargin = callbackDeadlineMargin;
+        builder.hookTimeoutOutput = hookTimeoutOutput;
+        return builder;
+    }
+
+    public static SessionConfig defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int eventsBufferSize = 256;
+        private OverflowPolicy eventsOverflowPolicy = OverflowPolicy.BLOCK;
+        private boolean subscribeEventsOnAttach;
+        private EventDispatcher eventDispatcher;
+        private int outboundBufferSize = 1024;
+        private boolean reattachOnError;
+        private Duration reattachInitialBackoff = Duration.ofMillis(100);
+        private Duration reattachMaxBackoff = Duration.ofSeconds(10);
+        private int reattachMaxAttempts = 10;
+        private CallbackExecutor callbackExecutor;
+        private List<HookSpec> clientHooks = List.of();
+        private Duration toolCallbackTimeout;
+        private Duration permissionCallbackTimeout;
+        private Duration callbackDeadlineMargin = Duration.ofMillis(500);
+        private HookOutput hookTimeoutOutput = HookOutputs.hookContinue();
+
+        private Builder() {}
+
+        public Builder eventsBufferSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("eventsBufferSize must be positive: " + size);
+            }
+            this.eventsBufferSize = size;
+            return this;
+        }
+
+        /**
+         * Overflow policy of the {@link Session#events()} buffer; null restores the lossless
+         * {@link OverflowPolicy#BLOCK} default.
+         */
+        public Builder eventsOverflowPolicy(OverflowPolicy policy) {
+            this.eventsOverflowPolicy = policy != null ? policy : OverflowPolicy.BLOCK;
+            return this;
+        }
+
+        /**
+         * Subscribe to session-wide events at attach time, so events that arrive before the first
+         * {@link Session#events()} call (such as {@code SessionInit}) are not missed.
+         */
+        public Builder subscribeEventsOnAttach(boolean subscribe) {
+            this.subscribeEventsOnAttach = subscribe;
+            return this;
+        }
+
+        /** Dispatch this session's events on a shared {@link EventDispatcher}. */
+        public Builder eventDispatcher(EventDispatcher dispatcher) {
+            this.eventDispatcher = dispatcher;
+            return this;
+        }
+
+        public Builder outboundBufferSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("outboundBufferSize must be positive: " + size);
+            }
+            this.outboundBufferSize = size;
+            return this;
+        }
+
+        /**
+         * Reattach after {@code UNAVAILABLE} or {@code INTERNAL} stream errors: the client opens a
+         * new {@code AttachSession} stream for the same {@code sidecar_session_id} with
+         * exponential backoff and resends its {@code ClientHello}. Outbound messages queue while
+         * disconnected. The protocol has no way to resume a turn, so {@link StreamHandle}s in
+         * flight fail, and later events of their turns are dropped.
+         */
+        public Builder reattachOnError(boolean reattach) {
+            this.reattachOnError = reattach;
+            return this;
+        }
+
+        public Builder reattachBackoff(Duration initial, Duration max) {
+            if (initial.isNegative() || max.compareTo(initial) < 0) {
+                throw new IllegalArgumentException(
+                        "invalid reattach backoff: initial " + initial + ", max " + max);
+            }
+            this.reattachInitialBackoff = initial;
+            this.reattachMaxBackoff = max;
+            return this;
+        }
+
+        public Builder reattachMaxAttempts(int attempts) {
+            if (attempts < 1) {
+                throw new IllegalArgumentException("reattachMaxAttempts must be positive: " + attempts);
+            }
+            this.reattachMaxAttempts = attempts;
+            return this;
+        }
+
+        /**
+         * Run callbacks on {@code executor}, which may be shared between sessions to bound their
+         * combined handler concurrency.
+         */
+        public Builder callbackExecutor(CallbackExecutor executor) {
+            this.callbackExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Derive hook callback deadlines from {@code hooks}, normally the {@code client_hooks} of
+         * the options the session was created with (see {@link #callbackTimeouts}).
+         */
+        public Builder clientHooks(List<HookSpec> hooks) {
+            this.clientHooks = List.copyOf(hooks);
+            return this;
+        }
+
+        /** Derive hook callback deadlines from the options the session was created with. */
+        public Builder callbackTimeouts(ClaudeAgentOptions options) {
+            return clientHooks(options.getClientHooksList());
+        }
+
+        /**
+         * Give tool handlers this long, including time queued in the callback executor, before
+         * answering with an error result in their place. Null (the default) waits indefinitely.
+         */
+        public Builder toolCallbackTimeout(Duration timeout) {
+            this.toolCallbackTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Give permission handlers this long before denying in their place. Null (the default)
+         * waits indefinitely.
+         */
+        public Builder permissionCallbackTimeout(Duration timeout) {
+            this.permissionCallbackTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Send fallback responses this long before the sidecar's deadline, so they arrive before
+         * it gives up with {@code CALLBACK_TIMEOUT}.
+         */
+        public Builder callbackDeadlineMargin(Duration margin) {
+            if (margin.isNegative()) {
+                throw new IllegalArgumentException("callbackDeadlineMargin must not be negative: "
+                        + margin);
+            }
+            this.callbackDeadlineMargin = margin;
+            return this;
+        }
+
+        /** Output to send for a hook whose handler misses its deadline; defaults to continue. */
+        public Builder hookTimeoutOutput(HookOutput output) {
+            this.hookTimeoutOutput = output;
+            return this;
+        }
+
+        public SessionConfig build() {
+            return new SessionConfig(this);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ClaudeAgentOptions;
+import claude_sidecar.v1.Sidecar.CreateSessionRequest;
+import claude_sidecar.v1.Sidecar.SessionMode;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a number of sessions created, attached and initialized ahead of demand, all from one
+ * {@link ClaudeAgentOptions} template, so a one-shot request does not wait for
+ * {@code CreateSession}, {@code AttachSession} and the sidecar's CLI startup.
+ *
+ * <p>{@link #acquire()} hands out a ready session if there is one (a hit) and otherwise warms one
+ * up on the caller's thread (a miss). Every acquire triggers a background refill back to
+ * {@code size} ready sessions. A session is ready once its {@link Session#sessionInit()} has
+ * completed; ready sessions whose stream has since ended are discarded.</p>
+ *
+ * <p>{@link #release} closes a session and deletes it on the sidecar. {@link #recycle} puts it
+ * back in the pool instead, for callers whose sessions carry no state another request must not
+ * see; it is released if the pool is already full.</p>
+ *
+ * <pre>{@code
+ * try (SessionPool pool = SessionPool.builder(client)
+ *         .options(OptionsBuilder.create().model("sonnet"))
+ *         .handlers(handlers)
+ *         .size(4)
+ *         .build()) {
+ *     Session session = pool.acquire();
+ *     try {
+ *         RunResult result = session.run("Hello!");
+ *     } finally {
+ *         pool.release(session);
+ *     }
+ * }
+ * }</pre>
+ */
+public final class SessionPool implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SessionPool.class.getName());
+
+    private final SidecarClient client;
+    private final CreateSessionRequest createRequest;
+    private final ClientInfo clientInfo;
+    private final Handlers handlers;
+    private final SessionConfig sessionConfig;
+    private final int size;
+    private final Duration initTimeout;
+    private final Duration retryDelay;
+
+    private final ConcurrentLinkedQueue<Session> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readyCount = new AtomicInteger();
+    private final AtomicInteger warming = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong warmups = new AtomicLong();
+    private final AtomicLong warmupFailures = new AtomicLong();
+    private final AtomicLong warmupNanosTotal = new AtomicLong();
+    private final AtomicLong warmupNanosMax = new AtomicLong();
+
+    private SessionPool(Builder builder) {
+        this.client = builder.client;
+        this.createRequest = CreateSessionRequest.newBuilder()
+                .setMode(builder.mode)
+                .setOptions(builder.options)
+                .build();
+        this.clientInfo = builder.clientInfo;
+        this.handlers = builder.handlers;
+        this.sessionConfig = builder.sessionConfig.clientHooks().isEmpty()
+                ? builder.sessionConfig.toBuilder().callbackTimeouts(builder.options).build()
+                : builder.sessionConfig;
+        this.size = builder.size;
+        this.initTimeout = builder.initTimeout;
+        this.retryDelay = builder.retryDelay;
+        refill();
+    }
+
+    public static Builder builder(SidecarClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Returns a warmed-up session, or warms one up now if none is ready.
+     *
+     * @throws Exception if the session could not be created, attached or initialized
+     */
+    public Session acquire() throws Exception {
+        if (closed.get()) {
+            throw new IllegalStateException("session pool is closed");
+        }
+        Session session;
+        while ((session = ready.poll()) != null) {
+            readyCount.decrementAndGet();
+            if (!session.isClosed()) {
+                hits.incrementAndGet();
+                refill();
+                return session;
+            }
+            discard(session);
+        }
+        misses.incrementAndGet();
+        refill();
+        return warmUp();
+    }
+
+    /** Closes {@code session} and deletes it on the sidecar. */
+    public void release(Session session) {
+        discard(session);
+    }
+
+    /**
+     * Returns {@code session} to the pool for a later {@link #acquire()}, or releases it if the
+     * pool is full, closed, or the session's stream has ended.
+     */
+    public void recycle(Session session) {
+        if (!closed.get() && !session.isClosed()) {
+            if (readyCount.incrementAndGet() <= size) {
+                ready.offer(session);
+                return;
+            }
+            readyCount.decrementAndGet();
+        }
+        discard(session);
+    }
+
+    /** Number of sessions ready to be acquired. */
+    public int readyCount() {
+        return readyCount.get();
+    }
+
+    /** Returns a snapshot of the pool's counters. */
+    public Stats stats() {
+        long count = warmups.get();
+        return new Stats(hits.get(), misses.get(), readyCount.get(), warming.get(), count,
+                warmupFailures.get(),
+                count > 0 ? Duration.ofNanos(warmupNanosTotal.get() / count) : Duration.ZERO,
+                Duration.ofNanos(warmupNanosMax.get()));
+    }
+
+    /** Stops refilling, then closes and deletes every ready session. Acquired ones are kept. */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        Session session;
+        while ((session = ready.poll()) != null) {
+            readyCount.decrementAndGet();
+            discard(session);
+        }
+    }
+
+    /**
+     * Pool counters. A hit is an {@link #acquire()} served from the pool; a miss had to warm a
+     * session up on the caller's thread. Warm-up time runs from {@code CreateSession} to
+     * {@code SessionInit} and covers background and on-demand warm-ups that succeeded.
+     */
+    public record Stats(long hits, long misses, int ready, int warming, long warmups,
+                        long warmupFailures, Duration averageWarmup, Duration maxWarmup) {
+
+        /** Fraction of acquires served from the pool, or 0 before the first acquire. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0;
+        }
+    }
+
+    // -- Internal --
+
+    /** Starts background warm-ups until ready plus warming sessions reach {@code size}. */
+    private synchronized void refill() {
+        while (!closed.get() && readyCount.get() + warming.get() < size) {
+            warming.incrementAndGet();
+            Thread.ofVirtual().name("session-pool-warmup").start(this::warmUpInBackground);
+        }
+    }
+
+    private void warmUpInBackground() {
+        Session session;
+        try {
+            session = warmUp();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Session warm-up failed; retrying in " + retryDelay, e);
+            warming.decrementAndGet();
+            try {
+                Thread.sleep(retryDelay.toMillis());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            refill();
+            return;
+        }
+        if (closed.get()) {
+            warming.decrementAndGet();
+            discard(session);
+            return;
+        }
+        // Count it ready before it stops counting as warming, so refill never overshoots.
+        readyCount.incrementAndGet();
+        ready.offer(session);
+        warming.decrementAndGet();
+    }
+
+    private Session warmUp() throws Exception {
+        long start = System.nanoTime();
+        String id = client.createSession(createRequest).getSidecarSessionId();
+        Session session = null;
+        try {
+            session = client.attachSession(id, clientInfo, handlers, sessionConfig);
+            session.sessionInit().get(initTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            warmupFailures.incrementAndGet();
+            if (session != null) {
+                session.close();
+            }
+            deleteQuietly(id);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        warmups.incrementAndGet();
+        warmupNanosTotal.addAndGet(elapsed);
+        warmupNanosMax.accumulateAndGet(elapsed, Math::max);
+        return session;
+    }
+
+    private void discard(Session session) {
+        session.close();
+        deleteQuietly(session.getSessionId());
+    }
+
+    private void deleteQuietly(String sidecarSessionId) {
+        client.deleteSessionAsync(sidecarSessionId, true).whenComplete((response, error) -> {
+            if (error != null) {
+                LOG.log(Level.FINE, "Failed to delete pooled session " + sidecarSessionId, error);
+            }
+        });
+    }
+
+    public static final class Builder {
+        private final SidecarClient client;
+        private ClaudeAgentOptions options = ClaudeAgentOptions.getDefaultInstance();
+        private SessionMode mode = SessionMode.INTERACTIVE;
+        private ClientInfo clientInfo = ClientInfo.builder().build();
+        private Handlers handlers = Handlers.empty();
+        private SessionConfig sessionConfig = SessionConfig.defaults();
+        private int size = 2;
+        private Duration initTimeout = Duration.ofSeconds(30);
+        private Duration retryDelay = Duration.ofSeconds(1);
+
+        private Builder(SidecarClient client) {
+            this.client = client;
+        }
+
+        /** Options every pooled session is created with. */
+        public Builder options(ClaudeAgentOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        /** Options every pooled session is created with, built from {@code options} now. */
+        public Builder options(OptionsBuilder options) {
+            return options(options.build());
+        }
+
+        public Builder mode(SessionMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder clientInfo(ClientInfo clientInfo) {
+            this.clientInfo = clientInfo;
+            return this;
+        }
+
+        /** Handlers shared by every pooled session. */
+        public Builder handlers(Handlers handlers) {
+            this.handlers = handlers;
+            return this;
+        }
+
+        /**
+         * Client configuration of every pooled session. Unless it lists client hooks, those of
+         * the pool's options are used for hook callback deadlines.
+         */
+        public Builder sessionConfig(SessionConfig config) {
+            this.sessionConfig = config;
+            return this;
+        }
+
+        /** Number of sessions kept ready. */
+        public Builder size(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("size must not be negative: " + size);
+            }
+            this.size = size;
+            return this;
+        }
+
+        /** How long a warm-up waits for {@code SessionInit} before the session is discarded. */
+        public Builder initTimeout(Duration timeout) {
+            this.initTimeout = timeout;
+            return this;
+        }
+
+        /** Delay before a failed background warm-up is retried. */
+        public Builder retryDelay(Duration delay) {
+            this.retryDelay = delay;
+            return this;
+        }
+
+        /** Builds the pool and starts warming up its first sessions in the background. */
+        public SessionPool build() {
+            return new SessionPool(this);
+        }
+    }
+}
@@ -21,17 +21,43 @@ import claude_sidecar.v1.Sidecar.RewindFilesRequest;
 import claude_sidecar.v1.Sidecar.RewindFilesResponse;
 import claude_sidecar.v1.Sidecar.ServerEvent;
 import io.grpc.ManagedChannel;
+import io.grpc.CompressorRegistry;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * High-level client for the Claude Sidecar gRPC service.
  * Mirrors Go's client.go.
  *
  * <p>Provides control-plane operations (create/get/list/delete/fork sessions, health checks)
- * and data-plane attachment via {@link #attachSession}.</p>
+ * and data-plane attachment via {@link #attachSession}. Every control-plane method also has a
+ * non-blocking {@code ...Async} variant returning a {@link CompletableFuture}, with an optional
+ * per-call deadline that overrides {@link #defaultDeadline(Duration)}.</p>
  *
  * <p>Usage:</p>
  * <pre>{@code
@@ -47,14 +73,50 @@ import java.util.concurrent.TimeUnit;
  */
 public final class SidecarClient implements AutoCloseable {
 
+    private static final Logger LOG = Logger.getLogger(SidecarClient.class.getName());
+
+    /**
+     * Header carrying the client-supplied key of
+     * {@link #createSession(CreateSessionRequest, String)}.
+     */
+    public static final Metadata.Key<String> IDEMPOTENCY_KEY =
+            Metadata.Key.of("idempotency-key", Metadata.ASCII_STRING_MARSHALLER);
+
     private final ManagedChannel channel;
     private final ClaudeSidecarGrpc.ClaudeSidecarBlockingStub blockingStub;
-    private final ClaudeSidecarGrpc.ClaudeSidecarStub asyncStub;
+    /** Channels attached sessions are spread over; {@code channels[0] == channel}. */
+    private final ManagedChannel[] channels;
+    private final ClaudeSidecarGrpc.ClaudeSidecarStub[] asyncStubs;
+    /** Open attach streams per channel, indexed like {@link #channels}. */
+    private final AtomicIntegerArray activeStreams;
+    private volatile EventDispatcher eventDispatcher;
+    private volatile Duration defaultDeadline;
+    private volatile Compression compression;
+    private volatile SidecarInfo sidecarInfo;
+    /** Event loop owned by a domain-socket client, shut down after its channels; else null. */
+    private final EventLoopGroup eventLoop;
+    /** Policy the channels were configured with, or null; also bounds create retries. */
+    private final RetryConfig retryConfig;
 
-    private SidecarClient(ManagedChannel channel) {
-        this.channel = channel;
+    private SidecarClient(ManagedChannel... channels) {
+        this(null, null, channels);
+    }
+
+    private SidecarClient(EventLoopGroup eventLoop, RetryConfig retryConfig,
+                          ManagedChannel... channels) {
+        if (channels.length == 0) {
+            throw new IllegalArgumentException("at least one channel is required");
+        }
+        this.channel = channels[0];
         this.blockingStub = ClaudeSidecarGrpc.newBlockingStub(channel);
-        this.asyncStub = ClaudeSidecarGrpc.newStub(channel);
+        this.channels = channels.clone();
+        this.asyncStubs = new ClaudeSidecarGrpc.ClaudeSidecarStub[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            asyncStubs[i] = ClaudeSidecarGrpc.newStub(channels[i]);
+        }
+        this.activeStreams = new AtomicIntegerArray(channels.length);
+        this.eventLoop = eventLoop;
+        this.retryConfig = retryConfig;
     }
 
     /**
@@ -62,10 +124,104 @@ public final class SidecarClient implements AutoCloseable {
      * Uses plaintext (insecure) transport by default.
      */
     public static SidecarClient connect(String address) {
+        return new SidecarClient(plaintextChannel(address));
+    }
+
+    /**
+     * Connect with gRPC retries or hedging for the idempotent control-plane calls listed in
+     * {@code retry}, under its retry budget. {@code CreateSession} is not retried; see
+     * {@link #createSession(CreateSessionRequest, String, RetryConfig)}.
+     */
+    public static SidecarClient connect(String address, RetryConfig retry) {
         ManagedChannel channel = ManagedChannelBuilder.forTarget(address)
                 .usePlaintext()
+                .defaultServiceConfig(retry.toServiceConfig())
+                .enableRetry()
                 .build();
-        return new SidecarClient(channel);
+        return new SidecarClient(null, retry, channel);
+    }
+
+    /**
+     * Connect to a sidecar instance over {@code channelCount} independent channels, each with its
+     * own HTTP/2 connection. Every attached session's stream is placed on the channel with the
+     * fewest open attach streams, so heavy partial streaming is not limited by one connection's
+     * flow-control window and event-loop thread. Control-plane calls use the first channel.
+     */
+    public static SidecarClient connectPooled(String address, int channelCount) {
+        if (channelCount < 1) {
+            throw new IllegalArgumentException("channelCount must be positive: " + channelCount);
+        }
+        ManagedChannel[] channels = new ManagedChannel[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            channels[i] = plaintextChannel(address);
+        }
+        return new SidecarClient(channels);
+    }
+
+    /**
+     * Connect to a sidecar on this host through the Unix domain socket at {@code socketPath}.
+     *
+     * @throws IllegalStateException if gRPC's native epoll transport is unavailable; use
+     *         {@link #connectUnix(Path, String)} to fall back to TCP instead
+     */
+    public static SidecarClient connectUnix(Path socketPath) {
+        if (!Epoll.isAvailable()) {
+            throw new IllegalStateException("cannot connect to " + socketPath
+                    + ": Unix domain sockets need the native epoll transport",
+                    Epoll.unavailabilityCause());
+        }
+        return connectDomainSocket(socketPath);
+    }
+
+    /**
+     * Connect to a co-located sidecar through the Unix domain socket at {@code socketPath}.
+     * Events then skip the loopback TCP stack entirely; HTTP/2 framing is unchanged. The socket
+     * needs gRPC's native epoll transport (Linux on x86_64 or aarch64); anywhere else the client
+     * connects over plaintext TCP to {@code tcpFallbackAddress} instead, and
+     * {@link #usesDomainSocket()} reports which transport was chosen.
+     */
+    public static SidecarClient connectUnix(Path socketPath, String tcpFallbackAddress) {
+        if (!Epoll.isAvailable()) {
+            LOG.log(Level.INFO, "epoll unavailable; connecting over TCP to " + tcpFallbackAddress,
+                    Epoll.unavailabilityCause());
+            return connect(tcpFallbackAddress);
+        }
+        return connectDomainSocket(socketPath);
+    }
+
+    private static SidecarClient connectDomainSocket(Path socketPath) {
+        EventLoopGroup group = new EpollEventLoopGroup(1,
+                new DefaultThreadFactory("sidecar-uds", true));
+        try {
+            ManagedChannel channel = NettyChannelBuilder
+                    .forAddress(new DomainSocketAddress(socketPath.toFile()))
+                    .eventLoopGroup(group)
+                    .channelType(EpollDomainSocketChannel.class)
+                    .usePlaintext()
+                    .build();
+            return new SidecarClient(group, null, channel);
+        } catch (RuntimeException e) {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Connect to {@code address} and {@link #warmUp} the client before returning, so the first
+     * query after startup does not pay for connection setup.
+     *
+     * @param timeout deadline for the warm-up RPCs, or null for {@link #defaultDeadline(Duration)}
+     * @throws io.grpc.StatusRuntimeException if the sidecar cannot be reached in time
+     */
+    public static SidecarClient connectEager(String address, Duration timeout) {
+        SidecarClient client = connect(address);
+        try {
+            client.warmUp(timeout);
+        } catch (RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        return client;
     }
 
     /**
@@ -75,43 +231,353 @@ public final class SidecarClient implements AutoCloseable {
         return new SidecarClient(channel);
     }
 
+    /**
+     * Pool pre-built channels, as {@link #connectPooled} does. Each channel should have its own
+     * connection to the same sidecar; the client takes ownership of all of them.
+     */
+    public static SidecarClient fromChannels(List<ManagedChannel> channels) {
+        return new SidecarClient(channels.toArray(new ManagedChannel[0]));
+    }
+
+    private static ManagedChannel plaintextChannel(String address) {
+        return ManagedChannelBuilder.forTarget(address)
+                .usePlaintext()
+                .build();
+    }
+
+    /**
+     * Dispatch events for sessions attached after this call on a shared {@link EventDispatcher}
+     * instead of a dedicated thread per session. A {@link SessionConfig#eventDispatcher()} set on
+     * an individual attach takes precedence. Pass null to restore per-session dispatch threads.
+     *
+     * @return this client
+     */
+    public SidecarClient useEventDispatcher(EventDispatcher dispatcher) {
+        this.eventDispatcher = dispatcher;
+        return this;
+    }
+
+    /** True if this client was connected by {@link #connectUnix} over a Unix domain socket. */
+    public boolean usesDomainSocket() {
+        return eventLoop != null;
+    }
+
+    /** Number of channels attached sessions are spread over. */
+    public int channelCount() {
+        return channels.length;
+    }
+
+    /**
+     * Returns a snapshot of the number of open attach streams on each channel, in channel order.
+     * A stream counts until the sidecar ends it, which follows {@link Session#close()}.
+     */
+    public int[] channelStreamCounts() {
+        int[] counts = new int[channels.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = activeStreams.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Apply {@code deadline} to every control-plane call made after this call that does not pass
+     * its own, blocking or asynchronous. Null (the default) leaves calls without a deadline.
+     * Attach streams are long-lived and never get one.
+     *
+     * @return this client
+     */
+    public SidecarClient defaultDeadline(Duration deadline) {
+        this.defaultDeadline = deadline;
+        return this;
+    }
+
+    /**
+     * Compress outbound messages on attach streams opened after this call with the registered
+     * codec {@code codec} (e.g. {@code "gzip"}), but only messages of at least
+     * {@code minMessageBytes} serialized bytes, such as large tool results, base64 images or
+     * input chunks. Small events are sent as is, since compressing them costs more CPU than the
+     * bytes it saves. Pass a null codec to turn compression off.
+     *
+     * <p>Inbound compression is chosen by the sidecar; the client accepts every registered
+     * codec. On loopback or a Unix socket compression rarely pays off; see
+     * {@code CompressionBenchmark} for the break-even point on slower links.</p>
+     *
+     * @return this client
+     * @throws IllegalArgumentException if no compressor is registered under {@code codec}
+     */
+    public SidecarClient dataPlaneCompression(String codec, int minMessageBytes) {
+        if (codec == null) {
+            this.compression = null;
+            return this;
+        }
+        if (CompressorRegistry.getDefaultInstance().lookupCompressor(codec) == null) {
+            throw new IllegalArgumentException("no compressor registered for " + codec);
+        }
+        if (minMessageBytes < 0) {
+            throw new IllegalArgumentException("minMessageBytes must not be negative: "
+                    + minMessageBytes);
+        }
+        this.compression = new Compression(codec, minMessageBytes);
+        return this;
+    }
+
+    // -- Startup --
+
+    /**
+     * Starts connecting every channel ({@code getState(true)}), then runs {@code GetInfo} and
+     * {@code HealthCheck} concurrently and caches the result, whose capabilities are then
+     * available from {@link #capabilities()} without another round trip.
+     *
+     * @param timeout deadline for each RPC, or null for {@link #defaultDeadline(Duration)}
+     * @throws io.grpc.StatusRuntimeException if either RPC fails
+     */
+    public SidecarInfo warmUp(Duration timeout) {
+        try {
+            return warmUpAsync(timeout).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /** Non-blocking {@link #warmUp}; the result is cached when the future completes. */
+    public CompletableFuture<SidecarInfo> warmUpAsync(Duration timeout) {
+        long start = System.nanoTime();
+        for (ManagedChannel c : channels) {
+            c.getState(true);
+        }
+        CompletableFuture<GetInfoResponse> info = getInfoAsync(timeout);
+        CompletableFuture<HealthCheckResponse> health = healthCheckAsync(timeout);
+        return info.thenCombine(health, (i, h) -> {
+            SidecarInfo result = new SidecarInfo(i, h, CapabilitySet.from(i),
+                    Duration.ofNanos(System.nanoTime() - start));
+            sidecarInfo = result;
+            return result;
+        });
+    }
+
+    /** Returns the result of the last successful {@link #warmUp}, or null if there was none. */
+    public SidecarInfo sidecarInfo() {
+        return sidecarInfo;
+    }
+
+    /**
+     * Returns the sidecar's capabilities cached by {@link #warmUp}, warming up first (with the
+     * default deadline) if that has not happened yet.
+     */
+    public CapabilitySet capabilities() {
+        SidecarInfo info = sidecarInfo;
+        return info != null ? info.capabilities() : warmUp(null).capabilities();
+    }
+
     // -- Control plane --
 
     public GetInfoResponse getInfo() {
-        return blockingStub.getInfo(GetInfoRequest.getDefaultInstance());
+        return blockingStub().getInfo(GetInfoRequest.getDefaultInstance());
     }
 
     public HealthCheckResponse healthCheck() {
-        return blockingStub.healthCheck(HealthCheckRequest.getDefaultInstance());
+        return blockingStub().healthCheck(HealthCheckRequest.getDefaultInstance());
     }
 
     public CreateSessionResponse createSession(CreateSessionRequest request) {
-        return blockingStub.createSession(request);
+        return blockingStub().createSession(request);
+    }
+
+    /**
+     * Creates a session, tagging the call with {@code idempotencyKey} in the
+     * {@link #IDEMPOTENCY_KEY} header for sidecars that deduplicate creates on it. Makes a single
+     * attempt, whatever {@link RetryConfig} the client was connected with.
+     *
+     * @param idempotencyKey a key unique to this logical create, e.g. a request ID
+     */
+    public CreateSessionResponse createSession(CreateSessionRequest request, String idempotencyKey) {
+        return createSession(request, idempotencyKey, null);
+    }
+
+    /**
+     * Creates a session as {@link #createSession(CreateSessionRequest, String)} does, retrying on
+     * {@code retry}'s retryable codes with the same key, up to its attempt and backoff limits.
+     *
+     * <p>A failed attempt may still have created a session, for example when only the response
+     * was lost. A retry is therefore only safe against a sidecar that returns the original session
+     * for a repeated key; against one that ignores the key, it can leave orphaned sessions behind.
+     * The reference sidecar does not deduplicate, so pass {@code retry} only for sidecars known to.
+     * </p>
+     *
+     * @param idempotencyKey a key unique to this logical create, e.g. a request ID
+     * @param retry retry limits, or null for a single attempt
+     */
+    public CreateSessionResponse createSession(CreateSessionRequest request, String idempotencyKey,
+                                               RetryConfig retry) {
+        Metadata headers = new Metadata();
+        headers.put(IDEMPOTENCY_KEY, idempotencyKey);
+        var stub = blockingStub()
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+        long backoff = retry != null ? retry.initialBackoff().toNanos() : 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return stub.createSession(request);
+            } catch (StatusRuntimeException e) {
+                if (retry == null || attempt >= retry.maxAttempts()
+                        || !retry.retryableCodes().contains(e.getStatus().getCode())) {
+                    throw e;
+                }
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Status.CANCELLED.withDescription("interrupted between create attempts")
+                        .withCause(e).asRuntimeException();
+            }
+            backoff = Math.min(retry.maxBackoff().toNanos(),
+                    (long) (backoff * retry.backoffMultiplier()));
+        }
     }
 
     public GetSessionResponse getSession(String sidecarSessionId) {
-        return blockingStub.getSession(GetSessionRequest.newBuilder()
-                .setSidecarSessionId(sidecarSessionId)
-                .build());
+        return blockingStub().getSession(getSessionRequest(sidecarSessionId));
     }
 
     public ListSessionsResponse listSessions() {
-        return blockingStub.listSessions(ListSessionsRequest.getDefaultInstance());
+        return blockingStub().listSessions(ListSessionsRequest.getDefaultInstance());
     }
 
     public DeleteSessionResponse deleteSession(String sidecarSessionId, boolean force) {
-        return blockingStub.deleteSession(DeleteSessionRequest.newBuilder()
-                .setSidecarSessionId(sidecarSessionId)
-                .setForce(force)
-                .build());
+        return blockingStub().deleteSession(deleteSessionRequest(sidecarSessionId, force));
     }
 
     public ForkSessionResponse forkSession(ForkSessionRequest request) {
-        return blockingStub.forkSession(request);
+        return blockingStub().forkSession(request);
     }
 
     public RewindFilesResponse rewindFiles(RewindFilesRequest request) {
-        return blockingStub.rewindFiles(request);
+        return blockingStub().rewindFiles(request);
+    }
+
+    // -- Control plane (non-blocking) --
+    //
+    // Each method returns immediately; the future completes on a gRPC thread, or exceptionally
+    // with a StatusRuntimeException (DEADLINE_EXCEEDED once the deadline passes). Cancelling the
+    // future cancels the RPC. Overloads without a deadline use defaultDeadline(Duration).
+
+    public CompletableFuture<GetInfoResponse> getInfoAsync() {
+        return getInfoAsync(null);
+    }
+
+    public CompletableFuture<GetInfoResponse> getInfoAsync(Duration deadline) {
+        UnaryCall<GetInfoRequest, GetInfoResponse> call = new UnaryCall<>();
+        controlStub(deadline).getInfo(GetInfoRequest.getDefaultInstance(), call);
+        return call;
+    }
+
+    public CompletableFuture<HealthCheckResponse> healthCheckAsync() {
+        return healthCheckAsync(null);
+    }
+
+    public CompletableFuture<HealthCheckResponse> healthCheckAsync(Duration deadline) {
+        UnaryCall<HealthCheckRequest, HealthCheckResponse> call = new UnaryCall<>();
+        controlStub(deadline).healthCheck(HealthCheckRequest.getDefaultInstance(), call);
+        return call;
+    }
+
+    public CompletableFuture<CreateSessionResponse> createSessionAsync(CreateSessionRequest request) {
+        return createSessionAsync(request, null);
+    }
+
+    public CompletableFuture<CreateSessionResponse> createSessionAsync(CreateSessionRequest request,
+                                                                     Duration deadline) {
+        UnaryCall<CreateSessionRequest, CreateSessionResponse> call = new UnaryCall<>();
+        controlStub(deadline).createSession(request, call);
+        return call;
+    }
+
+    public CompletableFuture<GetSessionResponse> getSessionAsync(String sidecarSessionId) {
+        return getSessionAsync(sidecarSessionId, null);
+    }
+
+    public CompletableFuture<GetSessionResponse> getSessionAsync(String sidecarSessionId,
+                                                               Duration deadline) {
+        UnaryCall<GetSessionRequest, GetSessionResponse> call = new UnaryCall<>();
+        controlStub(deadline).getSession(getSessionRequest(sidecarSessionId), call);
+        return call;
+    }
+
+    public CompletableFuture<ListSessionsResponse> listSessionsAsync() {
+        return listSessionsAsync(null);
+    }
+
+    public CompletableFuture<ListSessionsResponse> listSessionsAsync(Duration deadline) {
+        UnaryCall<ListSessionsRequest, ListSessionsResponse> call = new UnaryCall<>();
+        controlStub(deadline).listSessions(ListSessionsRequest.getDefaultInstance(), call);
+        return call;
+    }
+
+    public CompletableFuture<DeleteSessionResponse> deleteSessionAsync(String sidecarSessionId,
+                                                                     boolean force) {
+        return deleteSessionAsync(sidecarSessionId, force, null);
+    }
+
+    public CompletableFuture<DeleteSessionResponse> deleteSessionAsync(String sidecarSessionId,
+                                                                     boolean force,
+                                                                     Duration deadline) {
+        UnaryCall<DeleteSessionRequest, DeleteSessionResponse> call = new UnaryCall<>();
+        controlStub(deadline).deleteSession(deleteSessionRequest(sidecarSessionId, force), call);
+        return call;
+    }
+
+    public CompletableFuture<ForkSessionResponse> forkSessionAsync(ForkSessionRequest request) {
+        return forkSessionAsync(request, null);
+    }
+
+    public CompletableFuture<ForkSessionResponse> forkSessionAsync(ForkSessionRequest request,
+                                                                 Duration deadline) {
+        UnaryCall<ForkSessionRequest, ForkSessionResponse> call = new UnaryCall<>();
+        controlStub(deadline).forkSession(request, call);
+        return call;
+    }
+
+    public CompletableFuture<RewindFilesResponse> rewindFilesAsync(RewindFilesRequest request) {
+        return rewindFilesAsync(request, null);
+    }
+
+    public CompletableFuture<RewindFilesResponse> rewindFilesAsync(RewindFilesRequest request,
+                                                                 Duration deadline) {
+        UnaryCall<RewindFilesRequest, RewindFilesResponse> call = new UnaryCall<>();
+        controlStub(deadline).rewindFiles(request, call);
+        return call;
+    }
+
+    private ClaudeSidecarGrpc.ClaudeSidecarBlockingStub blockingStub() {
+        Duration deadline = defaultDeadline;
+        return deadline != null
+                ? blockingStub.withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS)
+                : blockingStub;
+    }
+
+    private ClaudeSidecarGrpc.ClaudeSidecarStub controlStub(Duration deadline) {
+        if (deadline == null) {
+            deadline = defaultDeadline;
+        }
+        return deadline != null
+                ? asyncStubs[0].withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS)
+                : asyncStubs[0];
+    }
+
+    private static GetSessionRequest getSessionRequest(String sidecarSessionId) {
+        return GetSessionRequest.newBuilder()
+                .setSidecarSessionId(sidecarSessionId)
+                .build();
+    }
+
+    private static DeleteSessionRequest deleteSessionRequest(String sidecarSessionId, boolean force) {
+        return DeleteSessionRequest.newBuilder()
+                .setSidecarSessionId(sidecarSessionId)
+                .setForce(force)
+                .build();
     }
 
     // -- Data plane --
@@ -128,50 +594,168 @@ public final class SidecarClient implements AutoCloseable {
      * @return a {@link Session} for sending queries and receiving events
      */
     public Session attachSession(String sidecarSessionId, ClientInfo clientInfo, Handlers handlers) {
+        return attachSession(sidecarSessionId, clientInfo, handlers, SessionConfig.defaults());
+    }
+
+    /**
+     * Attach to an existing session with explicit client-side {@link SessionConfig}.
+     *
+     * @see #attachSession(String, ClientInfo, Handlers)
+     */
+    public Session attachSession(String sidecarSessionId, ClientInfo clientInfo, Handlers handlers,
+                                 SessionConfig config) {
         // Use a bridge to resolve the circular dependency: the async stub needs a
         // StreamObserver<ServerEvent> to call attachSession(), but the Session that will
         // handle those events needs the StreamObserver<ClientEvent> returned by the stub.
-        var bridge = new BidiStreamBridge();
-        StreamObserver<ClientEvent> requestObserver = asyncStub.attachSession(bridge);
+        BidiStreamBridge bridge = openStream();
 
         // Now create the session with the real requestObserver and wire the bridge to it
-        Session session = new Session(sidecarSessionId, requestObserver, handlers);
+        EventDispatcher dispatcher = eventDispatcher;
+        if (config.eventDispatcher() == null && dispatcher != null) {
+            config = config.toBuilder().eventDispatcher(dispatcher).build();
+        }
+        Session session = new Session(sidecarSessionId, bridge.requestObserver, handlers, config);
+        session.compressAbove(bridge.compressionThreshold());
+        bridge.setSession(session);
+        session.send(hello(sidecarSessionId, clientInfo));
+        if (config.reattachOnError()) {
+            session.enableReattach(() -> reattach(session, clientInfo));
+        }
+        return session;
+    }
+
+    /**
+     * Opens a replacement attach stream for {@code session} after a transport error and resumes
+     * it there; the hello goes out ahead of anything queued while disconnected.
+     */
+    private void reattach(Session session, ClientInfo clientInfo) {
+        BidiStreamBridge bridge = openStream();
+        session.compressAbove(bridge.compressionThreshold());
         bridge.setSession(session);
+        session.resumeStream(bridge.requestObserver, hello(session.getSessionId(), clientInfo));
+    }
 
-        // Send ClientHello
+    /** Starts an attach stream on the least-loaded channel, not yet wired to a session. */
+    private BidiStreamBridge openStream() {
+        int slot = leastLoadedChannel();
+        activeStreams.incrementAndGet(slot);
+        var bridge = new BidiStreamBridge(() -> activeStreams.decrementAndGet(slot));
+        Compression c = compression;
+        bridge.compression = c;
+        try {
+            bridge.requestObserver = (c != null ? asyncStubs[slot].withCompression(c.codec())
+                    : asyncStubs[slot]).attachSession(bridge);
+        } catch (RuntimeException e) {
+            bridge.release();
+            throw e;
+        }
+        return bridge;
+    }
+
+    private static ClientEvent hello(String sidecarSessionId, ClientInfo clientInfo) {
         String protocol = clientInfo.protocol();
         if (protocol == null || protocol.isEmpty()) {
             protocol = "v1";
         }
-        session.send(ClientEvent.newBuilder()
+        return ClientEvent.newBuilder()
                 .setSidecarSessionId(sidecarSessionId)
                 .setHello(ClientHello.newBuilder()
                         .setProtocolVersion(protocol)
                         .setClientName(clientInfo.name() != null ? clientInfo.name() : "")
                         .setClientVersion(clientInfo.version() != null ? clientInfo.version() : "")
                         .build())
-                .build());
+                .build();
+    }
 
-        return session;
+    private int leastLoadedChannel() {
+        int best = 0;
+        int bestCount = activeStreams.get(0);
+        for (int i = 1; i < channels.length && bestCount > 0; i++) {
+            int count = activeStreams.get(i);
+            if (count < bestCount) {
+                best = i;
+                bestCount = count;
+            }
+        }
+        return best;
     }
 
     @Override
     public void close() {
+        for (ManagedChannel c : channels) {
+            c.shutdown();
+        }
         try {
-            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            for (ManagedChannel c : channels) {
+                c.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
         } catch (InterruptedException e) {
-            channel.shutdownNow();
+            for (ManagedChannel c : channels) {
+                c.shutdownNow();
+            }
             Thread.currentThread().interrupt();
+        } finally {
+            if (eventLoop != null) {
+                eventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+            }
         }
     }
 
     /**
-     * Returns the underlying channel for advanced use cases.
+     * Returns the underlying channel (the first, for a pooled client) for advanced use cases.
      */
     public ManagedChannel getChannel() {
         return channel;
     }
 
+    /** Data-plane compression settings; see {@link #dataPlaneCompression}. */
+    private record Compression(String codec, int minMessageBytes) {}
+
+    // -------------------------------------------------------------------------
+    // Unary call completing a CompletableFuture
+    // -------------------------------------------------------------------------
+
+    /** Adapts a unary async-stub call to a future; cancelling the future cancels the call. */
+    private static final class UnaryCall<ReqT, RespT> extends CompletableFuture<RespT>
+            implements ClientResponseObserver<ReqT, RespT> {
+        private volatile ClientCallStreamObserver<ReqT> call;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+            this.call = requestStream;
+        }
+
+        @Override
+        public void onNext(RespT value) {
+            complete(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (!isDone()) {
+                completeExceptionally(Status.INTERNAL
+                        .withDescription("unary call completed without a response")
+                        .asRuntimeException());
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            ClientCallStreamObserver<ReqT> c = call;
+            if (cancelled && c != null) {
+                c.cancel("future cancelled", null);
+            }
+            return cancelled;
+        }
+    }
+
     // -------------------------------------------------------------------------
     // Bridge to resolve the circular dependency between Session and StreamObserver
     // -------------------------------------------------------------------------
@@ -180,14 +764,56 @@ public final class SidecarClient implements AutoCloseable {
      * Bridges the gRPC StreamObserver callback to the Session's internal response observer.
      * This resolves the circular dependency: the stub needs a response observer before we
      * can create the Session (which needs the request observer the stub returns).
+     *
+     * <p>Inbound flow control is manual: nothing is requested until the session is wired, so no
+     * event can arrive before there is a receiver, and after that the session requests more only
+     * as its dispatcher frees inbound buffer space (see {@link Session#bindInboundFlowControl}).
+     * The call's on-ready signal resumes the session's outbound writer.
+     * {@code onRelease} runs once when the stream terminates.</p>
      */
-    private static final class BidiStreamBridge implements StreamObserver<ServerEvent> {
+    private static final class BidiStreamBridge
+            implements ClientResponseObserver<ClientEvent, ServerEvent> {
         private volatile StreamObserver<ServerEvent> delegate;
+        private volatile Session session;
+        private ClientCallStreamObserver<ClientEvent> requestStream;
+        /** The stub's request side of this call, set once the call has started. */
+        StreamObserver<ClientEvent> requestObserver;
+        /** Compression the call was started with, or null. */
+        Compression compression;
+        private final Runnable onRelease;
+        private final AtomicBoolean released = new AtomicBoolean();
 
-        BidiStreamBridge() {}
+        BidiStreamBridge(Runnable onRelease) {
+            this.onRelease = onRelease;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                onRelease.run();
+            }
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ClientEvent> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.disableAutoRequestWithInitial(0);
+            requestStream.setOnReadyHandler(() -> {
+                Session s = session;
+                if (s != null) {
+                    s.onOutboundReady();
+                }
+            });
+        }
+
+        /** Minimum size of a compressed message on this call, or -1 without compression. */
+        int compressionThreshold() {
+            return compression != null ? compression.minMessageBytes() : -1;
+        }
 
         void setSession(Session session) {
+            this.session = session;
             this.delegate = session.createResponseObserver();
+            session.bindInboundFlowControl(requestStream);
         }
 
         @Override
@@ -200,6 +826,7 @@ public final class SidecarClient implements AutoCloseable {
 
         @Override
         public void onError(Throwable t) {
+            release();
             StreamObserver<ServerEvent> d = delegate;
             if (d != null) {
                 d.onError(t);
@@ -208,6 +835,7 @@ public final class SidecarClient implements AutoCloseable {
 
         @Override
         public void onCompleted() {
+            release();
             StreamObserver<ServerEvent> d = delegate;
             if (d != null) {
                 d.onCompleted();
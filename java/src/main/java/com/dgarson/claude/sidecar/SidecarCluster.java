@@ -0,0 +1,328 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.ClaudeSidecarGrpc;
+import claude_sidecar.v1.Sidecar.CreateSessionRequest;
+import claude_sidecar.v1.Sidecar.CreateSessionResponse;
+import claude_sidecar.v1.Sidecar.DeleteSessionResponse;
+import claude_sidecar.v1.Sidecar.ForkSessionRequest;
+import claude_sidecar.v1.Sidecar.ForkSessionResponse;
+import claude_sidecar.v1.Sidecar.GetSessionRequest;
+import claude_sidecar.v1.Sidecar.GetSessionResponse;
+import claude_sidecar.v1.Sidecar.HealthCheckRequest;
+import claude_sidecar.v1.Sidecar.ListSessionsRequest;
+import claude_sidecar.v1.Sidecar.RewindFilesRequest;
+import claude_sidecar.v1.Sidecar.RewindFilesResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client for several sidecar processes that balances new sessions across them and pins every
+ * later call for a session to the sidecar that owns it.
+ *
+ * <p>{@link #createSession} places each session on the live sidecar with the lowest estimated
+ * cost, {@code (sessions + 1) * healthCheckLatency}, where the session count comes from
+ * {@code ListSessions} and the latency from a {@code HealthCheck} round trip. Load is probed on
+ * every sidecar in parallel, at most once per probe interval; sessions created since the last
+ * probe are counted locally so a burst of creates does not pile onto one sidecar. A sidecar whose
+ * probe fails, or that rejects a create as unavailable, is skipped until the next probe.</p>
+ *
+ * <p>Session IDs returned by {@link #createSession} and {@link #forkSession} are pinned to their
+ * sidecar. Calls for an ID this client has not seen locate its owner with {@code GetSession}, asking
+ * each endpoint in turn under the {@linkplain Builder#probeTimeout probe timeout}; only a
+ * {@code NOT_FOUND} answer moves on to the next endpoint.</p>
+ *
+ * <pre>{@code
+ * try (SidecarCluster cluster = SidecarCluster.connect(List.of("127.0.0.1:50051", "127.0.0.1:50052"))) {
+ *     String id = cluster.createSession(request).getSidecarSessionId();
+ *     Session session = cluster.attachSession(id, clientInfo, handlers);
+ * }
+ * }</pre>
+ */
+public final class SidecarCluster implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SidecarCluster.class.getName());
+
+    private final List<Member> members;
+    private final ConcurrentHashMap<String, Member> affinity = new ConcurrentHashMap<>();
+    private final long probeIntervalNanos;
+    private final Duration probeTimeout;
+    private final Object probeLock = new Object();
+    private volatile long lastProbeNanos;
+    private volatile boolean probed;
+
+    private SidecarCluster(Builder builder) {
+        if (builder.members.isEmpty()) {
+            throw new IllegalArgumentException("at least one sidecar endpoint is required");
+        }
+        this.members = List.copyOf(builder.members);
+        this.probeIntervalNanos = builder.probeInterval.toNanos();
+        this.probeTimeout = builder.probeTimeout;
+    }
+
+    /** Connect to each of the given sidecar addresses with default probe settings. */
+    public static SidecarCluster connect(List<String> addresses) {
+        Builder builder = builder();
+        for (String address : addresses) {
+            builder.endpoint(address);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Names of the endpoints, in configuration order. */
+    public List<String> endpoints() {
+        List<String> names = new ArrayList<>(members.size());
+        for (Member member : members) {
+            names.add(member.name);
+        }
+        return names;
+    }
+
+    /** Returns the endpoint a session is pinned to, or null if it is not pinned yet. */
+    public String endpointFor(String sidecarSessionId) {
+        Member member = affinity.get(sidecarSessionId);
+        return member != null ? member.name : null;
+    }
+
+    /** Returns the client for the endpoint that owns {@code sidecarSessionId}. */
+    public SidecarClient clientFor(String sidecarSessionId) {
+        return ownerOf(sidecarSessionId).client;
+    }
+
+    // -- Control plane --
+
+    /**
+     * Creates a session on the least-loaded live sidecar and pins its ID there.
+     *
+     * @throws StatusRuntimeException {@code UNAVAILABLE} if no sidecar is live, or the error of
+     *                                the chosen sidecar's {@code CreateSession}
+     */
+    public CreateSessionResponse createSession(CreateSessionRequest request) {
+        refreshLoadIfStale();
+        List<Member> candidates = new ArrayList<>(members);
+        candidates.removeIf(m -> !m.healthy);
+        candidates.sort(Comparator.comparingDouble(Member::cost));
+        StatusRuntimeException lastError = null;
+        for (Member member : candidates) {
+            member.pendingCreates.incrementAndGet();
+            try {
+                CreateSessionResponse response = member.client.createSession(request);
+                affinity.put(response.getSidecarSessionId(), member);
+                return response;
+            } catch (StatusRuntimeException e) {
+                member.pendingCreates.decrementAndGet();
+                if (e.getStatus().getCode() != Status.Code.UNAVAILABLE) {
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "Sidecar " + member.name + " unavailable; trying next", e);
+                member.healthy = false;
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError
+                : Status.UNAVAILABLE.withDescription("no live sidecar").asRuntimeException();
+    }
+
+    public GetSessionResponse getSession(String sidecarSessionId) {
+        return ownerOf(sidecarSessionId).client.getSession(sidecarSessionId);
+    }
+
+    /** Deletes a session on its sidecar and drops its pin once the sidecar confirms. */
+    public DeleteSessionResponse deleteSession(String sidecarSessionId, boolean force) {
+        DeleteSessionResponse response = ownerOf(sidecarSessionId).client
+                .deleteSession(sidecarSessionId, force);
+        if (response.getSuccess()) {
+            affinity.remove(sidecarSessionId);
+        }
+        return response;
+    }
+
+    /** Forks a session on the sidecar that owns it and pins the fork to the same sidecar. */
+    public ForkSessionResponse forkSession(ForkSessionRequest request) {
+        Member member = ownerOf(request.getSidecarSessionId());
+        ForkSessionResponse response = member.client.forkSession(request);
+        affinity.put(response.getSidecarSessionId(), member);
+        return response;
+    }
+
+    public RewindFilesResponse rewindFiles(RewindFilesRequest request) {
+        return ownerOf(request.getSidecarSessionId()).client.rewindFiles(request);
+    }
+
+    // -- Data plane --
+
+    /** Attaches to a session on the sidecar that owns it. */
+    public Session attachSession(String sidecarSessionId, ClientInfo clientInfo, Handlers handlers) {
+        return attachSession(sidecarSessionId, clientInfo, handlers, SessionConfig.defaults());
+    }
+
+    /** Attaches to a session on the sidecar that owns it, with explicit {@link SessionConfig}. */
+    public Session attachSession(String sidecarSessionId, ClientInfo clientInfo, Handlers handlers,
+                                 SessionConfig config) {
+        return ownerOf(sidecarSessionId).client
+                .attachSession(sidecarSessionId, clientInfo, handlers, config);
+    }
+
+    @Override
+    public void close() {
+        for (Member member : members) {
+            member.client.close();
+        }
+    }
+
+    // -- Internal: affinity --
+
+    private Member ownerOf(String sidecarSessionId) {
+        Member member = affinity.get(sidecarSessionId);
+        if (member != null) {
+            return member;
+        }
+        GetSessionRequest request = GetSessionRequest.newBuilder()
+                .setSidecarSessionId(sidecarSessionId)
+                .build();
+        StatusRuntimeException failure = null;
+        for (Member candidate : members) {
+            try {
+                ClaudeSidecarGrpc.newBlockingStub(candidate.client.getChannel())
+                        .withDeadlineAfter(probeTimeout.toNanos(), TimeUnit.NANOSECONDS)
+                        .getSession(request);
+            } catch (StatusRuntimeException e) {
+                if (e.getStatus().getCode() != Status.Code.NOT_FOUND) {
+                    // The owner may be unreachable; keep looking, but do not report NOT_FOUND.
+                    failure = e;
+                }
+                continue;
+            }
+            Member existing = affinity.putIfAbsent(sidecarSessionId, candidate);
+            return existing != null ? existing : candidate;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw Status.NOT_FOUND
+                .withDescription("no sidecar owns session " + sidecarSessionId)
+                .asRuntimeException();
+    }
+
+    // -- Internal: load probing --
+
+    private void refreshLoadIfStale() {
+        if (probed && System.nanoTime() - lastProbeNanos < probeIntervalNanos) {
+            return;
+        }
+        synchronized (probeLock) {
+            if (probed && System.nanoTime() - lastProbeNanos < probeIntervalNanos) {
+                return;
+            }
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> probes = new ArrayList<>(members.size());
+                for (Member member : members) {
+                    probes.add(executor.submit(() -> member.probe(probeTimeout)));
+                }
+                for (Future<?> probe : probes) {
+                    probe.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Sidecar load probe failed", e);
+            }
+            lastProbeNanos = System.nanoTime();
+            probed = true;
+        }
+    }
+
+    /** One sidecar endpoint and its latest load sample. */
+    private static final class Member {
+        final String name;
+        final SidecarClient client;
+        final AtomicInteger pendingCreates = new AtomicInteger();
+        volatile boolean healthy = true;
+        volatile int sessions;
+        volatile long latencyNanos = 1;
+
+        Member(String name, SidecarClient client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        void probe(Duration timeout) {
+            var stub = ClaudeSidecarGrpc.newBlockingStub(client.getChannel());
+            try {
+                long start = System.nanoTime();
+                stub.withDeadlineAfter(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                        .healthCheck(HealthCheckRequest.getDefaultInstance());
+                long latency = System.nanoTime() - start;
+                int count = stub.withDeadlineAfter(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                        .listSessions(ListSessionsRequest.getDefaultInstance())
+                        .getSessionsCount();
+                latencyNanos = Math.max(1, latency);
+                sessions = count;
+                pendingCreates.set(0);
+                healthy = true;
+            } catch (StatusRuntimeException e) {
+                LOG.log(Level.FINE, "Sidecar " + name + " failed load probe", e);
+                healthy = false;
+            }
+        }
+
+        double cost() {
+            return (double) (sessions + pendingCreates.get() + 1) * latencyNanos;
+        }
+    }
+
+    public static final class Builder {
+        private final List<Member> members = new ArrayList<>();
+        private Duration probeInterval = Duration.ofSeconds(1);
+        private Duration probeTimeout = Duration.ofSeconds(2);
+
+        private Builder() {}
+
+        /** Add a sidecar reachable at {@code address} over a plaintext channel. */
+        public Builder endpoint(String address) {
+            members.add(new Member(address, SidecarClient.connect(address)));
+            return this;
+        }
+
+        /**
+         * Add a sidecar through a pre-built client (e.g. TLS or pooled). The cluster takes
+         * ownership of the client and closes it.
+         */
+        public Builder endpoint(String name, SidecarClient client) {
+            members.add(new Member(name, client));
+            return this;
+        }
+
+        /** Minimum time between load probes; zero probes before every create. */
+        public Builder probeInterval(Duration interval) {
+            this.probeInterval = interval;
+            return this;
+        }
+
+        /** Deadline for each probe RPC; a sidecar that misses it is treated as down. */
+        public Builder probeTimeout(Duration timeout) {
+            this.probeTimeout = timeout;
+            return this;
+        }
+
+        public SidecarCluster build() {
+            return new SidecarCluster(this);
+        }
+    }
+}
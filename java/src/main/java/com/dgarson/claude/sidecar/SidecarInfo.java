@@ -0,0 +1,19 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+
+import java.time.Duration;
+
+/**
+ * Result of {@link SidecarClient#warmUp}: the sidecar's info and health, fetched in parallel, with
+ * its capabilities parsed once into a {@link CapabilitySet}.
+ *
+ * @param info         the {@code GetInfo} response
+ * @param health       the {@code HealthCheck} response
+ * @param capabilities the capabilities advertised in {@code info}
+ * @param latency      time from the start of the warm-up until both responses arrived
+ */
+public record SidecarInfo(Sidecar.GetInfoResponse info,
+                          Sidecar.HealthCheckResponse health,
+                          CapabilitySet capabilities,
+                          Duration latency) {}
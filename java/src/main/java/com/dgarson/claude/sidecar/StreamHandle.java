@@ -6,17 +6,31 @@ import claude_sidecar.v1.Sidecar.TurnBoundary;
 
 import java.io.EOFException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides async access to a streaming query result. Mirrors Go's run.go Stream struct.
  *
  * <p>Consumers can read partial events from {@link #partials()}, raw server events from
  * {@link #events()}, or block on the final {@link RunResult} via {@link #result()}.</p>
+ *
+ * <p>{@link #eventPublisher()} and {@link #messagePublisher()} offer the same stream as
+ * {@link Flow.Publisher}s. Each accepts a single subscriber, which is completed after TURN_END
+ * (or failed if the stream fails). While a subscriber has no outstanding demand the handle stops
+ * consuming, so {@code request(n)} paces the request's buffer, the session's dispatcher and,
+ * through gRPC inbound flow control, the sidecar itself. For a stream opened with
+ * {@link StreamOptions#demandDriven()} the handle also waits for the first subscriber before
+ * consuming anything, so no event is missed.</p>
  */
 public final class StreamHandle {
 
+    private static final long POLL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final String requestId;
     private final EventMux.Subscription subscription;
     private final EventMux mux;
@@ -25,11 +39,30 @@ public final class StreamHandle {
     private final BlockingQueue<MessageEvent> partials = new LinkedBlockingQueue<>();
     private final CompletableFuture<RunResult> doneFuture = new CompletableFuture<>();
 
-    StreamHandle(String requestId, EventMux.Subscription subscription, EventMux mux) {
+    private final boolean demandDriven;
+    private final TurnRetention retention;
+    /** Merges partials before they reach {@link #partials}, or null when coalescing is off. */
+    private final PartialCoalescer coalescer;
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+    /** Set by {@link #close()}. */
+    private volatile CancellationException cancellation;
+    private final StreamPublisher<ServerEvent> eventPublisher =
+            new StreamPublisher<>(subscribed::countDown);
+    private final StreamPublisher<MessageEvent> messagePublisher =
+            new StreamPublisher<>(subscribed::countDown);
+
+    StreamHandle(String requestId, EventMux.Subscription subscription, EventMux mux,
+                 StreamOptions options) {
         this.requestId = requestId;
         this.subscription = subscription;
         this.mux = mux;
         this.events = subscription.queue();
+        this.demandDriven = options.demandDriven();
+        this.retention = options.retention();
+        this.coalescer = options.coalesceWindow() != null
+                ? new PartialCoalescer(options.coalesceWindow().toNanos(),
+                        options.coalesceMaxChars(), partials::offer)
+                : null;
 
         Thread.ofVirtual().name("stream-" + requestId).start(this::run);
     }
@@ -40,19 +73,38 @@ public final class StreamHandle {
 
     /**
      * Returns the queue of raw server events for this request.
-     * Events are available as they arrive from the sidecar.
+     * Events are available as they arrive from the sidecar. If the handle is closed, or the
+     * session closes the request's subscription, the queue ends with
+     * {@link EventSubscription#END_OF_STREAM}.
      */
     public BlockingQueue<ServerEvent> events() {
         return events;
     }
 
     /**
-     * Returns the queue of partial (streaming) assistant message events.
+     * Returns the queue of partial (streaming) assistant message events. With
+     * {@link StreamOptions.Builder#coalescePartials} set, consecutive deltas arrive merged.
      */
     public BlockingQueue<MessageEvent> partials() {
         return partials;
     }
 
+    /**
+     * Returns a publisher of this request's server events, in arrival order, including the
+     * TURN_END boundary. Only events consumed after the subscription is made are delivered.
+     */
+    public Flow.Publisher<ServerEvent> eventPublisher() {
+        return eventPublisher;
+    }
+
+    /**
+     * Returns a publisher of this request's message events, partial and complete, in arrival
+     * order. Only messages consumed after the subscription is made are delivered.
+     */
+    public Flow.Publisher<MessageEvent> messagePublisher() {
+        return messagePublisher;
+    }
+
     /**
      * Returns a future that completes with the final {@link RunResult} when the turn ends.
      */
@@ -69,18 +121,51 @@ public final class StreamHandle {
         return doneFuture.get();
     }
 
-    /** Cancel this stream. */
+    /**
+     * Cancel this stream. The handle stops consuming, {@link #resultFuture()} fails with a
+     * {@link CancellationException}, and so do the publishers' subscribers.
+     */
     public void close() {
+        CancellationException cancelled = new CancellationException("stream closed");
+        cancellation = cancelled;
+        doneFuture.completeExceptionally(cancelled);
+        // Wakes the loop if it is waiting in emit for demand; it fails the subscribers itself,
+        // so onError never overlaps an onNext.
+        eventPublisher.stop();
+        messagePublisher.stop();
         mux.unsubscribeRequest(requestId, subscription);
+        // Wakes the loop if it is waiting for an event, or (demand-driven) for a subscriber.
+        subscription.end();
+        subscribed.countDown();
     }
 
     // -- Internal dispatch loop --
 
+    private void flushPartials() {
+        if (coalescer != null) {
+            coalescer.flush();
+        }
+    }
+
     private void run() {
         Turn turn = null;
+        Throwable failure = null;
         try {
-            while (true) {
-                ServerEvent event = events.poll(30, java.util.concurrent.TimeUnit.SECONDS);
+            if (demandDriven) {
+                subscribed.await();
+            }
+            while (cancellation == null) {
+                long waitNanos = POLL_NANOS;
+                if (coalescer != null) {
+                    waitNanos = Math.min(waitNanos, coalescer.nanosUntilDue(System.nanoTime()));
+                }
+                ServerEvent event = events.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (coalescer != null) {
+                    coalescer.flushIfDue(System.nanoTime());
+                }
+                if (event == EventMux.END_OF_STREAM || cancellation != null) {
+                    break;
+                }
                 if (event == null) {
                     // Check if subscription is closed (no more events coming)
                     if (subscription.isClosed() && events.isEmpty()) {
@@ -89,11 +174,16 @@ public final class StreamHandle {
                     continue;
                 }
 
+                eventPublisher.emit(event);
+                if (event.hasMessage()) {
+                    messagePublisher.emit(event.getMessage());
+                }
+
                 // Initialize the turn on first event with a turn ID
                 if (turn == null) {
                     String turnId = event.getTurnId();
                     if (turnId != null && !turnId.isEmpty()) {
-                        turn = new Turn(turnId);
+                        turn = new Turn(turnId, retention);
                     } else {
                         continue;
                     }
@@ -115,14 +205,21 @@ public final class StreamHandle {
                         if (turn.getTurnIndex() == 0) {
                             turn.setTurnIndex(boundary.getTurnIndex());
                         }
+                        flushPartials();
                         doneFuture.complete(new RunResult(turn));
                         return;
                     }
                 }
                 if (event.hasMessage()) {
                     MessageEvent msg = event.getMessage();
-                    if (msg.getIsPartial()) {
-                        partials.offer(msg);
+                    if (msg.getIsPartial() && !demandDriven) {
+                        if (coalescer != null) {
+                            coalescer.add(msg, System.nanoTime());
+                        } else {
+                            partials.offer(msg);
+                        }
+                    } else if (!msg.getIsPartial()) {
+                        flushPartials();
                     }
                     turn.addMessage(msg);
                 }
@@ -135,18 +232,38 @@ public final class StreamHandle {
             }
 
             // Stream ended without TURN_END
-            if (turn != null) {
+            if (cancellation != null) {
+                failure = cancellation;
+                doneFuture.completeExceptionally(failure);
+            } else if (subscription.failure() != null) {
+                failure = subscription.failure();
+                doneFuture.completeExceptionally(failure);
+            } else if (subscription.isOverflowed()) {
+                failure = new IllegalStateException("event buffer overflowed for request " + requestId);
+                doneFuture.completeExceptionally(failure);
+            } else if (turn != null) {
                 doneFuture.complete(new RunResult(turn));
             } else {
-                doneFuture.completeExceptionally(new EOFException("stream ended with no turn"));
+                failure = new EOFException("stream ended with no turn");
+                doneFuture.completeExceptionally(failure);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            failure = e;
             doneFuture.completeExceptionally(e);
         } catch (Exception e) {
+            failure = e;
             doneFuture.completeExceptionally(e);
         } finally {
+            flushPartials();
             mux.unsubscribeRequest(requestId, subscription);
+            if (failure != null) {
+                eventPublisher.fail(failure);
+                messagePublisher.fail(failure);
+            } else {
+                eventPublisher.complete();
+                messagePublisher.complete();
+            }
         }
     }
 }
@@ -0,0 +1,152 @@
+package com.dgarson.claude.sidecar;
+
+import java.time.Duration;
+
+/**
+ * Per-call options for {@link Session#stream(String, StreamOptions)} and
+ * {@link Session#run(String, StreamOptions)}.
+ */
+public final class StreamOptions {
+
+    private static final StreamOptions DEFAULTS = builder().build();
+
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean demandDriven;
+    private final Duration coalesceWindow;
+    private final int coalesceMaxChars;
+    private final TurnRetention retention;
+
+    private StreamOptions(Builder builder) {
+        this.bufferSize = builder.bufferSize;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.demandDriven = builder.demandDriven;
+        this.coalesceWindow = builder.coalesceWindow;
+        this.coalesceMaxChars = builder.coalesceMaxChars;
+        this.retention = builder.retention;
+    }
+
+    /** Capacity of the request's event buffer. */
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /** What the dispatcher does when the request's event buffer is full. */
+    public OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Whether the stream is paced by the subscribers of {@link StreamHandle#eventPublisher()} and
+     * {@link StreamHandle#messagePublisher()}. The handle then waits for a first subscriber before
+     * consuming any event, delivers each event only once a subscriber has requested it, and does
+     * not fill {@link StreamHandle#partials()}. Combined with {@link OverflowPolicy#BLOCK}, a slow
+     * subscriber throttles the sidecar through gRPC flow control. Ignored by
+     * {@link Session#run(String, StreamOptions)}, which has no subscriber.
+     */
+    public boolean demandDriven() {
+        return demandDriven;
+    }
+
+    /**
+     * How long a run of consecutive partials may be held and merged before it is delivered to
+     * {@link StreamHandle#partials()}, or null if partials are delivered one by one.
+     */
+    public Duration coalesceWindow() {
+        return coalesceWindow;
+    }
+
+    /** Merged delta characters after which a coalesced run is delivered early. */
+    public int coalesceMaxChars() {
+        return coalesceMaxChars;
+    }
+
+    /** How much history the resulting {@link Turn} keeps. */
+    public TurnRetention retention() {
+        return retention;
+    }
+
+    /** Returns a builder initialized with these options. */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.bufferSize = bufferSize;
+        builder.overflowPolicy = overflowPolicy;
+        builder.demandDriven = demandDriven;
+        builder.coalesceWindow = coalesceWindow;
+        builder.coalesceMaxChars = coalesceMaxChars;
+        builder.retention = retention;
+        return builder;
+    }
+
+    /**
+     * Returns the default options: a 256-event buffer with {@link OverflowPolicy#BLOCK} and
+     * {@link TurnRetention#FULL} retention.
+     */
+    public static StreamOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int bufferSize = 256;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private boolean demandDriven;
+        private Duration coalesceWindow;
+        private int coalesceMaxChars = Integer.MAX_VALUE;
+        private TurnRetention retention = TurnRetention.FULL;
+
+        private Builder() {}
+
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy policy) {
+            this.overflowPolicy = policy != null ? policy : OverflowPolicy.BLOCK;
+            return this;
+        }
+
+        public Builder demandDriven(boolean demandDriven) {
+            this.demandDriven = demandDriven;
+            return this;
+        }
+
+        /**
+         * Merge consecutive partials before they reach {@link StreamHandle#partials()}: text,
+         * thinking and tool-input deltas for the same content block are concatenated, and runs of
+         * partial assistant snapshots collapse to the latest. A run is delivered once it is
+         * {@code window} old or holds {@code maxChars} delta characters, and always before the
+         * next complete message and at the end of the turn, so the merged content is unchanged.
+         * Suits consumers that render at a fixed rate, e.g. a 16-33 ms window for 30-60 Hz.
+         * The turn and the publishers still see every partial.
+         */
+        public Builder coalescePartials(Duration window, int maxChars) {
+            if (window == null || window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("coalesce window must be positive: " + window);
+            }
+            if (maxChars < 1) {
+                throw new IllegalArgumentException("maxChars must be positive: " + maxChars);
+            }
+            this.coalesceWindow = window;
+            this.coalesceMaxChars = maxChars;
+            return this;
+        }
+
+        /** Select how much of the turn's history to keep; defaults to {@link TurnRetention#FULL}. */
+        public Builder retention(TurnRetention retention) {
+            this.retention = retention != null ? retention : TurnRetention.FULL;
+            return this;
+        }
+
+        public StreamOptions build() {
+            return new StreamOptions(this);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.dgarson.claude.sidecar;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single-subscriber {@link Flow.Publisher} fed by one producer thread (a {@link StreamHandle}'s
+ * dispatch loop). {@link #emit} blocks the producer until the subscriber has requested more
+ * items, which is what propagates {@code request(n)} back through the session's buffers to gRPC
+ * inbound flow control.
+ *
+ * @param <T> item type
+ */
+final class StreamPublisher<T> implements Flow.Publisher<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Runnable onFirstSubscribe;
+
+    private Flow.Subscriber<? super T> subscriber;
+    private boolean ready;
+    private boolean cancelled;
+    private boolean stopped;
+    private long demand;
+    private Throwable invalidRequest;
+    private boolean terminated;
+    private Throwable terminalError;
+    private boolean terminalDelivered;
+
+    /**
+     * @param onFirstSubscribe run on the subscribing thread once the (only) subscriber has
+     *                         received {@code onSubscribe}; may be null
+     */
+    StreamPublisher(Runnable onFirstSubscribe) {
+        this.onFirstSubscribe = onFirstSubscribe;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> s) {
+        Objects.requireNonNull(s, "subscriber");
+        boolean rejected;
+        lock.lock();
+        try {
+            rejected = subscriber != null;
+            if (!rejected) {
+                subscriber = s;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (rejected) {
+            s.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            s.onError(new IllegalStateException("stream publisher allows a single subscriber"));
+            return;
+        }
+
+        s.onSubscribe(new Subscription());
+        lock.lock();
+        try {
+            ready = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        deliverTerminalIfPending();
+        if (onFirstSubscribe != null) {
+            onFirstSubscribe.run();
+        }
+    }
+
+    /**
+     * Delivers one item, waiting while the subscriber has no outstanding demand. Called only from
+     * the producer thread.
+     *
+     * @return false if the item was not delivered because there is no active subscriber
+     */
+    boolean emit(T item) throws InterruptedException {
+        Flow.Subscriber<? super T> target;
+        lock.lock();
+        try {
+            while (true) {
+                if (subscriber == null || cancelled || stopped || terminated) {
+                    return false;
+                }
+                if (invalidRequest != null) {
+                    break;
+                }
+                if (ready && demand > 0) {
+                    demand--;
+                    break;
+                }
+                changed.await();
+            }
+            target = subscriber;
+        } finally {
+            lock.unlock();
+        }
+        if (failInvalidRequest()) {
+            return false;
+        }
+        try {
+            target.onNext(item);
+        } catch (RuntimeException e) {
+            // Rule 2.13: a throwing subscriber is treated as cancelled.
+            cancel();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes a pending or later {@link #emit} return false without delivering, so the producer can
+     * stop and then terminate the subscriber itself. Safe to call from any thread.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Completes the subscriber (now or when it subscribes). Idempotent. */
+    void complete() {
+        terminate(null);
+    }
+
+    /** Fails the subscriber (now or when it subscribes). Idempotent. */
+    void fail(Throwable error) {
+        terminate(error);
+    }
+
+    private void terminate(Throwable error) {
+        lock.lock();
+        try {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            terminalError = error;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        deliverTerminalIfPending();
+    }
+
+    private void deliverTerminalIfPending() {
+        Flow.Subscriber<? super T> target;
+        Throwable error;
+        lock.lock();
+        try {
+            if (!terminated || !ready || cancelled || terminalDelivered) {
+                return;
+            }
+            terminalDelivered = true;
+            target = subscriber;
+            error = invalidRequest != null ? invalidRequest : terminalError;
+        } finally {
+            lock.unlock();
+        }
+        if (error != null) {
+            target.onError(error);
+        } else {
+            target.onComplete();
+        }
+    }
+
+    private boolean failInvalidRequest() {
+        Flow.Subscriber<? super T> target;
+        Throwable error;
+        lock.lock();
+        try {
+            if (invalidRequest == null || terminalDelivered) {
+                return invalidRequest != null;
+            }
+            terminalDelivered = true;
+            cancelled = true;
+            target = subscriber;
+            error = invalidRequest;
+        } finally {
+            lock.unlock();
+        }
+        target.onError(error);
+        return true;
+    }
+
+    private void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // Rule 3.9: signalled from the producer thread so it never overlaps onNext.
+                    if (invalidRequest == null) {
+                        invalidRequest = new IllegalArgumentException(
+                                "request must be positive (rule 3.9): " + n);
+                    }
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            StreamPublisher.this.cancel();
+        }
+    }
+}
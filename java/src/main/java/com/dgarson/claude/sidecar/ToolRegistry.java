@@ -0,0 +1,135 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ToolInvocationRequest;
+import com.google.protobuf.Struct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client tools declared once and dispatched by {@code tool_fqn}.
+ *
+ * <p>Each tool is registered under a server key and name, and answers invocations of
+ * {@code mcp__<server_key>__<tool_name>}. The registry is itself a {@link Handlers.ToolHandler}
+ * that routes an invocation with a single hash lookup on its {@code tool_fqn}, and it declares the
+ * same tools to the sidecar through {@link OptionsBuilder#withClientTools}, so what is declared
+ * and what is dispatched cannot drift apart.</p>
+ *
+ * <p>Typed tools take their input as a record: {@code tool_input} is bound straight into it by a
+ * codec cached per record class, and unless a schema is given, the tool's input schema is derived
+ * from the record's components.</p>
+ *
+ * <pre>{@code
+ * record Lookup(String customerId, boolean includeOrders) {}
+ *
+ * ToolRegistry tools = ToolRegistry.builder()
+ *         .tool("crm", "lookup_customer", "Look up a customer by ID", Lookup.class,
+ *                 input -> ToolResults.text(crm.describe(input.customerId())))
+ *         .build();
+ *
+ * OptionsBuilder options = OptionsBuilder.create().withClientTools(tools);
+ * Handlers handlers = Handlers.builder().tool(tools).build();
+ * }</pre>
+ */
+public final class ToolRegistry implements Handlers.ToolHandler {
+
+    /** Handles invocations of a typed tool, given its decoded input. */
+    @FunctionalInterface
+    public interface TypedToolHandler<R extends Record> {
+        Struct handle(R input) throws Exception;
+    }
+
+    private final Map<String, Handlers.ToolHandler> routes;
+    private final Map<String, List<ToolSpec>> specs;
+    private final Handlers.ToolHandler fallback;
+
+    private ToolRegistry(Builder builder) {
+        this.routes = new HashMap<>(builder.routes);
+        Map<String, List<ToolSpec>> specs = new LinkedHashMap<>();
+        builder.specs.forEach((serverKey, tools) -> specs.put(serverKey, List.copyOf(tools)));
+        this.specs = Collections.unmodifiableMap(specs);
+        this.fallback = builder.fallback;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Returns the fully qualified name the sidecar uses for a client tool. */
+    public static String fqn(String serverKey, String toolName) {
+        return "mcp__" + serverKey + "__" + toolName;
+    }
+
+    @Override
+    public Struct handle(ToolInvocationRequest request) throws Exception {
+        Handlers.ToolHandler handler = routes.get(request.getToolFqn());
+        if (handler == null) {
+            return fallback != null
+                    ? fallback.handle(request)
+                    : ToolResults.error("unknown tool: " + request.getToolFqn());
+        }
+        return handler.handle(request);
+    }
+
+    /** True if {@code toolFqn} names a registered tool. */
+    public boolean contains(String toolFqn) {
+        return routes.containsKey(toolFqn);
+    }
+
+    /** Declared tools by server key, in registration order. */
+    public Map<String, List<ToolSpec>> toolSpecs() {
+        return specs;
+    }
+
+    public static final class Builder {
+        private final Map<String, Handlers.ToolHandler> routes = new HashMap<>();
+        private final Map<String, List<ToolSpec>> specs = new LinkedHashMap<>();
+        private Handlers.ToolHandler fallback;
+
+        private Builder() {}
+
+        /** Registers a tool that handles the raw invocation request. */
+        public Builder tool(String serverKey, ToolSpec spec, Handlers.ToolHandler handler) {
+            String fqn = fqn(serverKey, spec.name());
+            if (routes.putIfAbsent(fqn, handler) != null) {
+                throw new IllegalArgumentException("duplicate tool: " + fqn);
+            }
+            specs.computeIfAbsent(serverKey, k -> new ArrayList<>()).add(spec);
+            return this;
+        }
+
+        /**
+         * Registers a typed tool whose input schema is derived from {@code inputType}.
+         *
+         * @throws IllegalArgumentException if {@code inputType} has an unsupported component type
+         */
+        public <R extends Record> Builder tool(String serverKey, String name, String description,
+                                               Class<R> inputType, TypedToolHandler<R> handler) {
+            RecordCodec<R> codec = RecordCodec.of(inputType);
+            return tool(serverKey, new ToolSpec(name, description, codec.schema()), inputType,
+                    handler);
+        }
+
+        /** Registers a typed tool with an explicit spec, e.g. a hand-written schema. */
+        public <R extends Record> Builder tool(String serverKey, ToolSpec spec, Class<R> inputType,
+                                               TypedToolHandler<R> handler) {
+            RecordCodec<R> codec = RecordCodec.of(inputType);
+            return tool(serverKey, spec,
+                    request -> handler.handle(codec.decode(request.getToolInput())));
+        }
+
+        /** Handles invocations of unregistered tools; by default they get an error result. */
+        public Builder fallback(Handlers.ToolHandler handler) {
+            this.fallback = handler;
+            return this;
+        }
+
+        public ToolRegistry build() {
+            return new ToolRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar.ToolInvocationRequest;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Memoizes the results of idempotent client tools in front of another {@link Handlers.ToolHandler}.
+ *
+ * <p>Only tools registered with {@link Builder#cache} are cached; every other invocation goes
+ * straight to the delegate. Results are keyed by {@code tool_fqn} and the deterministic
+ * serialization of {@code tool_input} (map keys sorted), so inputs that differ only in field order
+ * share an entry. Entries expire after their tool's TTL and are evicted least recently used once
+ * the cache holds more than {@code maxEntries} results or {@code maxWeight} serialized bytes.
+ * Error results ({@code is_error}) and exceptions are never cached.</p>
+ *
+ * <p>Concurrent identical calls are deduplicated: while one runs the delegate, the others wait for
+ * and share its result or exception. If the running call is interrupted instead, for example by
+ * its own callback deadline, the waiting calls are not failed with it but run the delegate
+ * themselves. One instance can sit in the {@link Handlers} of many sessions.</p>
+ *
+ * <pre>{@code
+ * ToolResultCache tools = ToolResultCache.builder(registry)
+ *         .cache(ToolRegistry.fqn("db", "describe_table"), Duration.ofMinutes(10))
+ *         .maxEntries(1_000)
+ *         .build();
+ * Handlers handlers = Handlers.builder().tool(tools).build();
+ * }</pre>
+ */
+public final class ToolResultCache implements Handlers.ToolHandler {
+
+    private final Handlers.ToolHandler delegate;
+    private final Map<String, Long> ttlNanos;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LongSupplier ticker;
+
+    /** Access-ordered, guarded by itself. */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private final ConcurrentHashMap<Key, CompletableFuture<Struct>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private ToolResultCache(Builder builder) {
+        this.delegate = builder.delegate;
+        this.ttlNanos = Map.copyOf(builder.ttlNanos);
+        this.maxEntries = builder.maxEntries;
+        this.maxWeight = builder.maxWeight;
+        this.ticker = builder.ticker;
+    }
+
+    public static Builder builder(Handlers.ToolHandler delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public Struct handle(ToolInvocationRequest request) throws Exception {
+        Long ttl = ttlNanos.get(request.getToolFqn());
+        if (ttl == null) {
+            return delegate.handle(request);
+        }
+        Key key = new Key(request.getToolFqn(), canonical(request.getToolInput()));
+        while (true) {
+            Struct cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+
+            CompletableFuture<Struct> flight = new CompletableFuture<>();
+            CompletableFuture<Struct> leader = inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                coalesced.incrementAndGet();
+                try {
+                    return leader.get();
+                } catch (CancellationException e) {
+                    // The leader was interrupted; its failure says nothing about this call.
+                    coalesced.decrementAndGet();
+                    continue;
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+            misses.incrementAndGet();
+            try {
+                Struct result = delegate.handle(request);
+                if (!isError(result)) {
+                    store(key, result, ttl);
+                }
+                flight.complete(result);
+                return result;
+            } catch (Throwable t) {
+                if (t instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                    inFlight.remove(key, flight);
+                    flight.cancel(false);
+                } else {
+                    flight.completeExceptionally(t);
+                }
+                throw t;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /** Drops every cached result of {@code toolFqn}, e.g. after the data behind it changed. */
+    public void invalidate(String toolFqn) {
+        synchronized (entries) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getKey().toolFqn.equals(toolFqn)) {
+                    weight -= e.getValue().weight;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /** Drops every cached result. */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /** Returns a snapshot of the cache's counters. */
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), coalesced.get(), evictions.get(),
+                    entries.size(), weight);
+        }
+    }
+
+    /**
+     * Cache counters. A hit was answered from the cache, a miss ran the delegate, and a coalesced
+     * call waited for an identical call already running it. Expired and evicted entries both count
+     * as evictions.
+     */
+    public record Stats(long hits, long misses, long coalesced, long evictions, int entries,
+                        long weight) {
+
+        /** Fraction of cacheable calls that did not run the delegate, or 0 before the first. */
+        public double hitRate() {
+            long total = hits + misses + coalesced;
+            return total > 0 ? (double) (hits + coalesced) / total : 0;
+        }
+    }
+
+    // -- Internal --
+
+    private Struct lookup(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (ticker.getAsLong() - entry.expiresAt >= 0) {
+                entries.remove(key);
+                weight -= entry.weight;
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    private void store(Key key, Struct result, long ttl) {
+        long entryWeight = key.input.size() + result.getSerializedSize();
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key,
+                    new Entry(result, entryWeight, ticker.getAsLong() + ttl));
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+            Iterator<Entry> it = entries.values().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+                weight -= it.next().weight;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static ByteString canonical(Struct input) {
+        try {
+            ByteString.Output out = ByteString.newOutput(input.getSerializedSize());
+            CodedOutputStream coded = CodedOutputStream.newInstance(out);
+            coded.useDeterministicSerialization();
+            input.writeTo(coded);
+            coded.flush();
+            return out.toByteString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isError(Struct result) {
+        Value isError = result.getFieldsMap().get("is_error");
+        return isError != null && isError.getBoolValue();
+    }
+
+    private record Key(String toolFqn, ByteString input) {}
+
+    private record Entry(Struct result, long weight, long expiresAt) {}
+
+    public static final class Builder {
+        private final Handlers.ToolHandler delegate;
+        private final Map<String, Long> ttlNanos = new HashMap<>();
+        private int maxEntries = 10_000;
+        private long maxWeight = 64L * 1024 * 1024;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder(Handlers.ToolHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        /** Caches results of the tool {@code toolFqn}, which must be idempotent, for {@code ttl}. */
+        public Builder cache(String toolFqn, Duration ttl) {
+            if (ttl.isNegative() || ttl.isZero()) {
+                throw new IllegalArgumentException("ttl must be positive: " + ttl);
+            }
+            ttlNanos.put(toolFqn, ttl.toNanos());
+            return this;
+        }
+
+        /** Maximum number of cached results. */
+        public Builder maxEntries(int entries) {
+            if (entries < 1) {
+                throw new IllegalArgumentException("maxEntries must be positive: " + entries);
+            }
+            this.maxEntries = entries;
+            return this;
+        }
+
+        /** Maximum total serialized size of cached inputs and results, in bytes. */
+        public Builder maxWeight(long bytes) {
+            if (bytes < 1) {
+                throw new IllegalArgumentException("maxWeight must be positive: " + bytes);
+            }
+            this.maxWeight = bytes;
+            return this;
+        }
+
+        /** Time source in nanoseconds, for tests. */
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public ToolResultCache build() {
+            return new ToolResultCache(this);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.dgarson.claude.sidecar;
 
 import claude_sidecar.v1.Sidecar.AssistantMessage;
+import claude_sidecar.v1.Sidecar.ContentBlock;
 import claude_sidecar.v1.Sidecar.MessageEvent;
 import claude_sidecar.v1.Sidecar.ResultMessage;
 import claude_sidecar.v1.Sidecar.ServerEvent;
 import claude_sidecar.v1.Sidecar.SidecarError;
 import claude_sidecar.v1.Sidecar.StreamEvent;
 import claude_sidecar.v1.Sidecar.SystemMessage;
+import claude_sidecar.v1.Sidecar.TextBlock;
 import claude_sidecar.v1.Sidecar.UserMessage;
 
 import java.util.ArrayList;
@@ -18,6 +20,11 @@ import java.util.Map;
 /**
  * Collects events for a single conversational turn.
  * Mirrors Go's turns.go Turn struct.
+ *
+ * <p>What is kept is governed by the turn's {@link TurnRetention}. Under the reduced modes the
+ * list accessors for dropped history return empty lists, while {@link #getResult()},
+ * {@link #latestMessage(String)}, {@link #mergedAssistant()} and {@link #getErrors()} are always
+ * available.</p>
  */
 public final class Turn {
 
@@ -29,6 +36,7 @@ public final class Turn {
 
     private String requestId = "";
     private final String turnId;
+    private final TurnRetention retention;
     private int turnIndex;
     private boolean started;
     private boolean ended;
@@ -41,9 +49,18 @@ public final class Turn {
     private final List<SidecarError> errors = new ArrayList<>();
     private ResultMessage result;
     private final Map<String, MessageEvent> latest = new HashMap<>();
+    /** Latest partial assistant snapshot since the last complete assistant message. */
+    private MessageEvent latestPartialAssistant;
+    /** Text deltas streamed since the last complete assistant message. */
+    private final StringBuilder partialText = new StringBuilder();
 
     Turn(String turnId) {
+        this(turnId, TurnRetention.FULL);
+    }
+
+    Turn(String turnId, TurnRetention retention) {
         this.turnId = turnId;
+        this.retention = retention;
     }
 
     // -- Accessors --
@@ -76,6 +93,10 @@ public final class Turn {
         this.started = started;
     }
 
+    public TurnRetention getRetention() {
+        return retention;
+    }
+
     public boolean isEnded() {
         return ended;
     }
@@ -89,7 +110,9 @@ public final class Turn {
     }
 
     void addEvent(ServerEvent event) {
-        events.add(event);
+        if (retention == TurnRetention.FULL) {
+            events.add(event);
+        }
     }
 
     public List<MessageEvent> getMessages() {
@@ -109,7 +132,9 @@ public final class Turn {
     }
 
     void addStderr(String line) {
-        stderr.add(line);
+        if (retention != TurnRetention.RESULT_ONLY) {
+            stderr.add(line);
+        }
     }
 
     public List<SidecarError> getErrors() {
@@ -148,18 +173,22 @@ public final class Turn {
     }
 
     /**
-     * Returns the latest complete assistant message, falling back to the most recent partial.
+     * Returns the latest complete assistant message, falling back to the most recent partial
+     * assistant snapshot, then to the text streamed as deltas since the last complete message.
      */
     public AssistantMessage mergedAssistant() {
         AssistantMessage assistant = latestAssistant();
         if (assistant != null) {
             return assistant;
         }
-        for (int i = partials.size() - 1; i >= 0; i--) {
-            MessageEvent partial = partials.get(i);
-            if (partial.hasAssistant()) {
-                return partial.getAssistant();
-            }
+        if (latestPartialAssistant != null) {
+            return latestPartialAssistant.getAssistant();
+        }
+        if (partialText.length() > 0) {
+            return AssistantMessage.newBuilder()
+                    .addContent(ContentBlock.newBuilder()
+                            .setText(TextBlock.newBuilder().setText(partialText.toString())))
+                    .build();
         }
         return null;
     }
@@ -184,16 +213,26 @@ public final class Turn {
         if (message == null) {
             return;
         }
+        boolean full = retention == TurnRetention.FULL;
         if (message.getIsPartial()) {
-            partials.add(message);
+            foldPartial(message);
+            if (full) {
+                partials.add(message);
+            }
         } else {
-            messages.add(message);
+            if (message.hasAssistant()) {
+                latestPartialAssistant = null;
+                partialText.setLength(0);
+            }
+            if (retention != TurnRetention.RESULT_ONLY) {
+                messages.add(message);
+            }
         }
         String kind = messageKind(message);
         if (!kind.isEmpty()) {
             latest.put(kind, message);
         }
-        if (message.hasStreamEvent()) {
+        if (message.hasStreamEvent() && full) {
             streamEvents.add(message.getStreamEvent());
         }
         if (message.hasResult()) {
@@ -201,6 +240,17 @@ public final class Turn {
         }
     }
 
+    private void foldPartial(MessageEvent message) {
+        if (message.hasAssistant()) {
+            latestPartialAssistant = message;
+        } else if (message.hasStreamEvent()) {
+            String text = PartialCoalescer.textDelta(message.getStreamEvent());
+            if (text != null) {
+                partialText.append(text);
+            }
+        }
+    }
+
     private static String messageKind(MessageEvent message) {
         if (message.hasUser()) return KIND_USER;
         if (message.hasAssistant()) return KIND_ASSISTANT;
@@ -0,0 +1,28 @@
+package com.dgarson.claude.sidecar;
+
+/**
+ * How much of a turn's event history a {@link Turn} keeps, selected per call with
+ * {@link StreamOptions.Builder#retention(TurnRetention)}.
+ *
+ * <p>A completed turn stays reachable for as long as its {@link RunResult} is, so long agentic
+ * turns with many tool calls and partial messages can pin tens of megabytes under {@link #FULL}.
+ * The reduced modes drop the raw history as it arrives and fold partials into
+ * {@link Turn#mergedAssistant()}, so a completed turn costs kilobytes.</p>
+ */
+public enum TurnRetention {
+
+    /** Keep every server event, message, partial, stream event and stderr line. */
+    FULL,
+
+    /**
+     * Keep complete messages, stderr lines and errors. Raw server events, partials and stream
+     * events are dropped.
+     */
+    MESSAGES_ONLY,
+
+    /**
+     * Keep only the result, the latest message of each kind and errors. Raw events, message
+     * history, partials, stream events and stderr are dropped.
+     */
+    RESULT_ONLY
+}
@@ -0,0 +1,72 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CallbackDeadlines}.
+ */
+class CallbackDeadlinesTest {
+
+    @Test
+    void testHookTimeoutFollowsMatchingSpec() {
+        CallbackDeadlines deadlines = new CallbackDeadlines(List.of(
+                spec("PreToolUse", "Write|Edit", 5),
+                spec("PreToolUse", "", 10),
+                spec("PostToolUse", "Bash", 30),
+                spec("Stop", "", 0)));
+
+        assertEquals(Duration.ofSeconds(10), deadlines.hookTimeout(hook("PreToolUse", "Edit")),
+                "longest matching spec wins");
+        assertEquals(Duration.ofSeconds(10), deadlines.hookTimeout(hook("PreToolUse", "Read")));
+        assertEquals(Duration.ofSeconds(30), deadlines.hookTimeout(hook("PostToolUse", "Bash")));
+        assertEquals(CallbackDeadlines.DEFAULT_HOOK_TIMEOUT,
+                deadlines.hookTimeout(hook("PostToolUse", "Read")), "no spec matches");
+        assertEquals(CallbackDeadlines.DEFAULT_HOOK_TIMEOUT,
+                deadlines.hookTimeout(hook("Stop", null)), "0 means the sidecar default");
+    }
+
+    @Test
+    void testInvalidMatcherMatchesEveryTool() {
+        CallbackDeadlines deadlines = new CallbackDeadlines(List.of(
+                spec("PreToolUse", "Bash", 5),
+                spec("PreToolUse", "Bash(", 30)));
+
+        assertEquals(Duration.ofSeconds(30), deadlines.hookTimeout(hook("PreToolUse", "Bash")),
+                "an unparseable matcher must not shorten the deadline");
+        assertEquals(Duration.ofSeconds(30), deadlines.hookTimeout(hook("PreToolUse", "Read")));
+    }
+
+    @Test
+    void testNoSpecsMeansNoDeadline() {
+        CallbackDeadlines deadlines = new CallbackDeadlines(List.of());
+        assertNull(deadlines.hookTimeout(hook("PreToolUse", "Bash")));
+    }
+
+    private static Sidecar.HookSpec spec(String event, String matcher, int timeoutSeconds) {
+        return Sidecar.HookSpec.newBuilder()
+                .setHookEvent(event)
+                .setMatcher(matcher)
+                .setTimeoutSeconds(timeoutSeconds)
+                .build();
+    }
+
+    private static Sidecar.HookInvocationRequest hook(String event, String toolName) {
+        Struct.Builder input = Struct.newBuilder();
+        if (toolName != null) {
+            input.putFields("tool_name", Value.newBuilder().setStringValue(toolName).build());
+        }
+        return Sidecar.HookInvocationRequest.newBuilder()
+                .setInvocationId("hook-1")
+                .setHookEvent(event)
+                .setInputData(input)
+                .build();
+    }
+}
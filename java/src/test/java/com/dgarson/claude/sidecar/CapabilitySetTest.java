@@ -0,0 +1,50 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CapabilitySet}.
+ */
+class CapabilitySetTest {
+
+    @Test
+    void testKnownAndUnknownCapabilities() {
+        CapabilitySet set = CapabilitySet.from(Sidecar.GetInfoResponse.newBuilder()
+                .addCapabilities("hooks")
+                .addCapabilities("sdk_mcp")
+                .addCapabilities("teleport")
+                .build());
+
+        assertTrue(set.has(Capability.HOOKS));
+        assertTrue(set.has("sdk_mcp"));
+        assertTrue(set.has("teleport"), "expected unknown strings to be retained");
+        assertFalse(set.has(Capability.SANDBOX));
+        assertFalse(set.has((String) null));
+        assertEquals(EnumSet.of(Capability.HOOKS, Capability.SDK_MCP), set.known());
+        assertEquals(Set.of("teleport"), set.unknown());
+    }
+
+    @Test
+    void testHasAllAndHasAny() {
+        CapabilitySet set = CapabilitySet.of(List.of(Capabilities.FORK, Capabilities.AGENTS));
+
+        assertTrue(set.hasAll(Capability.FORK, Capability.AGENTS));
+        assertFalse(set.hasAll(Capability.FORK, Capability.PLUGINS));
+        assertTrue(set.hasAny(Capability.PLUGINS, Capability.AGENTS));
+        assertFalse(CapabilitySet.of(List.of()).hasAny(Capability.FORK));
+    }
+
+    @Test
+    void testWireNamesMatchConstants() {
+        assertEquals(Capabilities.PERMISSION_CALLBACK, Capability.PERMISSION_CALLBACK.wireName());
+        assertSame(Capability.INPUT_STREAM, Capability.fromWireName(Capabilities.INPUT_STREAM));
+        assertNull(Capability.fromWireName("nope"));
+    }
+}
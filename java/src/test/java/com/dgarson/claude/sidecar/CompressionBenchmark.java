@@ -0,0 +1,141 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shows when {@link SidecarClient#dataPlaneCompression} pays off. For each payload (repetitive
+ * JSON-like tool output and incompressible base64 image data, at several sizes) it measures the
+ * median round trip of an input chunk over loopback TCP with and without gzip, then projects the
+ * cost onto slower links as {@code compress time + wire bytes / bandwidth}.
+ *
+ * <p>Skipped unless {@code sidecar.bench} is set ({@code SIDECAR_BENCH=1 ./gradlew test
+ * --tests CompressionBenchmark}).</p>
+ */
+@Tag("benchmark")
+class CompressionBenchmark {
+
+    private static final int[] SIZES = {512, 4 * 1024, 64 * 1024, 512 * 1024};
+    private static final long[] LINKS_MBIT = {100, 1_000};
+    private static final int ROUND_TRIPS = 200;
+
+    @Test
+    void compareGzipAgainstUncompressed() throws Exception {
+        Assumptions.assumeTrue(!System.getProperty("sidecar.bench", "").isEmpty(),
+                "set SIDECAR_BENCH=1 to run benchmarks");
+
+        FakeSidecar sidecar = new FakeSidecar("bench");
+        sidecar.echoInputChunks = true;
+        Server server = ServerBuilder.forPort(0).addService(sidecar).build().start();
+        String address = "127.0.0.1:" + server.getPort();
+        try (SidecarClient plain = SidecarClient.connect(address);
+             SidecarClient gzip = SidecarClient.connect(address).dataPlaneCompression("gzip", 0)) {
+            System.out.printf("%-6s %8s %9s %11s %11s", "kind", "bytes", "gzip", "plain(us)",
+                    "gzip(us)");
+            for (long mbit : LINKS_MBIT) {
+                System.out.printf(" %16s", mbit + "Mbit plain/gzip");
+            }
+            System.out.println();
+            for (int size : SIZES) {
+                report("json", jsonPayload(size), plain, gzip);
+                report("base64", base64Payload(size), plain, gzip);
+            }
+        } finally {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void report(String kind, Struct payload, SidecarClient plain, SidecarClient gzip)
+            throws Exception {
+        byte[] raw = payload.toByteArray();
+        int compressedSize = 0;
+        long compressNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            compressedSize = gzipSize(raw);
+            compressNanos = Math.min(compressNanos, System.nanoTime() - start);
+        }
+
+        long plainNanos = medianRoundTrip(plain, payload);
+        long gzipNanos = medianRoundTrip(gzip, payload);
+        System.out.printf("%-6s %8d %9d %11.1f %11.1f", kind, raw.length, compressedSize,
+                plainNanos / 1e3, gzipNanos / 1e3);
+        for (long mbit : LINKS_MBIT) {
+            double plainUs = raw.length * 8.0 / mbit;
+            double gzipUs = compressNanos / 1e3 + compressedSize * 8.0 / mbit;
+            System.out.printf(" %7.1f/%-8.1f", plainUs, gzipUs);
+        }
+        System.out.println();
+    }
+
+    private static long medianRoundTrip(SidecarClient client, Struct payload) throws Exception {
+        Session session = client.attachSession("bench-1", ClientInfo.builder().build(),
+                Handlers.empty());
+        try (EventSubscription echoes = session.subscribe(
+                Set.of(Sidecar.ServerEvent.PayloadCase.STDERR_LINE))) {
+            long[] samples = new long[ROUND_TRIPS];
+            for (int i = -ROUND_TRIPS / 4; i < ROUND_TRIPS; i++) {
+                long start = System.nanoTime();
+                session.sendInputChunk("bench", payload);
+                assertNotNull(echoes.queue().poll(5, TimeUnit.SECONDS), "echo not received");
+                if (i >= 0) {
+                    samples[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(samples);
+            return samples[ROUND_TRIPS / 2];
+        } finally {
+            session.close();
+        }
+    }
+
+    /** Tool-result-like payload: many similar JSON rows. */
+    private static Struct jsonPayload(int bytes) {
+        StringBuilder text = new StringBuilder(bytes);
+        for (int row = 0; text.length() < bytes; row++) {
+            text.append("{\"id\":").append(row)
+                    .append(",\"name\":\"column_").append(row % 37)
+                    .append("\",\"type\":\"varchar\",\"nullable\":true}\n");
+        }
+        return payload(text.substring(0, bytes));
+    }
+
+    /** Image-block-like payload: base64 of random bytes, which gzip cannot shrink much. */
+    private static Struct base64Payload(int bytes) {
+        byte[] data = new byte[bytes * 3 / 4];
+        new Random(42).nextBytes(data);
+        return payload(Base64.getEncoder().encodeToString(data));
+    }
+
+    private static Struct payload(String text) {
+        return Struct.newBuilder()
+                .putFields("type", Value.newBuilder().setStringValue("user").build())
+                .putFields("data", Value.newBuilder().setStringValue(text).build())
+                .build();
+    }
+
+    private static int gzipSize(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        }
+        return out.size();
+    }
+}
@@ -103,8 +103,11 @@ public final class E2EHarness implements AutoCloseable {
     }
 
     public Session attachSession(String sidecarSessionId, Handlers handlers) {
+        // Tests read session.events() for SessionInit and other early events, so subscribe
+        // before the ClientHello goes out.
         return client.attachSession(sidecarSessionId,
-                ClientInfo.builder().name("e2e").version("test").build(), handlers);
+                ClientInfo.builder().name("e2e").version("test").build(), handlers,
+                SessionConfig.builder().subscribeEventsOnAttach(true).build());
     }
 
     // ------------------------------------------------------------------
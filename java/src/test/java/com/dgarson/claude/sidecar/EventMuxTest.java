@@ -0,0 +1,282 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link EventMux} routing.
+ * Mirrors Go's {@code TestEventMuxRoutesByRequest} in {@code session_test.go}.
+ */
+class EventMuxTest {
+
+    private EventMux mux;
+
+    @BeforeEach
+    void setUp() {
+        mux = new EventMux();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mux.close();
+    }
+
+    @Test
+    void testGlobalReceivesAllAndRequestReceivesOwnEvents() throws Exception {
+        EventMux.Subscription all = mux.subscribeAll(16, OverflowPolicy.BLOCK);
+        EventMux.Subscription req1 = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK);
+        EventMux.Subscription req2 = mux.subscribeRequest("req_2", 16, OverflowPolicy.BLOCK);
+
+        mux.enqueue(stderr("req_1", "one"));
+        mux.enqueue(stderr("req_2", "two"));
+        mux.enqueue(stderr("", "background"));
+
+        assertEquals("one", line(all));
+        assertEquals("two", line(all));
+        assertEquals("background", line(all));
+        assertEquals("one", line(req1));
+        assertEquals("two", line(req2));
+        assertNull(req1.queue().poll(50, TimeUnit.MILLISECONDS), "req_1 should see only its events");
+    }
+
+    @Test
+    void testTurnEndClosesRequestSubscription() throws Exception {
+        EventMux.Subscription req = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK);
+        mux.enqueue(turnEnd("req_1"));
+
+        Sidecar.ServerEvent event = req.queue().poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "expected TURN_END to be delivered before close");
+        assertTrue(event.hasTurn());
+        awaitClosed(req);
+    }
+
+    @Test
+    void testUnsubscribeStopsDelivery() throws Exception {
+        EventMux.Subscription kept = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK);
+        EventMux.Subscription dropped = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK);
+        mux.unsubscribeRequest("req_1", dropped);
+        assertTrue(dropped.isClosed());
+
+        mux.enqueue(stderr("req_1", "after"));
+        assertEquals("after", line(kept));
+        assertNull(dropped.queue().poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCloseClosesAllSubscriptionsAndRejectsNew() throws Exception {
+        EventMux.Subscription all = mux.subscribeAll(16, OverflowPolicy.BLOCK);
+        EventMux.Subscription req = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK);
+        mux.close();
+        awaitClosed(all);
+        awaitClosed(req);
+        assertTrue(mux.subscribeAll(16, OverflowPolicy.BLOCK).isClosed(),
+                "expected subscriptions after close to be closed");
+    }
+
+    @Test
+    void testDropOldestKeepsNewestEvents() throws Exception {
+        EventMux.Subscription sub = mux.subscribeAll(2, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 4; i++) {
+            mux.enqueue(stderr("", "line" + i));
+        }
+        awaitDropped(sub, 2);
+        assertEquals("line2", line(sub));
+        assertEquals("line3", line(sub));
+    }
+
+    @Test
+    void testDropPartialsNeverDropsCompleteMessages() throws Exception {
+        EventMux.Subscription sub = mux.subscribeAll(2, OverflowPolicy.DROP_PARTIALS);
+        mux.enqueue(partial());
+        mux.enqueue(stderr("", "kept"));
+        mux.enqueue(partial());
+        mux.enqueue(stderr("", "also kept"));
+        awaitDropped(sub, 2);
+        assertEquals("kept", line(sub));
+        assertEquals("also kept", line(sub));
+    }
+
+    @Test
+    void testFailClosesOverflowedSubscription() throws Exception {
+        EventMux.Subscription sub = mux.subscribeAll(1, OverflowPolicy.FAIL);
+        EventMux.Subscription other = mux.subscribeAll(16, OverflowPolicy.BLOCK);
+        mux.enqueue(stderr("", "first"));
+        mux.enqueue(stderr("", "second"));
+        awaitClosed(sub);
+        assertTrue(sub.isOverflowed(), "expected overflow flag");
+        assertEquals("first", line(other));
+        assertEquals("second", line(other));
+    }
+
+    @Test
+    void testFailWakesConsumerWithEndOfStream() throws Exception {
+        EventMux.Subscription sub = mux.subscribeAll(1, OverflowPolicy.FAIL);
+        mux.enqueue(stderr("", "first"));
+        mux.enqueue(stderr("", "second"));
+
+        assertEquals("first", line(sub));
+        assertSame(EventMux.END_OF_STREAM, sub.queue().poll(5, TimeUnit.SECONDS),
+                "expected the overflow to end the queue");
+        assertTrue(sub.isOverflowed());
+    }
+
+    @Test
+    void testCloseEndsQueueButUnsubscribeDoesNot() throws Exception {
+        EventMux.Subscription all = mux.subscribeAll(16, OverflowPolicy.BLOCK);
+        EventMux.Subscription dropped = mux.subscribeAll(16, OverflowPolicy.BLOCK);
+        mux.unsubscribeAll(dropped);
+        mux.close();
+
+        assertSame(EventMux.END_OF_STREAM, all.queue().poll(5, TimeUnit.SECONDS));
+        assertTrue(dropped.queue().isEmpty(), "an unsubscribed consumer is not woken");
+    }
+
+    @Test
+    void testFilteredSubscriptionSkipsRejectedEvents() throws Exception {
+        EventMux.Subscription turns = mux.subscribeAll(1, OverflowPolicy.FAIL,
+                EventFilters.payloads(Sidecar.ServerEvent.PayloadCase.TURN));
+        EventMux.Subscription req = mux.subscribeRequest("req_1", 16, OverflowPolicy.BLOCK,
+                EventFilters.excludePartials());
+
+        // Partials would overflow the one-slot FAIL subscription if they were enqueued.
+        for (int i = 0; i < 8; i++) {
+            mux.enqueue(partial());
+        }
+        mux.enqueue(stderr("req_1", "kept"));
+        mux.enqueue(turnEnd("req_1"));
+
+        Sidecar.ServerEvent turn = turns.queue().poll(5, TimeUnit.SECONDS);
+        assertNotNull(turn, "expected the turn boundary");
+        assertTrue(turn.hasTurn());
+        assertFalse(turns.isOverflowed(), "filtered events must not take buffer space");
+        assertEquals("kept", line(req));
+        awaitClosed(req);
+    }
+
+    @Test
+    void testSharedDispatcherDeliversInOrderPerMux() throws Exception {
+        try (EventDispatcher dispatcher = EventDispatcher.create(2)) {
+            int muxCount = 50;
+            int perMux = 200;
+            List<EventMux> muxes = new ArrayList<>();
+            List<EventMux.Subscription> subs = new ArrayList<>();
+            for (int m = 0; m < muxCount; m++) {
+                EventMux shared = new EventMux(dispatcher, "sess_" + m);
+                muxes.add(shared);
+                subs.add(shared.subscribeAll(perMux, OverflowPolicy.BLOCK));
+            }
+            for (int i = 0; i < perMux; i++) {
+                for (EventMux shared : muxes) {
+                    shared.enqueue(stderr("", Integer.toString(i)));
+                }
+            }
+            for (EventMux.Subscription sub : subs) {
+                for (int i = 0; i < perMux; i++) {
+                    assertEquals(Integer.toString(i), line(sub));
+                }
+            }
+            for (EventMux shared : muxes) {
+                shared.close();
+            }
+            for (EventMux.Subscription sub : subs) {
+                awaitClosed(sub);
+            }
+        }
+    }
+
+    @Test
+    void testFullBlockSubscriptionParksOnlyItsOwnSession() throws Exception {
+        try (EventDispatcher dispatcher = EventDispatcher.create(1)) {
+            EventMux stalled = new EventMux(dispatcher, "sess_stalled");
+            EventMux live = new EventMux(dispatcher, "sess_live");
+            EventMux.Subscription full = stalled.subscribeAll(1, OverflowPolicy.BLOCK);
+            EventMux.Subscription other = live.subscribeAll(16, OverflowPolicy.BLOCK);
+
+            for (int i = 0; i < 3; i++) {
+                stalled.enqueue(stderr("", "stalled" + i));
+            }
+            live.enqueue(stderr("", "live"));
+            assertEquals("live", line(other), "a full BLOCK subscriber must not stall the shard");
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals("stalled" + i, line(full));
+            }
+            stalled.close();
+            live.close();
+            awaitClosed(full);
+            awaitClosed(other);
+        }
+    }
+
+    @Test
+    void testMuxScheduledAfterDispatcherCloseStillDispatches() throws Exception {
+        EventDispatcher dispatcher = EventDispatcher.create(1);
+        EventMux shared = new EventMux(dispatcher, "sess_late");
+        EventMux.Subscription sub = shared.subscribeAll(16, OverflowPolicy.BLOCK);
+        dispatcher.close();
+
+        shared.enqueue(stderr("", "late"));
+        assertEquals("late", line(sub));
+        shared.close();
+        awaitClosed(sub);
+    }
+
+    // -- helpers --
+
+    static Sidecar.ServerEvent stderr(String requestId, String line) {
+        return Sidecar.ServerEvent.newBuilder()
+                .setRequestId(requestId)
+                .setStderrLine(Sidecar.StderrLine.newBuilder().setLine(line).build())
+                .build();
+    }
+
+    static Sidecar.ServerEvent turnEnd(String requestId) {
+        return Sidecar.ServerEvent.newBuilder()
+                .setRequestId(requestId)
+                .setTurnId("turn_1")
+                .setTurn(Sidecar.TurnBoundary.newBuilder()
+                        .setKind(Sidecar.TurnBoundary.Kind.TURN_END)
+                        .build())
+                .build();
+    }
+
+    static Sidecar.ServerEvent partial() {
+        return Sidecar.ServerEvent.newBuilder()
+                .setMessage(Sidecar.MessageEvent.newBuilder()
+                        .setIsPartial(true)
+                        .setStreamEvent(Sidecar.StreamEvent.getDefaultInstance())
+                        .build())
+                .build();
+    }
+
+    private static void awaitDropped(EventMux.Subscription sub, long expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sub.droppedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, sub.droppedCount(), "unexpected dropped count");
+    }
+
+    private static String line(EventMux.Subscription sub) throws InterruptedException {
+        Sidecar.ServerEvent event = sub.queue().poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "expected an event");
+        return event.getStderrLine().getLine();
+    }
+
+    private static void awaitClosed(EventMux.Subscription sub) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!sub.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(sub.isClosed(), "expected subscription to be closed");
+    }
+}
@@ -0,0 +1,184 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.ClaudeSidecarGrpc;
+import claude_sidecar.v1.Sidecar;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in for a sidecar process, for client tests that need a real gRPC server.
+ *
+ * <p>Session IDs are {@code <name>-<n>}. Attach streams stay open until the client half-closes.
+ * With {@link #echoInputChunks} set, every input chunk is answered with a {@code StderrLine}
+ * carrying its input stream ID. With {@link #initOnHello} set, a hello is answered with a
+ * {@code SessionInit}. While {@link #unavailable} is positive, each create, get or list call
+ * consumes one and fails with {@code UNAVAILABLE}.</p>
+ */
+class FakeSidecar extends ClaudeSidecarGrpc.ClaudeSidecarImplBase {
+
+    final String name;
+    final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    final AtomicInteger attaches = new AtomicInteger();
+    final AtomicInteger unavailable = new AtomicInteger();
+    volatile long healthDelayMillis;
+    volatile boolean echoInputChunks;
+    volatile boolean initOnHello;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    FakeSidecar(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void getInfo(Sidecar.GetInfoRequest request,
+                        StreamObserver<Sidecar.GetInfoResponse> responses) {
+        responses.onNext(Sidecar.GetInfoResponse.newBuilder()
+                .setProtocolVersion("v1")
+                .addCapabilities(Capabilities.HOOKS)
+                .addCapabilities(Capabilities.FORK)
+                .addCapabilities("future_feature")
+                .build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void healthCheck(Sidecar.HealthCheckRequest request,
+                            StreamObserver<Sidecar.HealthCheckResponse> responses) {
+        if (healthDelayMillis > 0) {
+            try {
+                Thread.sleep(healthDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        responses.onNext(Sidecar.HealthCheckResponse.newBuilder().setStatus("ok").build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void createSession(Sidecar.CreateSessionRequest request,
+                              StreamObserver<Sidecar.CreateSessionResponse> responses) {
+        if (failUnavailable(responses)) {
+            return;
+        }
+        responses.onNext(Sidecar.CreateSessionResponse.newBuilder()
+                .setSidecarSessionId(newSession())
+                .build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void getSession(Sidecar.GetSessionRequest request,
+                           StreamObserver<Sidecar.GetSessionResponse> responses) {
+        if (failUnavailable(responses)) {
+            return;
+        }
+        if (!sessions.contains(request.getSidecarSessionId())) {
+            responses.onError(Status.NOT_FOUND.asRuntimeException());
+            return;
+        }
+        responses.onNext(Sidecar.GetSessionResponse.newBuilder()
+                .setSession(summary(request.getSidecarSessionId()))
+                .build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void listSessions(Sidecar.ListSessionsRequest request,
+                             StreamObserver<Sidecar.ListSessionsResponse> responses) {
+        if (failUnavailable(responses)) {
+            return;
+        }
+        var builder = Sidecar.ListSessionsResponse.newBuilder();
+        for (String id : sessions) {
+            builder.addSessions(summary(id));
+        }
+        responses.onNext(builder.build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void deleteSession(Sidecar.DeleteSessionRequest request,
+                              StreamObserver<Sidecar.DeleteSessionResponse> responses) {
+        boolean removed = sessions.remove(request.getSidecarSessionId());
+        responses.onNext(Sidecar.DeleteSessionResponse.newBuilder().setSuccess(removed).build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void forkSession(Sidecar.ForkSessionRequest request,
+                            StreamObserver<Sidecar.ForkSessionResponse> responses) {
+        if (!sessions.contains(request.getSidecarSessionId())) {
+            responses.onError(Status.NOT_FOUND.asRuntimeException());
+            return;
+        }
+        responses.onNext(Sidecar.ForkSessionResponse.newBuilder()
+                .setSidecarSessionId(newSession())
+                .build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public void rewindFiles(Sidecar.RewindFilesRequest request,
+                            StreamObserver<Sidecar.RewindFilesResponse> responses) {
+        responses.onNext(Sidecar.RewindFilesResponse.newBuilder()
+                .setSuccess(sessions.contains(request.getSidecarSessionId()))
+                .build());
+        responses.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<Sidecar.ClientEvent> attachSession(
+            StreamObserver<Sidecar.ServerEvent> responses) {
+        attaches.incrementAndGet();
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(Sidecar.ClientEvent event) {
+                if (initOnHello && event.hasHello()) {
+                    responses.onNext(Sidecar.ServerEvent.newBuilder()
+                            .setSidecarSessionId(event.getSidecarSessionId())
+                            .setSessionInit(Sidecar.SessionInit.newBuilder()
+                                    .setClaudeSessionId("claude-" + event.getSidecarSessionId()))
+                            .build());
+                }
+                if (echoInputChunks && event.hasInputChunk()) {
+                    responses.onNext(Sidecar.ServerEvent.newBuilder()
+                            .setSidecarSessionId(event.getSidecarSessionId())
+                            .setStderrLine(Sidecar.StderrLine.newBuilder()
+                                    .setLine(event.getInputChunk().getInputStreamId()))
+                            .build());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {}
+
+            @Override
+            public void onCompleted() {
+                responses.onCompleted();
+            }
+        };
+    }
+
+    private boolean failUnavailable(StreamObserver<?> responses) {
+        if (unavailable.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            responses.onError(Status.UNAVAILABLE.withDescription("injected").asRuntimeException());
+            return true;
+        }
+        return false;
+    }
+
+    String newSession() {
+        String id = name + "-" + nextId.incrementAndGet();
+        sessions.add(id);
+        return id;
+    }
+
+    private static Sidecar.SessionSummary summary(String id) {
+        return Sidecar.SessionSummary.newBuilder().setSidecarSessionId(id).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.dgarson.claude.sidecar;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MpscRingBuffer}.
+ */
+class MpscRingBufferTest {
+
+    @Test
+    void testCapacityRoundsUpToPowerOfTwo() {
+        assertEquals(1, new MpscRingBuffer<String>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+        assertEquals(16, new MpscRingBuffer<String>(16).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<String>(0));
+    }
+
+    @Test
+    void testOfferPollFifoAndFull() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i), "expected offer " + i + " to succeed");
+        }
+        assertFalse(ring.offer(99), "expected offer to fail when full");
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4), "expected a slot after poll");
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, ring.drain(drained::add, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void testDrainRespectsLimit() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            ring.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, ring.drain(drained::add, 4));
+        assertEquals(List.of(0, 1, 2, 3), drained);
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    void testCloseDrainsThenReturnsNull() throws Exception {
+        MpscRingBuffer<String> ring = new MpscRingBuffer<>(4);
+        ring.offer("a");
+        ring.close();
+        assertFalse(ring.offer("b"), "expected offer to fail after close");
+        assertEquals("a", ring.take());
+        assertNull(ring.take(), "expected null once closed and drained");
+    }
+
+    @Test
+    void testTakeParksUntilProducerPublishes() throws Exception {
+        MpscRingBuffer<String> ring = new MpscRingBuffer<>(4);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> received = new ArrayList<>();
+        Thread consumer = Thread.ofVirtual().start(() -> {
+            started.countDown();
+            try {
+                received.add(ring.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        ring.offer("hello");
+        consumer.join(5_000);
+        assertFalse(consumer.isAlive(), "expected consumer to be woken");
+        assertEquals(List.of("hello"), received);
+    }
+
+    @Test
+    void testMultipleProducersDeliverEverythingInPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        MpscRingBuffer<long[]> ring = new MpscRingBuffer<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        ring.put(new long[]{id, i});
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        Thread closer = Thread.ofVirtual().start(() -> {
+            for (Thread t : threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ring.close();
+        });
+
+        long[] next = new long[producers];
+        int total = 0;
+        long[] item;
+        while ((item = ring.take()) != null) {
+            int id = (int) item[0];
+            assertEquals(next[id], item[1], "out of order for producer " + id);
+            next[id]++;
+            total++;
+        }
+        closer.join();
+        assertEquals(producers * perProducer, total);
+    }
+}
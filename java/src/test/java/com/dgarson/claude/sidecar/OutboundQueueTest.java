@@ -0,0 +1,194 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import io.grpc.stub.CallStreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OutboundQueue}.
+ */
+class OutboundQueueTest {
+
+    @Test
+    void testHoldsMessagesUntilReady() {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 4);
+
+        queue.send(event("a"));
+        CompletableFuture<Void> b = queue.sendAsync(event("b"));
+        assertTrue(call.written().isEmpty(), "expected nothing written while not ready");
+        assertFalse(b.isDone());
+
+        call.ready = true;
+        queue.onReady();
+        assertEquals(List.of("a", "b"), call.written());
+        assertTrue(b.isDone());
+    }
+
+    @Test
+    void testSendBlocksWhenFull() throws Exception {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 2);
+        queue.send(event("a"));
+        queue.send(event("b"));
+
+        Thread sender = Thread.ofVirtual().start(() -> queue.send(event("c")));
+        sender.join(100);
+        assertTrue(sender.isAlive(), "expected send to block on a full queue");
+
+        call.ready = true;
+        queue.onReady();
+        sender.join(5_000);
+        assertFalse(sender.isAlive());
+        assertEquals(List.of("a", "b", "c"), call.written());
+    }
+
+    @Test
+    void testSendAsyncWaitsForPermitWithoutExceedingCapacity() {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 1);
+        CompletableFuture<Void> a = queue.sendAsync(event("a"));
+        CompletableFuture<Void> b = queue.sendAsync(event("b"));
+        queue.halfClose();
+        assertEquals(1, queue.size(), "expected the queue to stay within capacity");
+        assertEquals(2, queue.waitingCount());
+        assertFalse(b.isDone());
+
+        call.ready = true;
+        queue.onReady();
+        assertEquals(List.of("a", "b"), call.written(), "expected admission in send order");
+        assertTrue(a.isDone() && b.isDone());
+        assertTrue(call.completed, "expected the half-close to follow the waiting send");
+        assertEquals(0, queue.waitingCount());
+    }
+
+    @Test
+    void testInterruptedSendIsNotQueued() throws Exception {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 1);
+        queue.send(event("a"));
+
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        Thread sender = Thread.ofVirtual().start(() -> {
+            try {
+                queue.send(event("b"));
+                failure.complete(null);
+            } catch (IllegalStateException e) {
+                failure.complete(e);
+            }
+        });
+        sender.join(100);
+        sender.interrupt();
+        assertNotNull(failure.get(5, TimeUnit.SECONDS), "expected the interrupted send to fail");
+
+        call.ready = true;
+        queue.onReady();
+        assertEquals(List.of("a"), call.written());
+        assertEquals(0, queue.waitingCount());
+    }
+
+    @Test
+    void testHalfCloseFollowsQueuedMessages() {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 4);
+        queue.send(event("a"));
+        queue.halfClose();
+        assertFalse(call.completed);
+
+        call.ready = true;
+        queue.onReady();
+        assertEquals(List.of("a"), call.written());
+        assertTrue(call.completed);
+    }
+
+    @Test
+    void testTerminateFailsPendingAndLaterSends() throws Exception {
+        GatedCall call = new GatedCall();
+        OutboundQueue queue = new OutboundQueue(call, 1);
+        CompletableFuture<Void> pending = queue.sendAsync(event("a"));
+
+        queue.terminate(new IllegalStateException("gone"));
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> pending.get(5, TimeUnit.SECONDS));
+        assertEquals("gone", error.getCause().getMessage());
+        assertThrows(IllegalStateException.class, () -> queue.send(event("b")));
+        assertTrue(queue.sendAsync(event("c")).isCompletedExceptionally());
+        assertTrue(call.written().isEmpty());
+    }
+
+    @Test
+    void testCompressesOnlyMessagesAboveThreshold() {
+        GatedCall call = new GatedCall();
+        call.ready = true;
+        OutboundQueue queue = new OutboundQueue(call, 4);
+        queue.compressAbove(64);
+
+        queue.send(event("small"));
+        queue.send(event("large-" + "x".repeat(100)));
+        assertEquals(List.of("large-" + "x".repeat(100)), call.compressed());
+    }
+
+    private static Sidecar.ClientEvent event(String requestId) {
+        return Sidecar.ClientEvent.newBuilder().setRequestId(requestId).build();
+    }
+
+    /** Call whose readiness is controlled by the test. */
+    private static final class GatedCall extends CallStreamObserver<Sidecar.ClientEvent> {
+        volatile boolean ready;
+        volatile boolean completed;
+        private final List<String> written = new ArrayList<>();
+        private final List<String> compressed = new ArrayList<>();
+        private boolean compressNext;
+
+        synchronized List<String> written() {
+            return new ArrayList<>(written);
+        }
+
+        synchronized List<String> compressed() {
+            return new ArrayList<>(compressed);
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public synchronized void onNext(Sidecar.ClientEvent value) {
+            written.add(value.getRequestId());
+            if (compressNext) {
+                compressed.add(value.getRequestId());
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+        @Override
+        public void disableAutoInboundFlowControl() {}
+
+        @Override
+        public void request(int count) {}
+
+        @Override
+        public synchronized void setMessageCompression(boolean enable) {
+            compressNext = enable;
+        }
+    }
+}
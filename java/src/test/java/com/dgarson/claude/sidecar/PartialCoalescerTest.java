@@ -0,0 +1,112 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PartialCoalescer}.
+ */
+class PartialCoalescerTest {
+
+    private static final long WINDOW = 1_000;
+
+    private final List<Sidecar.MessageEvent> out = new ArrayList<>();
+
+    @Test
+    void testMergesTextDeltasUntilFlush() {
+        PartialCoalescer coalescer = new PartialCoalescer(WINDOW, 1_000, out::add);
+        coalescer.add(textDelta(0, "Hel"), 0);
+        coalescer.add(textDelta(0, "lo, "), 10);
+        coalescer.add(textDelta(0, "world"), 20);
+        assertTrue(out.isEmpty(), "expected deltas to be held");
+
+        coalescer.flush();
+        assertEquals(1, out.size());
+        assertEquals("Hello, world", deltaText(out.get(0)));
+    }
+
+    @Test
+    void testFlushesWhenWindowElapses() {
+        PartialCoalescer coalescer = new PartialCoalescer(WINDOW, 1_000, out::add);
+        coalescer.add(textDelta(0, "a"), 0);
+        assertEquals(WINDOW - 400, coalescer.nanosUntilDue(400));
+
+        coalescer.flushIfDue(WINDOW - 1);
+        assertTrue(out.isEmpty());
+        coalescer.flushIfDue(WINDOW);
+        assertEquals(1, out.size());
+        assertEquals(Long.MAX_VALUE, coalescer.nanosUntilDue(WINDOW));
+    }
+
+    @Test
+    void testFlushesAtCharThreshold() {
+        PartialCoalescer coalescer = new PartialCoalescer(WINDOW, 4, out::add);
+        coalescer.add(textDelta(0, "ab"), 0);
+        coalescer.add(textDelta(0, "cd"), 1);
+        coalescer.add(textDelta(0, "e"), 2);
+        assertEquals(1, out.size());
+        assertEquals("abcd", deltaText(out.get(0)));
+    }
+
+    @Test
+    void testDifferentBlockStartsNewRun() {
+        PartialCoalescer coalescer = new PartialCoalescer(WINDOW, 1_000, out::add);
+        coalescer.add(textDelta(0, "a"), 0);
+        coalescer.add(textDelta(1, "b"), 1);
+        Sidecar.MessageEvent stop = streamEvent(Map.of("type", "content_block_stop", "index", 1));
+        coalescer.add(stop, 2);
+
+        assertEquals(3, out.size());
+        assertEquals("a", deltaText(out.get(0)));
+        assertEquals("b", deltaText(out.get(1)));
+        assertSame(stop, out.get(2));
+    }
+
+    @Test
+    void testAssistantSnapshotsKeepLatest() {
+        PartialCoalescer coalescer = new PartialCoalescer(WINDOW, 1_000, out::add);
+        coalescer.add(assistant("He"), 0);
+        coalescer.add(assistant("Hello"), 1);
+        coalescer.flush();
+
+        assertEquals(1, out.size());
+        assertEquals("Hello", out.get(0).getAssistant().getContent(0).getText().getText());
+    }
+
+    // -- helpers --
+
+    static Sidecar.MessageEvent textDelta(int index, String text) {
+        return streamEvent(Map.of(
+                "type", "content_block_delta",
+                "index", index,
+                "delta", Map.of("type", "text_delta", "text", text)));
+    }
+
+    static Sidecar.MessageEvent streamEvent(Map<String, Object> event) {
+        return Sidecar.MessageEvent.newBuilder()
+                .setIsPartial(true)
+                .setStreamEvent(Sidecar.StreamEvent.newBuilder()
+                        .setEvent(ProtoUtil.mapToStruct(event)))
+                .build();
+    }
+
+    private static Sidecar.MessageEvent assistant(String text) {
+        return Sidecar.MessageEvent.newBuilder()
+                .setIsPartial(true)
+                .setAssistant(Sidecar.AssistantMessage.newBuilder()
+                        .addContent(Sidecar.ContentBlock.newBuilder()
+                                .setText(Sidecar.TextBlock.newBuilder().setText(text))))
+                .build();
+    }
+
+    private static String deltaText(Sidecar.MessageEvent event) {
+        return event.getStreamEvent().getEvent().getFieldsOrThrow("delta")
+                .getStructValue().getFieldsOrThrow("text").getStringValue();
+    }
+}
@@ -0,0 +1,168 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PermissionCache}.
+ */
+class PermissionCacheTest {
+
+    @Test
+    void testAnswersFromGrantedRules() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.withUpdatedPermissions(PermissionDecisions.allow("ok"),
+                    List.of(PermissionUpdate.addRules("allow", "session",
+                            List.of(new PermissionRule("Bash", "npm run test:*"),
+                                    new PermissionRule("Read", "/repo/src/**")))));
+        });
+
+        assertEquals("allow", cache.handle(bash("npm run test")).getBehavior());
+        assertEquals(1, calls.get());
+
+        assertEquals("allow", cache.handle(bash("npm run test -- --watch")).getBehavior());
+        assertEquals("allow", cache.handle(request("Read", "file_path", "/repo/src/a/B.java"))
+                .getBehavior());
+        assertEquals(1, calls.get(), "covered requests must not reach the handler");
+
+        cache.handle(bash("npm run test; rm -rf /"));
+        cache.handle(request("Read", "file_path", "/etc/passwd"));
+        assertEquals(3, calls.get(), "chained commands and other paths go to the handler");
+        assertEquals(0.4, cache.stats().hitRate(), 1e-9);
+    }
+
+    @Test
+    void testDenyAndRemoveRules() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.deny("no");
+        });
+        cache.apply(PermissionUpdate.addRules("allow", "session",
+                List.of(new PermissionRule("WebFetch", null))));
+        cache.apply(PermissionUpdate.addRules("deny", "session",
+                List.of(new PermissionRule("WebFetch", "domain:evil.example"))));
+
+        assertEquals("deny", cache.handle(request("WebFetch", "url", "https://evil.example/x"))
+                .getBehavior(), "deny wins over allow");
+        assertEquals("allow", cache.handle(request("WebFetch", "url", "https://docs.example/"))
+                .getBehavior());
+        assertEquals(0, calls.get());
+
+        cache.apply(PermissionUpdate.removeRules("allow", "session",
+                List.of(new PermissionRule("WebFetch", null))));
+        assertEquals("deny", cache.handle(request("WebFetch", "url", "https://docs.example/"))
+                .getBehavior());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testSetModeAndInvalidation() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.withUpdatedPermissions(PermissionDecisions.allow("ok"),
+                    List.of(PermissionUpdate.setMode("acceptEdits", "session"),
+                            PermissionUpdate.addRules("allow", "session",
+                                    List.of(new PermissionRule("Write", "/repo/**")))));
+        });
+
+        cache.handle(request("Edit", "file_path", "/repo/a.txt"));
+        assertEquals("acceptEdits", cache.mode());
+        cache.handle(request("Edit", "file_path", "/repo/b.txt"));
+        assertEquals(2, calls.get(), "the mode alone never allows locally");
+        cache.handle(request("Write", "file_path", "/repo/b.txt"));
+        assertEquals(2, calls.get(), "granted rules still do");
+
+        SessionTest.FakeStream stream = new SessionTest.FakeStream();
+        Session session = SessionTest.newSession("sess-1", stream,
+                Handlers.builder().permission(cache).build(), SessionConfig.defaults());
+        session.setPermissionMode("default");
+        assertEquals("default", cache.mode());
+        cache.handle(request("Write", "file_path", "/repo/b.txt"));
+        assertEquals(3, calls.get());
+        session.close();
+    }
+
+    @Test
+    void testAppliesUpdatesOnlyFromAllowDecisions() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.withUpdatedPermissions(PermissionDecisions.deny("no"),
+                    List.of(PermissionUpdate.addRules("allow", "session",
+                            List.of(new PermissionRule("Bash", null)))));
+        });
+
+        cache.handle(bash("ls"));
+        cache.handle(bash("ls"));
+        assertEquals(2, calls.get(), "rules sent with a deny are not applied");
+
+        cache.apply(new PermissionUpdate(null, "allow", null, "session",
+                List.of(new PermissionRule("Bash", null)), List.of()));
+        cache.handle(bash("ls"));
+        assertEquals(3, calls.get(), "an update without a type is ignored");
+    }
+
+    @Test
+    void testCommandGlobDenyCoversSlashes() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.allow("ok");
+        });
+        cache.apply(PermissionUpdate.addRules("allow", "session",
+                List.of(new PermissionRule("Bash", null))));
+        cache.apply(PermissionUpdate.addRules("deny", "session",
+                List.of(new PermissionRule("Bash", "curl *"))));
+
+        assertEquals("deny", cache.handle(bash("curl https://evil.example/x")).getBehavior(),
+                "a cached command glob must cover commands containing /");
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testModeChangeReachesCacheWrappedByPolicy() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionCache cache = new PermissionCache(req -> {
+            calls.incrementAndGet();
+            return PermissionDecisions.allow("ok");
+        });
+        cache.apply(PermissionUpdate.addRules("allow", "session",
+                List.of(new PermissionRule("Bash", null))));
+        PermissionPolicy policy = PermissionPolicy.builder().allow("Read").fallback(cache).build();
+
+        SessionTest.FakeStream stream = new SessionTest.FakeStream();
+        Session session = SessionTest.newSession("sess-2", stream,
+                Handlers.builder().permission(policy).build(), SessionConfig.defaults());
+        session.setPermissionMode("plan");
+        assertEquals("plan", cache.mode());
+        policy.handle(bash("ls"));
+        assertEquals(1, calls.get(), "the mode change must drop the cached rules");
+        session.close();
+    }
+
+    private static Sidecar.PermissionDecisionRequest bash(String command) {
+        return request("Bash", "command", command);
+    }
+
+    private static Sidecar.PermissionDecisionRequest request(String tool, String field,
+                                                             String value) {
+        return Sidecar.PermissionDecisionRequest.newBuilder()
+                .setInvocationId("perm-1")
+                .setToolName(tool)
+                .setToolInput(Struct.newBuilder()
+                        .putFields(field, Value.newBuilder().setStringValue(value).build()))
+                .setAttempt(1)
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PermissionPolicy}.
+ */
+class PermissionPolicyTest {
+
+    private static final PermissionPolicy POLICY = PermissionPolicy.builder()
+            .allow("Read", "Grep", "Bash(git status:*)", "Bash(npm run test:*)", "Bash(make)",
+                    "Edit(/repo/src/**)", "mcp__docs__*")
+            .deny("Bash(git push:*)", "Bash(rm:*)", "WebFetch(domain:internal.example)",
+                    "mcp__docs__delete_page")
+            .ask("mcp__github__*", "Bash(git push --dry-run:*)")
+            .allow(new PermissionRule("WebFetch", null))
+            .build();
+
+    @Test
+    void testDecidesByPrecedence() {
+        assertEquals("allow", behavior(request("Read", "file_path", "/etc/hosts")));
+        assertEquals("allow", behavior(bash("git status --short")));
+        assertEquals("allow", behavior(bash("make")));
+        assertNull(POLICY.decide(bash("make install")), "exact content must match exactly");
+        assertEquals("deny", behavior(bash("rm -rf build")));
+        assertEquals("deny", behavior(bash("git push --dry-run origin")), "deny beats ask");
+        assertEquals("ask", behavior(request("mcp__github__create_issue", "title", "x")));
+        assertEquals("allow", behavior(request("mcp__docs__search", "q", "x")));
+        assertEquals("deny", behavior(request("mcp__docs__delete_page", "id", "1")));
+        assertEquals("allow", behavior(request("Edit", "file_path", "/repo/src/a/B.java")));
+        assertNull(POLICY.decide(request("Edit", "file_path", "/repo/build.gradle")));
+        assertEquals("deny", behavior(request("WebFetch", "url", "https://internal.example/a")));
+        assertEquals("allow", behavior(request("WebFetch", "url", "https://docs.example/a")));
+        assertNull(POLICY.decide(bash("git status && rm -rf /")),
+                "allow rules never cover chained commands");
+        assertNull(POLICY.decide(request("Write", "file_path", "/repo/a")));
+        assertEquals(14, POLICY.ruleCount());
+    }
+
+    @Test
+    void testForwardsUnmatchedRequestsToFallback() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PermissionPolicy policy = PermissionPolicy.builder()
+                .allow("Read")
+                .fallback(req -> {
+                    calls.incrementAndGet();
+                    return PermissionDecisions.ask("human review");
+                })
+                .build();
+
+        assertEquals("allow", policy.handle(request("Read", "file_path", "/a")).getBehavior());
+        assertEquals("ask", policy.handle(request("Write", "file_path", "/a")).getBehavior());
+        assertEquals(1, calls.get());
+        assertEquals(new PermissionPolicy.Stats(1, 1), policy.stats());
+
+        assertEquals("deny", PermissionPolicy.builder().build()
+                .handle(request("Write", "file_path", "/a")).getBehavior(),
+                "unmatched requests are denied without a fallback");
+    }
+
+    @Test
+    void testCommandGlobsCrossSlashes() {
+        PermissionPolicy policy = PermissionPolicy.builder()
+                .allow("Bash", "Read")
+                .deny("Bash(curl *)", "Read(/repo/*)")
+                .build();
+
+        assertEquals("deny", policy.decide(bash("curl https://evil.example/x")).getBehavior(),
+                "a command glob must cover commands containing /");
+        assertEquals("allow", policy.decide(bash("git status")).getBehavior());
+        assertEquals("deny", policy.decide(request("Read", "file_path", "/repo/a")).getBehavior());
+        assertEquals("allow", policy.decide(request("Read", "file_path", "/repo/a/b")).getBehavior(),
+                "a path glob's * stops at /");
+    }
+
+    private static String behavior(Sidecar.PermissionDecisionRequest request) {
+        Sidecar.PermissionDecision decision = POLICY.decide(request);
+        assertNotNull(decision, "no rule matched " + request.getToolName());
+        return decision.getBehavior();
+    }
+
+    private static Sidecar.PermissionDecisionRequest bash(String command) {
+        return request("Bash", "command", command);
+    }
+
+    private static Sidecar.PermissionDecisionRequest request(String tool, String field,
+                                                             String value) {
+        return Sidecar.PermissionDecisionRequest.newBuilder()
+                .setInvocationId("perm-1")
+                .setToolName(tool)
+                .setToolInput(Struct.newBuilder()
+                        .putFields(field, Value.newBuilder().setStringValue(value).build()))
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.dgarson.claude.sidecar;
+
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link SessionPool} against a local stand-in sidecar.
+ */
+class SessionPoolTest {
+
+    private Server server;
+    private FakeSidecar sidecar;
+    private SidecarClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sidecar = new FakeSidecar("pool");
+        sidecar.initOnHello = true;
+        server = ServerBuilder.forPort(0).addService(sidecar).build().start();
+        client = SidecarClient.connect("127.0.0.1:" + server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testAcquireServesWarmSessionsAndRefills() throws Exception {
+        try (SessionPool pool = SessionPool.builder(client).size(2).build()) {
+            awaitReady(pool, 2);
+
+            Session session = pool.acquire();
+            assertFalse(session.isClosed());
+            assertEquals("claude-" + session.getSessionId(),
+                    session.sessionInit().get(5, TimeUnit.SECONDS).claudeSessionId());
+            awaitReady(pool, 2);
+            assertEquals(3, sidecar.sessions.size());
+
+            pool.release(session);
+            awaitSessions(2);
+
+            SessionPool.Stats stats = pool.stats();
+            assertEquals(1, stats.hits());
+            assertEquals(0, stats.misses());
+            assertEquals(1.0, stats.hitRate());
+            assertEquals(3, stats.warmups());
+        }
+        awaitSessions(0);
+    }
+
+    @Test
+    void testMissWarmsUpOnCaller() throws Exception {
+        try (SessionPool pool = SessionPool.builder(client).size(0).build()) {
+            Session session = pool.acquire();
+            assertTrue(session.sessionInit().isDone());
+            assertEquals(1, pool.stats().misses());
+
+            pool.recycle(session);
+            assertEquals(0, pool.readyCount(), "expected a full pool to release the session");
+            awaitSessions(0);
+        }
+    }
+
+    private static void awaitReady(SessionPool pool, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.readyCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, pool.readyCount());
+    }
+
+    private void awaitSessions(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sidecar.sessions.size() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, sidecar.sessions.size());
+    }
+}
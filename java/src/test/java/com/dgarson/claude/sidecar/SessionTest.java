@@ -0,0 +1,585 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import io.grpc.Status;
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Session} against an in-memory stream.
+ * Mirrors Go's {@code session_test.go}.
+ */
+class SessionTest {
+
+    @Test
+    void testQuerySetsSessionId() {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-1", stream, Handlers.empty(), SessionConfig.defaults());
+
+        session.query("hello");
+
+        List<Sidecar.ClientEvent> sent = stream.sent();
+        assertEquals(1, sent.size(), "expected 1 send");
+        assertEquals("sess-1", sent.get(0).getSidecarSessionId());
+        assertTrue(sent.get(0).hasQuery(), "expected query payload");
+    }
+
+    @Test
+    void testToolHandlerSendsResponse() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-2", stream,
+                Handlers.builder().tool(req -> ToolResults.text("ok")).build(),
+                SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        inbound.onNext(Sidecar.ServerEvent.newBuilder()
+                .setToolRequest(Sidecar.ToolInvocationRequest.newBuilder()
+                        .setInvocationId("inv-1")
+                        .setToolFqn("mcp__echo__ping")
+                        .build())
+                .build());
+
+        Sidecar.ClientEvent response = stream.await(e -> e.hasToolResponse()
+                && e.getToolResponse().getInvocationId().equals("inv-1"));
+        assertEquals("sess-2", response.getSidecarSessionId());
+        session.close();
+    }
+
+    @Test
+    void testPermissionHandlerSendsResponse() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-4", stream,
+                Handlers.builder().permission(req -> PermissionDecisions.allow("")).build(),
+                SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        inbound.onNext(Sidecar.ServerEvent.newBuilder()
+                .setPermissionRequest(Sidecar.PermissionDecisionRequest.newBuilder()
+                        .setInvocationId("perm-1")
+                        .setToolName("mcp__echo__ping")
+                        .build())
+                .build());
+
+        Sidecar.ClientEvent response = stream.await(e -> e.hasPermissionResponse()
+                && e.getPermissionResponse().getInvocationId().equals("perm-1"));
+        assertEquals("sess-4", response.getSidecarSessionId());
+        assertEquals("allow", response.getPermissionResponse().getDecision().getBehavior());
+        session.close();
+    }
+
+    @Test
+    void testSaturatedCallbackExecutorFailsFast() throws Exception {
+        FakeStream stream = new FakeStream();
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedCallbackExecutor executor = BoundedCallbackExecutor.builder()
+                .limit(CallbackExecutor.Kind.TOOL, 1, 1)
+                .build();
+        Session session = newSession("sess-11", stream,
+                Handlers.builder().tool(req -> {
+                    release.await();
+                    return ToolResults.text("ok");
+                }).build(),
+                SessionConfig.builder().callbackExecutor(executor).build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        for (int i = 1; i <= 3; i++) {
+            inbound.onNext(Sidecar.ServerEvent.newBuilder()
+                    .setToolRequest(Sidecar.ToolInvocationRequest.newBuilder()
+                            .setInvocationId("inv-" + i)
+                            .setToolFqn("mcp__echo__ping")
+                            .build())
+                    .build());
+        }
+
+        Sidecar.ClientEvent rejected = stream.await(e -> e.hasToolResponse()
+                && e.getToolResponse().getInvocationId().equals("inv-3"));
+        assertTrue(rejected.getToolResponse().getToolResult().getFieldsOrThrow("is_error")
+                .getBoolValue(), "rejected call should be an error result");
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (executor.active(CallbackExecutor.Kind.TOOL) == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.active(CallbackExecutor.Kind.TOOL));
+        assertEquals(1, executor.queued(CallbackExecutor.Kind.TOOL));
+        assertEquals(1, executor.rejected(CallbackExecutor.Kind.TOOL));
+
+        release.countDown();
+        stream.await(e -> e.hasToolResponse()
+                && e.getToolResponse().getInvocationId().equals("inv-2"));
+        assertEquals(0, executor.rejected(CallbackExecutor.Kind.HOOK));
+        session.close();
+    }
+
+    @Test
+    void testHookPastDeadlineGetsFallbackAndLateResponseIsDropped() throws Exception {
+        FakeStream stream = new FakeStream();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Session session = newSession("sess-12", stream,
+                Handlers.builder().hook(req -> {
+                    try {
+                        Thread.sleep(30_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return HookOutputs.hookStop("too late");
+                }).build(),
+                SessionConfig.builder()
+                        .clientHooks(List.of(Sidecar.HookSpec.newBuilder()
+                                .setHookEvent("Stop")
+                                .setTimeoutSeconds(1)
+                                .build()))
+                        .callbackDeadlineMargin(Duration.ofMillis(800))
+                        .build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        inbound.onNext(Sidecar.ServerEvent.newBuilder()
+                .setHookRequest(Sidecar.HookInvocationRequest.newBuilder()
+                        .setInvocationId("hook-1")
+                        .setHookEvent("Stop")
+                        .build())
+                .build());
+
+        Sidecar.ClientEvent response = stream.await(Sidecar.ClientEvent::hasHookResponse);
+        assertTrue(response.getHookResponse().getOutput().getContinue(), "fallback continues");
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "handler should be interrupted");
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (session.lateCallbackResponseCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, session.timedOutCallbackCount());
+        assertEquals(1, session.lateCallbackResponseCount());
+        assertEquals(1, stream.sent().stream().filter(Sidecar.ClientEvent::hasHookResponse).count(),
+                "late response must not be sent");
+        session.close();
+    }
+
+    @Test
+    void testEventsSubscriptionIsCreatedLazily() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-5", stream, Handlers.empty(), SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        // Dispatched before anyone asked for events(): nothing is retained for them.
+        StreamHandle handle = session.stream("hi");
+        inbound.onNext(EventMuxTest.stderr(handle.getRequestId(), "early"));
+        inbound.onNext(EventMuxTest.turnEnd(handle.getRequestId()));
+        handle.result();
+
+        BlockingQueue<Sidecar.ServerEvent> events = session.events();
+        assertTrue(events.isEmpty(), "expected no buffered events before first events() call");
+
+        inbound.onNext(EventMuxTest.stderr("", "late"));
+        Sidecar.ServerEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("late", event.getStderrLine().getLine());
+        session.close();
+    }
+
+    @Test
+    void testReleaseEventsStopsBuffering() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-6", stream, Handlers.empty(),
+                SessionConfig.builder().subscribeEventsOnAttach(true).build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        BlockingQueue<Sidecar.ServerEvent> released = session.events();
+
+        inbound.onNext(EventMuxTest.stderr("", "before release"));
+        assertNotNull(released.poll(5, TimeUnit.SECONDS), "expected eager subscription to receive");
+
+        session.releaseEvents();
+        BlockingQueue<Sidecar.ServerEvent> fresh = session.events();
+        assertNotSame(released, fresh, "expected a new subscription after release");
+        inbound.onNext(EventMuxTest.stderr("", "fresh"));
+        assertEquals("fresh", fresh.poll(5, TimeUnit.SECONDS).getStderrLine().getLine());
+        assertTrue(released.isEmpty(), "released queue should not receive events");
+        session.close();
+    }
+
+    @Test
+    void testDemandDrivenStreamPublishesOnRequest() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-7", stream, Handlers.empty(), SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        StreamHandle handle = session.stream("hi",
+                StreamOptions.builder().demandDriven(true).build());
+        String reqId = handle.getRequestId();
+        inbound.onNext(EventMuxTest.stderr(reqId, "one"));
+        inbound.onNext(EventMuxTest.stderr(reqId, "two"));
+        inbound.onNext(EventMuxTest.turnEnd(reqId));
+
+        StreamPublisherTest.Recorder<Sidecar.ServerEvent> recorder =
+                new StreamPublisherTest.Recorder<>();
+        handle.eventPublisher().subscribe(recorder);
+        recorder.subscription.get().request(1);
+        Thread.sleep(100);
+        assertEquals(1, recorder.items.size(), "expected delivery to stop at requested demand");
+        assertFalse(handle.resultFuture().isDone(), "expected the handle to wait for demand");
+
+        recorder.subscription.get().request(Long.MAX_VALUE);
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS), "expected completion after TURN_END");
+        assertEquals(3, recorder.items.size());
+        assertNotNull(handle.result().getTurn());
+        session.close();
+    }
+
+    @Test
+    void testInboundFlowControlRequestsAsDispatched() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-8", stream, Handlers.empty(), SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        FakeCall call = new FakeCall();
+
+        session.bindInboundFlowControl(call);
+        assertEquals(EventMux.INBOUND_CAPACITY, call.requested(), "expected one credit per slot");
+
+        BlockingQueue<Sidecar.ServerEvent> events = session.events();
+        inbound.onNext(EventMuxTest.stderr("", "x"));
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (call.requested() != EventMux.INBOUND_CAPACITY + 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(EventMux.INBOUND_CAPACITY + 1, call.requested(),
+                "expected a dispatched event to be re-requested");
+        session.close();
+    }
+
+    @Test
+    void testRebindGrantsOnlyFreeInboundSlots() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-8b", stream, Handlers.empty(), SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        session.bindInboundFlowControl(new FakeCall());
+
+        // A one-slot BLOCK subscriber that is not read holds the rest in the inbound buffer.
+        EventSubscription stuck = session.subscribe(e -> true, 1, OverflowPolicy.BLOCK);
+        for (int i = 0; i < 5; i++) {
+            inbound.onNext(EventMuxTest.stderr("", "old" + i));
+        }
+        FakeCall rebound = new FakeCall();
+        session.bindInboundFlowControl(rebound);
+        assertTrue(rebound.requested() <= EventMux.INBOUND_CAPACITY - 3,
+                "expected buffered events not to be granted again, got " + rebound.requested());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("old" + i, stuck.queue().poll(5, TimeUnit.SECONDS).getStderrLine().getLine());
+        }
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (rebound.requested() < EventMux.INBOUND_CAPACITY
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(rebound.requested() >= EventMux.INBOUND_CAPACITY,
+                "expected the new call to be credited as old events drain");
+        session.close();
+    }
+
+    @Test
+    void testCloseWakesHandleWaitingForDemand() throws Exception {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-7b", stream, Handlers.empty(), SessionConfig.defaults());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+
+        StreamHandle handle = session.stream("hi",
+                StreamOptions.builder().demandDriven(true).build());
+        String reqId = handle.getRequestId();
+        inbound.onNext(EventMuxTest.stderr(reqId, "one"));
+        inbound.onNext(EventMuxTest.stderr(reqId, "two"));
+
+        StreamPublisherTest.Recorder<Sidecar.ServerEvent> recorder =
+                new StreamPublisherTest.Recorder<>();
+        handle.eventPublisher().subscribe(recorder);
+        recorder.subscription.get().request(1);
+        Thread.sleep(100);
+        handle.close();
+
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS), "expected the subscriber to be failed");
+        assertInstanceOf(CancellationException.class, recorder.error.get());
+        assertThrows(CancellationException.class,
+                () -> handle.resultFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(1, recorder.items.size());
+        session.close();
+    }
+
+    @Test
+    void testReattachResumesStreamAndFailsTurnsInFlight() throws Exception {
+        FakeStream first = new FakeStream();
+        Session session = newSession("sess-9", first, Handlers.empty(), SessionConfig.builder()
+                .reattachOnError(true)
+                .reattachBackoff(Duration.ZERO, Duration.ZERO)
+                .build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        FakeStream second = new FakeStream();
+        AtomicReference<StreamObserver<Sidecar.ServerEvent>> reattached = new AtomicReference<>();
+        CountDownLatch resumed = new CountDownLatch(1);
+        session.enableReattach(() -> {
+            reattached.set(session.createResponseObserver());
+            session.resumeStream(second, hello("sess-9"));
+            resumed.countDown();
+        });
+        EventSubscription lines = session.subscribe(Set.of(Sidecar.ServerEvent.PayloadCase.STDERR_LINE));
+
+        StreamHandle handle = session.stream("hi");
+        String reqId = handle.getRequestId();
+        inbound.onNext(turn(reqId, Sidecar.TurnBoundary.Kind.TURN_BEGIN));
+        inbound.onNext(turnLine(reqId, "one"));
+        inbound.onError(Status.UNAVAILABLE.withDescription("connection reset").asRuntimeException());
+        session.interrupt();
+
+        ExecutionException lost = assertThrows(ExecutionException.class,
+                () -> handle.resultFuture().get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, lost.getCause(), "expected the turn in flight to fail");
+
+        assertTrue(resumed.await(5, TimeUnit.SECONDS), "expected a reattach");
+        StreamObserver<Sidecar.ServerEvent> replay = reattached.get();
+        replay.onNext(turn(reqId, Sidecar.TurnBoundary.Kind.TURN_BEGIN));
+        replay.onNext(turnLine(reqId, "one"));
+        replay.onNext(turnLine(reqId, "two"));
+        replay.onNext(turn(reqId, Sidecar.TurnBoundary.Kind.TURN_END));
+        replay.onNext(EventMuxTest.stderr("", "fresh"));
+
+        assertEquals("one", lines.queue().poll(5, TimeUnit.SECONDS).getStderrLine().getLine());
+        assertEquals("fresh", lines.queue().poll(5, TimeUnit.SECONDS).getStderrLine().getLine(),
+                "expected events of the lost turn to be dropped");
+
+        Sidecar.ClientEvent hello = second.await(e -> true);
+        assertTrue(hello.hasHello(), "expected the hello ahead of queued messages");
+        assertTrue(second.await(Sidecar.ClientEvent::hasInterrupt).hasInterrupt());
+        assertEquals(1, session.reattachCount());
+        session.close();
+    }
+
+    @Test
+    void testFilteredEventsKeepCreditAndCallbacksAfterReattach() throws Exception {
+        FakeStream first = new FakeStream();
+        FakeStream second = new FakeStream();
+        Session session = newSession("sess-9c", first,
+                Handlers.builder().tool(req -> ToolResults.text("ok")).build(),
+                SessionConfig.builder()
+                        .reattachOnError(true)
+                        .reattachBackoff(Duration.ZERO, Duration.ZERO)
+                        .build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        FakeCall call = new FakeCall();
+        AtomicReference<StreamObserver<Sidecar.ServerEvent>> reattached = new AtomicReference<>();
+        CountDownLatch resumed = new CountDownLatch(1);
+        session.enableReattach(() -> {
+            reattached.set(session.createResponseObserver());
+            session.bindInboundFlowControl(call);
+            session.resumeStream(second, hello("sess-9c"));
+            resumed.countDown();
+        });
+
+        String lostId = session.stream("hi").getRequestId();
+        inbound.onNext(turn(lostId, Sidecar.TurnBoundary.Kind.TURN_BEGIN));
+        inbound.onError(Status.UNAVAILABLE.withDescription("connection reset").asRuntimeException());
+        assertTrue(resumed.await(5, TimeUnit.SECONDS), "expected a reattach");
+        StreamObserver<Sidecar.ServerEvent> replay = reattached.get();
+
+        // Deliver like gRPC would: never more events than the call has been granted.
+        long delivered = 0;
+        for (int i = 0; i < EventMux.INBOUND_CAPACITY + 100; i++) {
+            awaitCredit(call, delivered);
+            replay.onNext(turnLine(lostId, "lost" + i));
+            delivered++;
+        }
+        awaitCredit(call, delivered);
+        replay.onNext(Sidecar.ServerEvent.newBuilder()
+                .setRequestId(lostId)
+                .setTurnId("turn_1")
+                .setToolRequest(Sidecar.ToolInvocationRequest.newBuilder()
+                        .setInvocationId("inv-lost")
+                        .setToolFqn("mcp__echo__ping")
+                        .build())
+                .build());
+        delivered++;
+        second.await(e -> e.hasToolResponse()
+                && e.getToolResponse().getInvocationId().equals("inv-lost"));
+
+        StreamHandle next = session.stream("again");
+        String nextId = next.getRequestId();
+        for (Sidecar.TurnBoundary.Kind kind : List.of(Sidecar.TurnBoundary.Kind.TURN_BEGIN,
+                Sidecar.TurnBoundary.Kind.TURN_END)) {
+            awaitCredit(call, delivered);
+            replay.onNext(turn(nextId, kind).toBuilder().setTurnId("turn_2").build());
+            delivered++;
+        }
+        assertNotNull(next.resultFuture().get(5, TimeUnit.SECONDS),
+                "expected a new turn to complete after the filtered ones");
+        session.close();
+    }
+
+    @Test
+    void testFlappingStreamExhaustsReattachAttempts() throws Exception {
+        Session session = newSession("sess-9b", new FakeStream(), Handlers.empty(),
+                SessionConfig.builder()
+                        .reattachOnError(true)
+                        .reattachBackoff(Duration.ZERO, Duration.ofSeconds(10))
+                        .reattachMaxAttempts(2)
+                        .build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        BlockingQueue<StreamObserver<Sidecar.ServerEvent>> streams = new LinkedBlockingQueue<>();
+        session.enableReattach(() -> {
+            streams.add(session.createResponseObserver());
+            session.resumeStream(new FakeStream(), hello("sess-9b"));
+        });
+
+        inbound.onError(Status.UNAVAILABLE.asRuntimeException());
+        for (int i = 0; i < 2; i++) {
+            StreamObserver<Sidecar.ServerEvent> flapping = streams.poll(5, TimeUnit.SECONDS);
+            assertNotNull(flapping, "expected reattach " + (i + 1));
+            // Traffic on a stream that fails right away does not reset the attempt count.
+            flapping.onNext(EventMuxTest.stderr("", "hello again"));
+            flapping.onError(Status.UNAVAILABLE.asRuntimeException());
+        }
+
+        assertThrows(IllegalStateException.class, () -> session.query("again"));
+        assertEquals(2, session.reattachCount());
+    }
+
+    @Test
+    void testNonTransportErrorEndsResilientSession() {
+        FakeStream stream = new FakeStream();
+        Session session = newSession("sess-10", stream, Handlers.empty(),
+                SessionConfig.builder().reattachOnError(true).build());
+        StreamObserver<Sidecar.ServerEvent> inbound = session.createResponseObserver();
+        session.enableReattach(() -> fail("unexpected reattach"));
+
+        inbound.onError(Status.PERMISSION_DENIED.asRuntimeException());
+        assertThrows(IllegalStateException.class, () -> session.query("again"));
+        assertEquals(0, session.reattachCount());
+    }
+
+    // -- helpers --
+
+    private static Sidecar.ServerEvent turn(String requestId, Sidecar.TurnBoundary.Kind kind) {
+        return Sidecar.ServerEvent.newBuilder()
+                .setRequestId(requestId)
+                .setTurnId("turn_1")
+                .setTurn(Sidecar.TurnBoundary.newBuilder().setKind(kind).build())
+                .build();
+    }
+
+    private static Sidecar.ClientEvent hello(String sessionId) {
+        return Sidecar.ClientEvent.newBuilder()
+                .setSidecarSessionId(sessionId)
+                .setHello(Sidecar.ClientHello.getDefaultInstance())
+                .build();
+    }
+
+    private static Sidecar.ServerEvent turnLine(String requestId, String line) {
+        return EventMuxTest.stderr(requestId, line).toBuilder().setTurnId("turn_1").build();
+    }
+
+    private static void awaitCredit(FakeCall call, long delivered) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (call.requested() <= delivered && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(call.requested() > delivered, "inbound credit ran out after " + delivered);
+    }
+
+    static Session newSession(String sessionId, FakeStream stream, Handlers handlers,
+                              SessionConfig config) {
+        return new Session(sessionId, stream, handlers, config);
+    }
+
+    /** Records inbound credits granted through {@code request(n)}. */
+    static final class FakeCall extends CallStreamObserver<Sidecar.ClientEvent> {
+        private final AtomicLong requested = new AtomicLong();
+
+        long requested() {
+            return requested.get();
+        }
+
+        @Override
+        public void request(int count) {
+            requested.addAndGet(count);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+        @Override
+        public void disableAutoInboundFlowControl() {}
+
+        @Override
+        public void setMessageCompression(boolean enable) {}
+
+        @Override
+        public void onNext(Sidecar.ClientEvent value) {}
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public void onCompleted() {}
+    }
+
+    /** Records every client event sent on the stream. */
+    static final class FakeStream implements StreamObserver<Sidecar.ClientEvent> {
+        private final List<Sidecar.ClientEvent> sent = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public synchronized void onNext(Sidecar.ClientEvent event) {
+            sent.add(event);
+        }
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public synchronized void onCompleted() {
+            completed = true;
+        }
+
+        synchronized List<Sidecar.ClientEvent> sent() {
+            return new ArrayList<>(sent);
+        }
+
+        synchronized boolean isCompleted() {
+            return completed;
+        }
+
+        Sidecar.ClientEvent await(Predicate<Sidecar.ClientEvent> predicate)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (System.currentTimeMillis() < deadline) {
+                for (Sidecar.ClientEvent event : sent()) {
+                    if (predicate.test(event)) {
+                        return event;
+                    }
+                }
+                Thread.sleep(10);
+            }
+            throw new AssertionError("timed out waiting for client event");
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SidecarClient} against a local stand-in sidecar.
+ */
+class SidecarClientTest {
+
+    private Server server;
+    private FakeSidecar sidecar;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        sidecar = new FakeSidecar("local");
+        server = ServerBuilder.forPort(0).addService(sidecar).build().start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testPooledClientSpreadsSessionsAcrossChannels() throws Exception {
+        try (SidecarClient client = SidecarClient.connectPooled(
+                "127.0.0.1:" + server.getPort(), 3)) {
+            assertEquals(3, client.channelCount());
+
+            Session[] sessions = new Session[4];
+            for (int i = 0; i < sessions.length; i++) {
+                sessions[i] = client.attachSession("sess-" + i, ClientInfo.builder().build(),
+                        Handlers.empty());
+            }
+            assertEquals(4, Arrays.stream(client.channelStreamCounts()).sum());
+            assertArrayEquals(new int[]{2, 1, 1}, client.channelStreamCounts());
+
+            sessions[1].close();
+            awaitCounts(client, new int[]{2, 0, 1});
+
+            Session next = client.attachSession("sess-next", ClientInfo.builder().build(),
+                    Handlers.empty());
+            assertArrayEquals(new int[]{2, 1, 1}, client.channelStreamCounts(),
+                    "expected the new session on the least-loaded channel");
+
+            next.close();
+            for (Session session : sessions) {
+                session.close();
+            }
+            awaitCounts(client, new int[]{0, 0, 0});
+        }
+    }
+
+    @Test
+    void testAsyncControlPlane() throws Exception {
+        try (SidecarClient client = SidecarClient.connect("127.0.0.1:" + server.getPort())) {
+            List<CompletableFuture<Sidecar.CreateSessionResponse>> creates = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                creates.add(client.createSessionAsync(Sidecar.CreateSessionRequest.getDefaultInstance()));
+            }
+            CompletableFuture.allOf(creates.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            assertEquals(20, client.listSessionsAsync().get(5, TimeUnit.SECONDS).getSessionsCount());
+            String id = creates.get(0).get().getSidecarSessionId();
+            assertTrue(client.deleteSessionAsync(id, false).get(5, TimeUnit.SECONDS).getSuccess());
+        }
+    }
+
+    @Test
+    void testDeadlinesFailSlowCalls() throws Exception {
+        sidecar.healthDelayMillis = 500;
+        try (SidecarClient client = SidecarClient.connect("127.0.0.1:" + server.getPort())) {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> client.healthCheckAsync(Duration.ofMillis(50)).get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.DEADLINE_EXCEEDED,
+                    Status.fromThrowable(error.getCause()).getCode());
+
+            client.defaultDeadline(Duration.ofMillis(50));
+            StatusRuntimeException blocking = assertThrows(StatusRuntimeException.class,
+                    client::healthCheck);
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, blocking.getStatus().getCode());
+
+            assertEquals("ok", client.healthCheckAsync(Duration.ofSeconds(5))
+                    .get(5, TimeUnit.SECONDS).getStatus(), "expected per-call deadline to win");
+        }
+    }
+
+    @Test
+    void testRetryConfigRetriesIdempotentCalls() {
+        RetryConfig retry = RetryConfig.builder()
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(50), 2)
+                .build();
+        try (SidecarClient client = SidecarClient.connect("127.0.0.1:" + server.getPort(), retry)) {
+            sidecar.newSession();
+            sidecar.unavailable.set(2);
+            assertEquals(1, client.listSessions().getSessionsCount());
+
+            sidecar.unavailable.set(3);
+            StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+                    client::listSessions);
+            assertEquals(Status.Code.UNAVAILABLE, error.getStatus().getCode(),
+                    "expected the third failure to exhaust maxAttempts");
+        }
+    }
+
+    @Test
+    void testRetryConfigServiceConfig() {
+        Map<String, ?> hedged = RetryConfig.builder()
+                .hedgingDelay(Duration.ofMillis(50))
+                .build()
+                .toServiceConfig();
+        Map<?, ?> methodConfig = (Map<?, ?>) ((List<?>) hedged.get("methodConfig")).get(0);
+        assertFalse(methodConfig.containsKey("retryPolicy"));
+        assertEquals("0.050000000s", ((Map<?, ?>) methodConfig.get("hedgingPolicy")).get("hedgingDelay"));
+        assertEquals(3, ((List<?>) methodConfig.get("name")).size());
+        assertNotNull(hedged.get("retryThrottling"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RetryConfig.builder().retryableCodes().build(),
+                "gRPC rejects a retry policy without retryable codes");
+        assertNotNull(RetryConfig.builder().retryableCodes().hedgingDelay(Duration.ofMillis(50))
+                .build());
+    }
+
+    @Test
+    void testCreateSessionRetriesWithIdempotencyKey() throws Exception {
+        List<String> keys = new CopyOnWriteArrayList<>();
+        ServerInterceptor recordKeys = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                    ServerCall<ReqT, RespT> call, Metadata headers,
+                    ServerCallHandler<ReqT, RespT> next) {
+                String key = headers.get(SidecarClient.IDEMPOTENCY_KEY);
+                if (key != null) {
+                    keys.add(key);
+                }
+                return next.startCall(call, headers);
+            }
+        };
+        Server keyed = ServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(sidecar, recordKeys))
+                .build()
+                .start();
+        RetryConfig retry = RetryConfig.builder()
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(50), 2)
+                .build();
+        try (SidecarClient client = SidecarClient.connect("127.0.0.1:" + keyed.getPort(), retry)) {
+            // Without an explicit retry policy the client's RetryConfig does not apply.
+            sidecar.unavailable.set(1);
+            StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                    () -> client.createSession(Sidecar.CreateSessionRequest.getDefaultInstance(),
+                            "create-41"));
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+            assertEquals(List.of("create-41"), keys);
+
+            keys.clear();
+            sidecar.unavailable.set(1);
+            String id = client.createSession(Sidecar.CreateSessionRequest.getDefaultInstance(),
+                    "create-42", retry).getSidecarSessionId();
+            assertTrue(sidecar.sessions.contains(id));
+            assertEquals(List.of("create-42", "create-42"), keys);
+        } finally {
+            keyed.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testWarmUpCachesCapabilities() {
+        try (SidecarClient client = SidecarClient.connectEager(
+                "127.0.0.1:" + server.getPort(), Duration.ofSeconds(5))) {
+            SidecarInfo info = client.sidecarInfo();
+            assertNotNull(info, "expected connectEager to cache the warm-up");
+            assertEquals("ok", info.health().getStatus());
+            assertEquals("v1", info.info().getProtocolVersion());
+            assertSame(info.capabilities(), client.capabilities());
+            assertTrue(client.capabilities().has(Capability.FORK));
+            assertFalse(client.capabilities().has(Capability.SANDBOX));
+        }
+    }
+
+    @Test
+    void testConnectUnixOverDomainSocket(@TempDir Path dir) throws Exception {
+        Assumptions.assumeTrue(Epoll.isAvailable(), "epoll transport unavailable");
+        Path socket = dir.resolve("sidecar.sock");
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        Server uds = NettyServerBuilder.forAddress(new DomainSocketAddress(socket.toFile()))
+                .channelType(EpollServerDomainSocketChannel.class)
+                .bossEventLoopGroup(group)
+                .workerEventLoopGroup(group)
+                .addService(sidecar)
+                .build()
+                .start();
+        try (SidecarClient client = SidecarClient.connectUnix(socket)) {
+            assertTrue(client.usesDomainSocket());
+            assertEquals("ok", client.healthCheck().getStatus());
+            client.attachSession("sess-uds", ClientInfo.builder().build(), Handlers.empty()).close();
+            awaitCounts(client, new int[]{0});
+        } finally {
+            uds.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testConnectUnixWithoutEpollNeedsExplicitFallback(@TempDir Path dir) {
+        Assumptions.assumeFalse(Epoll.isAvailable(), "epoll transport available");
+        Path socket = dir.resolve("sidecar.sock");
+        assertThrows(IllegalStateException.class, () -> SidecarClient.connectUnix(socket));
+        try (SidecarClient client = SidecarClient.connectUnix(socket,
+                "127.0.0.1:" + server.getPort())) {
+            assertFalse(client.usesDomainSocket());
+            assertEquals("ok", client.healthCheck().getStatus());
+        }
+    }
+
+    private static void awaitCounts(SidecarClient client, int[] expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Arrays.equals(expected, client.channelStreamCounts())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(expected, client.channelStreamCounts());
+    }
+}
@@ -0,0 +1,143 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link SidecarCluster} against several in-process stand-in sidecars.
+ */
+class SidecarClusterTest {
+
+    private final List<Server> servers = new ArrayList<>();
+    private FakeSidecar a;
+    private FakeSidecar b;
+    private SidecarCluster cluster;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        a = new FakeSidecar("a");
+        b = new FakeSidecar("b");
+        cluster = SidecarCluster.builder()
+                .endpoint("a", start(a))
+                .endpoint("b", start(b))
+                .probeInterval(Duration.ZERO)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cluster.close();
+        for (Server server : servers) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testCreatePlacesSessionsOnLeastLoadedSidecar() {
+        for (int i = 0; i < 30; i++) {
+            a.newSession();
+        }
+        for (int i = 0; i < 3; i++) {
+            String id = createSession();
+            assertEquals("b", cluster.endpointFor(id));
+        }
+        assertEquals(3, b.sessions.size());
+    }
+
+    @Test
+    void testSlowHealthCheckOutweighsSmallLoadDifference() {
+        a.healthDelayMillis = 300;
+        b.newSession();
+        b.newSession();
+
+        assertEquals("b", cluster.endpointFor(createSession()));
+    }
+
+    @Test
+    void testLaterCallsArePinnedToOwningSidecar() throws Exception {
+        String id = createSession();
+        FakeSidecar owner = cluster.endpointFor(id).equals("a") ? a : b;
+        FakeSidecar other = owner == a ? b : a;
+
+        Session session = cluster.attachSession(id, ClientInfo.builder().build(), Handlers.empty());
+        session.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (owner.attaches.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, owner.attaches.get());
+        assertEquals(0, other.attaches.get());
+
+        String fork = cluster.forkSession(Sidecar.ForkSessionRequest.newBuilder()
+                .setSidecarSessionId(id)
+                .build()).getSidecarSessionId();
+        assertEquals(cluster.endpointFor(id), cluster.endpointFor(fork));
+        assertTrue(owner.sessions.contains(fork));
+
+        assertTrue(cluster.rewindFiles(Sidecar.RewindFilesRequest.newBuilder()
+                .setSidecarSessionId(id)
+                .build()).getSuccess());
+        assertTrue(cluster.deleteSession(id, false).getSuccess());
+        assertNull(cluster.endpointFor(id), "expected the pin to be dropped after delete");
+    }
+
+    @Test
+    void testUnknownSessionIsLocated() {
+        String id = b.newSession();
+
+        assertEquals(id, cluster.getSession(id).getSession().getSidecarSessionId());
+        assertEquals("b", cluster.endpointFor(id));
+    }
+
+    @Test
+    void testUnreachableOwnerIsNotReportedAsNotFound() {
+        String id = a.newSession();
+        a.unavailable.set(1);
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> cluster.getSession(id));
+        assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+        assertNull(cluster.endpointFor(id));
+
+        assertEquals(id, cluster.getSession(id).getSession().getSidecarSessionId());
+        assertEquals("a", cluster.endpointFor(id));
+        assertEquals(Status.Code.NOT_FOUND, assertThrows(StatusRuntimeException.class,
+                () -> cluster.getSession("sess-missing")).getStatus().getCode());
+    }
+
+    @Test
+    void testDownSidecarIsSkipped() throws Exception {
+        servers.get(0).shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("b", cluster.endpointFor(createSession()));
+        }
+    }
+
+    private String createSession() {
+        return cluster.createSession(Sidecar.CreateSessionRequest.getDefaultInstance())
+                .getSidecarSessionId();
+    }
+
+    private SidecarClient start(FakeSidecar sidecar) throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        servers.add(InProcessServerBuilder.forName(name)
+                .addService(sidecar)
+                .build()
+                .start());
+        return SidecarClient.fromChannel(InProcessChannelBuilder.forName(name).build());
+    }
+}
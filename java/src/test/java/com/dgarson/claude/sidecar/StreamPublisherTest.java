@@ -0,0 +1,125 @@
+package com.dgarson.claude.sidecar;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link StreamPublisher}.
+ */
+class StreamPublisherTest {
+
+    @Test
+    void testEmitWaitsForDemand() throws Exception {
+        StreamPublisher<Integer> publisher = new StreamPublisher<>(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    publisher.emit(i);
+                }
+                publisher.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        recorder.subscription.get().request(1);
+        Thread.sleep(100);
+        assertEquals(List.of(0), recorder.items, "expected only the requested item");
+
+        recorder.subscription.get().request(5);
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS), "expected completion");
+        assertEquals(List.of(0, 1, 2), recorder.items);
+        assertNull(recorder.error.get());
+        producer.join();
+    }
+
+    @Test
+    void testEmitWithoutSubscriberDoesNotBlock() throws Exception {
+        StreamPublisher<Integer> publisher = new StreamPublisher<>(null);
+        assertFalse(publisher.emit(1));
+    }
+
+    @Test
+    void testCancelReleasesProducer() throws Exception {
+        StreamPublisher<Integer> publisher = new StreamPublisher<>(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                publisher.emit(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        recorder.subscription.get().cancel();
+        producer.join(5_000);
+        assertFalse(producer.isAlive(), "expected emit to return after cancel");
+        assertTrue(recorder.items.isEmpty());
+    }
+
+    @Test
+    void testNonPositiveRequestFails() throws Exception {
+        StreamPublisher<Integer> publisher = new StreamPublisher<>(null);
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+
+        recorder.subscription.get().request(0);
+        assertFalse(publisher.emit(1));
+        assertInstanceOf(IllegalArgumentException.class, recorder.error.get());
+    }
+
+    @Test
+    void testLateSubscriberReceivesTerminalSignal() {
+        StreamPublisher<Integer> publisher = new StreamPublisher<>(null);
+        publisher.fail(new IllegalStateException("boom"));
+
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        assertEquals("boom", recorder.error.get().getMessage());
+
+        Recorder<Integer> second = new Recorder<>();
+        publisher.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error.get(),
+                "expected a second subscriber to be rejected");
+    }
+
+    static final class Recorder<T> implements Flow.Subscriber<T> {
+        final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        final List<T> items = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription.set(s);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.set(t);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
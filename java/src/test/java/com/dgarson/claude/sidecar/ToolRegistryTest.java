@@ -0,0 +1,131 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ToolRegistry} and its record binding.
+ */
+class ToolRegistryTest {
+
+    enum Unit { CELSIUS, FAHRENHEIT }
+
+    record Location(String city, double lat, double lon) {}
+
+    record Forecast(Location location, int days, Unit unit, List<String> fields, Boolean hourly) {}
+
+    record Node(String name, List<Node> children) {}
+
+    record Limits(Map<String, Integer> perCity) {}
+
+    @Test
+    void testRoutesByFqnAndBindsRecordInput() throws Exception {
+        ToolRegistry tools = ToolRegistry.builder()
+                .tool("weather", "forecast", "Weather forecast", Forecast.class,
+                        input -> ToolResults.text(input.location().city() + "/" + input.days()
+                                + "/" + input.unit() + "/" + input.fields() + "/" + input.hourly()))
+                .tool("weather", new ToolSpec("ping", "Ping"), request -> ToolResults.text("pong"))
+                .build();
+
+        Struct input = ProtoUtil.mapToStruct(Map.of(
+                "location", Map.of("city", "Oslo", "lat", 59.9, "lon", 10.7),
+                "days", 3,
+                "unit", "CELSIUS",
+                "fields", List.of("temp", "wind")));
+        assertEquals(ToolResults.text("Oslo/3/CELSIUS/[temp, wind]/null"),
+                tools.handle(request("mcp__weather__forecast", input)));
+        assertEquals(ToolResults.text("pong"),
+                tools.handle(request("mcp__weather__ping", Struct.getDefaultInstance())));
+        assertTrue(tools.handle(request("mcp__weather__missing", Struct.getDefaultInstance()))
+                .getFieldsOrThrow("is_error").getBoolValue());
+    }
+
+    @Test
+    void testRejectsMistypedInput() {
+        ToolRegistry tools = ToolRegistry.builder()
+                .tool("weather", "forecast", "Weather forecast", Forecast.class,
+                        input -> ToolResults.text("unreachable"))
+                .build();
+
+        Struct input = ProtoUtil.mapToStruct(Map.of("days", 2.5));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> tools.handle(request("mcp__weather__forecast", input)));
+        assertTrue(e.getMessage().contains("Forecast.days"), e.getMessage());
+    }
+
+    @Test
+    void testDeclaresDerivedSchemas() {
+        ToolRegistry tools = ToolRegistry.builder()
+                .tool("weather", "forecast", "Weather forecast", Forecast.class,
+                        input -> ToolResults.text(""))
+                .build();
+
+        Sidecar.ClaudeAgentOptions options = OptionsBuilder.create().withClientTools(tools).build();
+        assertEquals(1, options.getClientToolServersCount());
+        Sidecar.ToolSpec spec = options.getClientToolServers(0).getTools(0);
+        assertEquals("forecast", spec.getName());
+
+        Map<String, Value> properties = spec.getInputSchema().getFieldsOrThrow("properties")
+                .getStructValue().getFieldsMap();
+        assertEquals("integer", type(properties.get("days")));
+        assertEquals("array", type(properties.get("fields")));
+        assertEquals("boolean", type(properties.get("hourly")));
+        assertEquals(2, properties.get("unit").getStructValue().getFieldsOrThrow("enum")
+                .getListValue().getValuesCount());
+        assertEquals("number", type(properties.get("location").getStructValue()
+                .getFieldsOrThrow("properties").getStructValue().getFieldsOrThrow("lat")));
+        assertEquals(List.of(Value.newBuilder().setStringValue("days").build()),
+                spec.getInputSchema().getFieldsOrThrow("required").getListValue().getValuesList());
+    }
+
+    @Test
+    void testRejectsRecursiveInputRecords() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ToolRegistry.builder().tool("tree", "walk", "Walk a tree", Node.class,
+                        input -> ToolResults.text("")));
+        assertTrue(e.getMessage().contains("recursive"), e.getMessage());
+    }
+
+    @Test
+    void testDecodesMapValuesWithTheirType() throws Exception {
+        ToolRegistry tools = ToolRegistry.builder()
+                .tool("weather", "limits", "Per-city limits", Limits.class, input -> {
+                    int total = 0;
+                    for (int limit : input.perCity().values()) {
+                        total += limit;
+                    }
+                    return ToolResults.text(Integer.toString(total));
+                })
+                .build();
+
+        Struct input = ProtoUtil.mapToStruct(Map.of("perCity", Map.of("Oslo", 2, "Bergen", 3)));
+        assertEquals(ToolResults.text("5"), tools.handle(request("mcp__weather__limits", input)));
+    }
+
+    @Test
+    void testRejectsDuplicateTools() {
+        ToolRegistry.Builder builder = ToolRegistry.builder()
+                .tool("s", new ToolSpec("t", ""), request -> ToolResults.text(""));
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.tool("s", new ToolSpec("t", ""), request -> ToolResults.text("")));
+    }
+
+    private static String type(Value schema) {
+        return schema.getStructValue().getFieldsOrThrow("type").getStringValue();
+    }
+
+    private static Sidecar.ToolInvocationRequest request(String fqn, Struct input) {
+        return Sidecar.ToolInvocationRequest.newBuilder()
+                .setInvocationId("inv-1")
+                .setToolFqn(fqn)
+                .setToolInput(input)
+                .build();
+    }
+}
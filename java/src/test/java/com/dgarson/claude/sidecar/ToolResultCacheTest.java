@@ -0,0 +1,172 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ToolResultCache}.
+ */
+class ToolResultCacheTest {
+
+    private static final String SCHEMA = "mcp__db__describe_table";
+
+    @Test
+    void testCachesByToolAndCanonicalInput() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ToolResultCache cache = ToolResultCache.builder(req -> {
+                    calls.incrementAndGet();
+                    return ToolResults.text("columns of " + req.getToolInput());
+                })
+                .cache(SCHEMA, Duration.ofMinutes(1))
+                .build();
+
+        Struct ab = input("a", "1", "b", "2");
+        Struct ba = input("b", "2", "a", "1");
+        Struct result = cache.handle(request(SCHEMA, ab));
+        assertEquals(result, cache.handle(request(SCHEMA, ba)), "field order must not matter");
+        cache.handle(request(SCHEMA, input("a", "3", "b", "2")));
+        cache.handle(request("mcp__db__query", ab));
+        cache.handle(request("mcp__db__query", ab));
+
+        assertEquals(4, calls.get(), "uncached tool runs every time");
+        ToolResultCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.entries());
+        assertEquals(1.0 / 3, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    void testExpiresAndEvictsLeastRecentlyUsed() throws Exception {
+        AtomicLong now = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        ToolResultCache cache = ToolResultCache.builder(req -> {
+                    calls.incrementAndGet();
+                    return ToolResults.text("ok");
+                })
+                .cache(SCHEMA, Duration.ofSeconds(10))
+                .maxEntries(2)
+                .ticker(now::get)
+                .build();
+
+        cache.handle(request(SCHEMA, input("t", "a")));
+        cache.handle(request(SCHEMA, input("t", "b")));
+        cache.handle(request(SCHEMA, input("t", "a")));
+        cache.handle(request(SCHEMA, input("t", "c"))); // evicts b, the least recently used
+        assertEquals(3, calls.get());
+        cache.handle(request(SCHEMA, input("t", "a")));
+        assertEquals(3, calls.get());
+        cache.handle(request(SCHEMA, input("t", "b")));
+        assertEquals(4, calls.get());
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        cache.handle(request(SCHEMA, input("t", "b")));
+        assertEquals(5, calls.get(), "expired entry must be refreshed");
+    }
+
+    @Test
+    void testDeduplicatesConcurrentCallsAndSkipsErrors() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ToolResultCache cache = ToolResultCache.builder(req -> {
+                    calls.incrementAndGet();
+                    release.await();
+                    return ToolResults.error("table is locked");
+                })
+                .cache(SCHEMA, Duration.ofMinutes(1))
+                .build();
+
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        CompletableFuture<Struct> first = CompletableFuture.supplyAsync(() -> call(cache), threads);
+        CompletableFuture<Struct> second = CompletableFuture.supplyAsync(() -> call(cache), threads);
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (cache.stats().coalesced() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        assertEquals(first.get(2, TimeUnit.SECONDS), second.get(2, TimeUnit.SECONDS));
+        assertEquals(1, calls.get(), "identical concurrent calls run once");
+
+        call(cache);
+        assertEquals(2, calls.get(), "error results are not cached");
+        assertEquals(0, cache.stats().entries());
+        threads.shutdown();
+    }
+
+    @Test
+    void testInterruptedLeaderLetsFollowersRunTheCall() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ToolResultCache cache = ToolResultCache.builder(req -> {
+                    if (calls.incrementAndGet() == 1) {
+                        leaderStarted.countDown();
+                        new CountDownLatch(1).await();
+                    }
+                    return ToolResults.text("orders(id, total)");
+                })
+                .cache(SCHEMA, Duration.ofMinutes(1))
+                .build();
+
+        CompletableFuture<Throwable> leaderError = new CompletableFuture<>();
+        Thread leader = Thread.ofVirtual().start(() -> {
+            try {
+                cache.handle(request(SCHEMA, input("t", "orders")));
+                leaderError.complete(null);
+            } catch (Exception e) {
+                leaderError.complete(e);
+            }
+        });
+        assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        CompletableFuture<Struct> follower = CompletableFuture.supplyAsync(() -> call(cache), threads);
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (cache.stats().coalesced() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        leader.interrupt();
+
+        assertInstanceOf(InterruptedException.class, leaderError.get(2, TimeUnit.SECONDS));
+        assertEquals(ToolResults.text("orders(id, total)"), follower.get(2, TimeUnit.SECONDS),
+                "the follower runs the call itself instead of sharing the interrupt");
+        assertEquals(2, calls.get());
+        threads.shutdown();
+    }
+
+    private static Struct call(ToolResultCache cache) {
+        try {
+            return cache.handle(request(SCHEMA, input("t", "orders")));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Struct input(String... keyValues) {
+        Struct.Builder struct = Struct.newBuilder();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            struct.putFields(keyValues[i],
+                    Value.newBuilder().setStringValue(keyValues[i + 1]).build());
+        }
+        return struct.build();
+    }
+
+    private static Sidecar.ToolInvocationRequest request(String fqn, Struct input) {
+        return Sidecar.ToolInvocationRequest.newBuilder()
+                .setInvocationId("inv-1")
+                .setToolFqn(fqn)
+                .setToolInput(input)
+                .build();
+    }
+}
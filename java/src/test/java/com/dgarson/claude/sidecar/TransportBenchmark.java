@@ -0,0 +1,120 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares per-event round-trip latency and CPU of {@link SidecarClient#connectUnix} against
+ * loopback TCP ({@code 127.0.0.1}). Both transports serve the same in-process stand-in sidecar,
+ * which echoes every input chunk back as a server event, so only the transport differs.
+ *
+ * <p>Skipped unless {@code sidecar.bench} is set ({@code SIDECAR_BENCH=1 ./gradlew test
+ * --tests TransportBenchmark}). CPU is process CPU time and so includes the server side.</p>
+ */
+@Tag("benchmark")
+class TransportBenchmark {
+
+    private static final int WARMUP_EVENTS = 5_000;
+    private static final int EVENTS = 20_000;
+
+    @Test
+    void compareUnixSocketWithLoopbackTcp(@TempDir Path dir) throws Exception {
+        Assumptions.assumeTrue(!System.getProperty("sidecar.bench", "").isEmpty(),
+                "set SIDECAR_BENCH=1 to run benchmarks");
+        Assumptions.assumeTrue(Epoll.isAvailable(), "epoll transport unavailable");
+
+        FakeSidecar sidecar = new FakeSidecar("bench");
+        sidecar.echoInputChunks = true;
+        Path socket = dir.resolve("sidecar.sock");
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        Server uds = NettyServerBuilder.forAddress(new DomainSocketAddress(socket.toFile()))
+                .channelType(EpollServerDomainSocketChannel.class)
+                .bossEventLoopGroup(group)
+                .workerEventLoopGroup(group)
+                .addService(sidecar)
+                .build()
+                .start();
+        Server tcp = ServerBuilder.forPort(0).addService(sidecar).build().start();
+        try {
+            Result unix;
+            try (SidecarClient client = SidecarClient.connectUnix(socket)) {
+                assertTrue(client.usesDomainSocket());
+                unix = measure(client);
+            }
+            Result loopback;
+            try (SidecarClient client = SidecarClient.connect("127.0.0.1:" + tcp.getPort())) {
+                loopback = measure(client);
+            }
+            System.out.println("transport  p50(us)  p99(us)  cpu/event(us)");
+            System.out.println("unix       " + unix);
+            System.out.println("tcp        " + loopback);
+        } finally {
+            uds.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            tcp.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Result measure(SidecarClient client) throws Exception {
+        Session session = client.attachSession("bench-1", ClientInfo.builder().build(),
+                Handlers.empty());
+        try (EventSubscription echoes = session.subscribe(
+                Set.of(Sidecar.ServerEvent.PayloadCase.STDERR_LINE))) {
+            Struct chunk = Struct.newBuilder()
+                    .putFields("type", Value.newBuilder().setStringValue("user").build())
+                    .build();
+            for (int i = 0; i < WARMUP_EVENTS; i++) {
+                roundTrip(session, echoes, chunk);
+            }
+            var os = (com.sun.management.OperatingSystemMXBean)
+                    ManagementFactory.getOperatingSystemMXBean();
+            long[] latencies = new long[EVENTS];
+            long cpuStart = os.getProcessCpuTime();
+            for (int i = 0; i < EVENTS; i++) {
+                latencies[i] = roundTrip(session, echoes, chunk);
+            }
+            long cpu = os.getProcessCpuTime() - cpuStart;
+            Arrays.sort(latencies);
+            return new Result(latencies[EVENTS / 2], latencies[EVENTS * 99 / 100], cpu / EVENTS);
+        } finally {
+            session.close();
+        }
+    }
+
+    private static long roundTrip(Session session, EventSubscription echoes, Struct chunk)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        session.sendInputChunk("bench", chunk);
+        assertNotNull(echoes.queue().poll(5, TimeUnit.SECONDS), "echo not received");
+        return System.nanoTime() - start;
+    }
+
+    private record Result(long p50Nanos, long p99Nanos, long cpuNanosPerEvent) {
+        @Override
+        public String toString() {
+            return String.format("%7.1f  %7.1f  %13.1f",
+                    p50Nanos / 1e3, p99Nanos / 1e3, cpuNanosPerEvent / 1e3);
+        }
+    }
+}
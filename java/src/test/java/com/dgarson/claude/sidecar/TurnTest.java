@@ -0,0 +1,76 @@
+package com.dgarson.claude.sidecar;
+
+import claude_sidecar.v1.Sidecar;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Turn} retention modes.
+ */
+class TurnTest {
+
+    @Test
+    void testFullRetentionKeepsHistory() {
+        Turn turn = feed(new Turn("turn-1", TurnRetention.FULL));
+
+        assertEquals(5, turn.getEvents().size());
+        assertEquals(2, turn.getPartials().size());
+        assertEquals(2, turn.getStreamEvents().size());
+        assertEquals(1, turn.getMessages().size());
+        assertEquals(1, turn.getStderr().size());
+        assertEquals("done", turn.getResult().getResult());
+    }
+
+    @Test
+    void testMessagesOnlyDropsRawHistory() {
+        Turn turn = feed(new Turn("turn-1", TurnRetention.MESSAGES_ONLY));
+
+        assertTrue(turn.getEvents().isEmpty());
+        assertTrue(turn.getPartials().isEmpty());
+        assertTrue(turn.getStreamEvents().isEmpty());
+        assertEquals(1, turn.getMessages().size());
+        assertEquals(1, turn.getStderr().size());
+        assertEquals("done", turn.getResult().getResult());
+    }
+
+    @Test
+    void testResultOnlyFoldsPartialsIntoMergedAssistant() {
+        Turn turn = feed(new Turn("turn-1", TurnRetention.RESULT_ONLY));
+
+        assertTrue(turn.getEvents().isEmpty());
+        assertTrue(turn.getMessages().isEmpty());
+        assertTrue(turn.getStderr().isEmpty());
+        assertEquals("done", turn.getResult().getResult());
+        assertEquals("Hello", turn.mergedAssistant().getContent(0).getText().getText());
+    }
+
+    @Test
+    void testCompleteAssistantReplacesFoldedPartials() {
+        Turn turn = new Turn("turn-1", TurnRetention.RESULT_ONLY);
+        turn.addMessage(PartialCoalescerTest.textDelta(0, "draft"));
+        turn.addMessage(Sidecar.MessageEvent.newBuilder()
+                .setAssistant(Sidecar.AssistantMessage.newBuilder().setModel("final"))
+                .build());
+
+        assertEquals("final", turn.mergedAssistant().getModel());
+    }
+
+    private static Turn feed(Turn turn) {
+        Sidecar.MessageEvent[] messages = {
+                PartialCoalescerTest.textDelta(0, "Hel"),
+                PartialCoalescerTest.textDelta(0, "lo"),
+                Sidecar.MessageEvent.newBuilder()
+                        .setResult(Sidecar.ResultMessage.newBuilder().setResult("done"))
+                        .build(),
+        };
+        for (Sidecar.MessageEvent message : messages) {
+            turn.addEvent(Sidecar.ServerEvent.newBuilder().setMessage(message).build());
+            turn.addMessage(message);
+        }
+        turn.addEvent(EventMuxTest.stderr("req-1", "warning"));
+        turn.addStderr("warning");
+        turn.addEvent(EventMuxTest.turnEnd("req-1"));
+        return turn;
+    }
+}